@@ -0,0 +1,50 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc.api;
+
+/**
+ * A batch of rows of a thin result set, laid out by column. Values are read by column and row index, so that
+ * columnar consumers can copy numeric columns without boxing every value.
+ *
+ * @see IThinColumnStream
+ */
+public interface IThinColumnBatch {
+  int getRowCount();
+
+  int getColumnCount();
+
+  /**
+   * @param column column index, starting at 0
+   * @param row    row index within the batch, starting at 0
+   */
+  boolean isNull( int column, int row );
+
+  /**
+   * @return value of an integer column, the milliseconds of a date column, or 1 and 0 for a boolean column; 0 if null
+   * @throws IllegalArgumentException for columns of other types
+   */
+  long getLong( int column, int row );
+
+  /**
+   * @return value of a number column, 0 if null
+   * @throws IllegalArgumentException for columns of other types
+   */
+  double getDouble( int column, int row );
+
+  /**
+   * @return the value as it appears in a Kettle row, null if null
+   */
+  Object getObject( int column, int row );
+}
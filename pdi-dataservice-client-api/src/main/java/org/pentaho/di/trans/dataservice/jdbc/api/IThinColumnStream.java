@@ -0,0 +1,43 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc.api;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.sql.SQLException;
+
+/**
+ * Rows of a thin result set as column batches, obtained with {@link java.sql.ResultSet#unwrap(Class)}. Columnar
+ * results are handed over as received; row results are gathered into batches.
+ * <p>
+ * Reading batches moves past the rows, so it should not be mixed with reading rows from the result set.
+ */
+public interface IThinColumnStream {
+  /**
+   * @return layout of the columns, as sent by the server
+   */
+  RowMetaInterface getRowMeta();
+
+  /**
+   * @return {@link java.sql.Types} of each column
+   */
+  int[] getSqlTypes();
+
+  /**
+   * @param maxRows largest number of rows for batches gathered from row results, at least 1
+   * @return the next batch, or null once all rows are read
+   */
+  IThinColumnBatch nextBatch( int maxRows ) throws SQLException;
+}
@@ -0,0 +1,41 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc.api;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Kettle rows of a thin result set, without conversion through the JDBC getters. Obtained with
+ * {@link java.sql.ResultSet#unwrap(Class)} when {@link java.sql.ResultSet#isWrapperFor(Class)} is true.
+ * <p>
+ * Reading rows moves the result set's cursor, so the two ways of reading should not be mixed.
+ */
+public interface IThinRowStream {
+  /**
+   * @return layout of the rows, as sent by the server
+   */
+  RowMetaInterface getRowMeta();
+
+  /**
+   * Read the next rows. Later reads do not overwrite the returned arrays, but they should not be changed.
+   *
+   * @param maxRows largest number of rows to return, at least 1
+   * @return up to maxRows rows, an empty list once all rows are read
+   */
+  List<Object[]> nextRows( int maxRows ) throws SQLException;
+}
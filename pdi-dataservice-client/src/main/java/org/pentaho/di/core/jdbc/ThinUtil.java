@@ -18,6 +18,14 @@ import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -43,6 +51,12 @@ import org.pentaho.di.core.xml.XMLHandler;
 
 public class ThinUtil {
 
+  private static final Pattern DATE_LITERAL_PATTERN = Pattern.compile( "^([A-Za-z]+) ?'([0-9\\-:\\. ]+)'$" );
+  private static final DateTimeFormatter DATE_LITERAL_FORMAT =
+    DateTimeFormatter.ofPattern( "uuuu-MM-dd" ).withResolverStyle( ResolverStyle.STRICT );
+  private static final DateTimeFormatter TIMESTAMP_LITERAL_FORMAT =
+    DateTimeFormatter.ofPattern( "uuuu-MM-dd HH:mm:ss" ).withResolverStyle( ResolverStyle.STRICT );
+
   public static String stripNewlines( String sql ) {
     if ( sql == null ) {
       return null;
@@ -172,30 +186,25 @@ public class ThinUtil {
       }
     }
 
-    Matcher matcher = Pattern.compile( "^([A-Za-z]+) ?'([0-9\\-:\\. ]+)'$" ).matcher( string );
+    if ( string.isEmpty() || !Character.isLetter( string.charAt( 0 ) ) || !string.endsWith( "'" ) ) {
+      return null;
+    }
+    Matcher matcher = DATE_LITERAL_PATTERN.matcher( string );
     if ( matcher.find() ) {
       if ( matcher.groupCount() == 2 ) {
         String keyword = matcher.group( 1 );
         String dateString = matcher.group( 2 );
-        String format = null;
+        Date date = null;
         if ( keyword.equalsIgnoreCase( "TIMESTAMP" ) ) {
-          format = "yyyy-MM-dd HH:mm:ss";
+          date = parseDateLiteral( dateString, TIMESTAMP_LITERAL_FORMAT, "yyyy-MM-dd HH:mm:ss" );
         } else if ( keyword.equalsIgnoreCase( "DATE" ) ) {
-          format = "yyyy-MM-dd";
+          date = parseDateLiteral( dateString, DATE_LITERAL_FORMAT, "yyyy-MM-dd" );
         }
-        if ( format != null ) {
-          Date date = null;
-          try {
-            date = new SimpleDateFormat( format ).parse( dateString );
-          } catch ( ParseException e ) {
-            // Format does not match
-          }
-          if ( date != null ) {
-            ValueMetaInterface valueMeta = new ValueMeta( "iff-date", ValueMetaInterface.TYPE_DATE );
-            // default conversion mask is used for data saving irrespective of locale differences
-            valueMeta.setConversionMask( ValueMetaAndData.VALUE_REPOSITORY_DATE_CONVERSION_MASK );
-            return new ValueMetaAndData( valueMeta, date );
-          }
+        if ( date != null ) {
+          ValueMetaInterface valueMeta = new ValueMeta( "iff-date", ValueMetaInterface.TYPE_DATE );
+          // default conversion mask is used for data saving irrespective of locale differences
+          valueMeta.setConversionMask( ValueMetaAndData.VALUE_REPOSITORY_DATE_CONVERSION_MASK );
+          return new ValueMetaAndData( valueMeta, date );
         }
       }
     }
@@ -203,30 +212,54 @@ public class ThinUtil {
     return null;
   }
 
-
-  public static ValueMetaAndData attemptIntegerValueExtraction( String string ) {
-    // Try an Integer
-    if ( !string.contains( "." ) ) {
+  /**
+   * Parse a date literal with a strict, thread-safe formatter. Anything it does not take as is, such as trailing
+   * fractions, out of range fields, old dates or local times skipped or repeated by a daylight saving change, is left
+   * to the lenient {@link SimpleDateFormat} that was always used, so the resulting dates do not change.
+   */
+  private static Date parseDateLiteral( String dateString, DateTimeFormatter formatter, String legacyFormat ) {
+    if ( dateString.length() == legacyFormat.length() ) {
       try {
-        long l = Long.parseLong( string );
-        if ( Long.toString( l ).equals( string ) ) {
-          ValueMetaAndData value = new ValueMetaAndData();
-          ValueMetaInterface valueMeta = new ValueMeta( "Constant", ValueMetaInterface.TYPE_INTEGER );
-          valueMeta.setConversionMask( "0" );
-          valueMeta.setGroupingSymbol( null );
-          value.setValueMeta( valueMeta );
-          value.setValueData( Long.valueOf( l ) );
-          return value;
+        TemporalAccessor parsed = formatter.parse( dateString );
+        LocalDateTime dateTime = parsed.isSupported( ChronoField.HOUR_OF_DAY )
+          ? LocalDateTime.from( parsed ) : LocalDate.from( parsed ).atStartOfDay();
+        ZoneId zone = ZoneId.systemDefault();
+        // Julian dates and early zone histories are not handled the same by java.util and java.time
+        if ( dateTime.getYear() >= 1900 && zone.getRules().getValidOffsets( dateTime ).size() == 1 ) {
+          return Date.from( dateTime.atZone( zone ).toInstant() );
         }
-      } catch ( NumberFormatException e ) {
-        // ignore - will return null below
+      } catch ( DateTimeException e ) {
+        // Not a valid date for the strict format
       }
     }
+    try {
+      return new SimpleDateFormat( legacyFormat ).parse( dateString );
+    } catch ( ParseException e ) {
+      // Format does not match
+      return null;
+    }
+  }
+
+
+  public static ValueMetaAndData attemptIntegerValueExtraction( String string ) {
+    // Try an Integer, only as Long.toString() would write it
+    if ( isLongLiteral( string ) ) {
+      ValueMetaAndData value = new ValueMetaAndData();
+      ValueMetaInterface valueMeta = new ValueMeta( "Constant", ValueMetaInterface.TYPE_INTEGER );
+      valueMeta.setConversionMask( "0" );
+      valueMeta.setGroupingSymbol( null );
+      value.setValueMeta( valueMeta );
+      value.setValueData( Long.valueOf( string ) );
+      return value;
+    }
     return null;
   }
 
   public static ValueMetaAndData attemptNumberValueExtraction( String string ) {
-    // Try a Number
+    // Try a Number, only as Double.toString() would write it
+    if ( !isDoubleLiteral( string ) ) {
+      return null;
+    }
     try {
       double d = Double.parseDouble( string );
       if ( Double.toString( d ).equals( string ) ) {
@@ -246,7 +279,10 @@ public class ThinUtil {
   }
 
   public static ValueMetaAndData attemptBigNumberValueExtraction( String string ) {
-    // Try a BigNumber
+    // Try a BigNumber, only as BigDecimal.toString() would write it
+    if ( !isBigDecimalLiteral( string ) ) {
+      return null;
+    }
     try {
       BigDecimal d = new BigDecimal( string );
       if ( d.toString().equals( string ) ) {
@@ -261,6 +297,78 @@ public class ThinUtil {
     return null;
   }
 
+  private static boolean isLongLiteral( String string ) {
+    int start = string.startsWith( "-" ) ? 1 : 0;
+    int digits = string.length() - start;
+    if ( digits < 1 || digits > 19 || skipDigits( string, start ) != string.length() ) {
+      return false;
+    }
+    if ( string.charAt( start ) == '0' ) {
+      // No leading zeros, nor -0
+      return digits == 1 && start == 0;
+    }
+    if ( digits == 19 ) {
+      String limit = start == 0 ? "9223372036854775807" : "9223372036854775808";
+      return string.substring( start ).compareTo( limit ) <= 0;
+    }
+    return true;
+  }
+
+  private static boolean isDoubleLiteral( String string ) {
+    if ( string.equals( "NaN" ) || string.equals( "Infinity" ) || string.equals( "-Infinity" ) ) {
+      return true;
+    }
+    int start = string.startsWith( "-" ) ? 1 : 0;
+    int index = skipDigits( string, start );
+    if ( index == start || index == string.length() || string.charAt( index ) != '.' ) {
+      return false;
+    }
+    int fraction = index + 1;
+    index = skipDigits( string, fraction );
+    if ( index == fraction ) {
+      return false;
+    }
+    return index == string.length() || string.charAt( index ) == 'E' && isExponent( string, index + 1, false );
+  }
+
+  private static boolean isBigDecimalLiteral( String string ) {
+    int start = string.startsWith( "-" ) ? 1 : 0;
+    int index = skipDigits( string, start );
+    if ( index == start ) {
+      return false;
+    }
+    if ( index < string.length() && string.charAt( index ) == '.' ) {
+      int fraction = index + 1;
+      index = skipDigits( string, fraction );
+      if ( index == fraction ) {
+        return false;
+      }
+    }
+    return index == string.length() || string.charAt( index ) == 'E' && isExponent( string, index + 1, true );
+  }
+
+  /**
+   * @return true if the string ends with an exponent at the index, which has a sign if it is required
+   */
+  private static boolean isExponent( String string, int index, boolean signRequired ) {
+    if ( index < string.length() && ( string.charAt( index ) == '-' || string.charAt( index ) == '+' ) ) {
+      if ( string.charAt( index ) == '+' && !signRequired ) {
+        return false;
+      }
+      index++;
+    } else if ( signRequired ) {
+      return false;
+    }
+    return index < string.length() && skipDigits( string, index ) == string.length();
+  }
+
+  private static int skipDigits( String string, int index ) {
+    while ( index < string.length() && string.charAt( index ) >= '0' && string.charAt( index ) <= '9' ) {
+      index++;
+    }
+    return index;
+  }
+
   public static ValueMetaAndData attemptStringValueExtraction( String string ) {
     if ( string.startsWith( "'" ) && string.endsWith( "'" ) ) {
       String s = string.substring( 1, string.length() - 1 );
@@ -289,6 +397,39 @@ public class ThinUtil {
   }
 
   public static ValueMetaAndData extractConstant( String string ) {
+    // Most literals can be told apart by their first character, only try the types they can be
+    //
+    char first = string.isEmpty() ? 0 : string.charAt( 0 );
+    if ( first == '\'' ) {
+      return attemptStringValueExtraction( string );
+    }
+    if ( first == '-' || first >= '0' && first <= '9' ) {
+      ValueMetaAndData value = attemptIntegerValueExtraction( string );
+      if ( value == null ) {
+        value = attemptNumberValueExtraction( string );
+      }
+      if ( value == null ) {
+        value = attemptBigNumberValueExtraction( string );
+      }
+      return value;
+    }
+    if ( first >= 'A' && first <= 'Z' || first >= 'a' && first <= 'z' ) {
+      ValueMetaAndData value = attemptDateValueExtraction( string );
+      if ( value == null ) {
+        value = attemptBooleanValueExtraction( string );
+      }
+      if ( value == null ) {
+        value = attemptNumberValueExtraction( string );
+      }
+      return value;
+    }
+    return extractConstantInOrder( string );
+  }
+
+  /**
+   * Try all types, in the order of precedence
+   */
+  private static ValueMetaAndData extractConstantInOrder( String string ) {
     // Try a date
     //
     ValueMetaAndData value = attemptDateValueExtraction( string );
@@ -506,7 +647,7 @@ public class ThinUtil {
       }
       // The CASE-WHEN-THEN-ELSE-END Hack // TODO: factor out
       //
-      if ( fieldClause.substring( index ).toUpperCase().startsWith( "CASE WHEN " ) ) {
+      if ( startsWithIgnoreCase( fieldClause, index, "CASE WHEN " ) ) {
         // If we see CASE-WHEN then we skip to END
         //
         index = skipOverClause( fieldClause, index, " END" );
@@ -531,7 +672,7 @@ public class ThinUtil {
   private static int skipOverClause( String fieldClause, int index, String clause ) throws KettleSQLException {
     while ( index < fieldClause.length() ) {
       index = skipChars( fieldClause, index, '\'', '"' );
-      if ( fieldClause.substring( index ).toUpperCase().startsWith( clause.toUpperCase() ) ) {
+      if ( startsWithIgnoreCase( fieldClause, index, clause ) ) {
         return index + clause.length();
       }
       index++;
@@ -550,18 +691,16 @@ public class ThinUtil {
       return new FoundClause( null, null );
     }
 
-    String sql = sqlString.toUpperCase();
-
     int startIndex = 0;
-    while ( startIndex < sql.length() ) {
-      startIndex = ThinUtil.skipChars( sql, startIndex, '"', '\'' );
-      if ( sql.substring( startIndex ).startsWith( startClause.toUpperCase() ) ) {
+    while ( startIndex < sqlString.length() ) {
+      startIndex = ThinUtil.skipChars( sqlString, startIndex, '"', '\'' );
+      if ( startsWithIgnoreCase( sqlString, startIndex, startClause ) ) {
         break;
       }
       startIndex++;
     }
 
-    if ( startIndex < 0 || startIndex >= sql.length() ) {
+    if ( startIndex < 0 || startIndex >= sqlString.length() ) {
       return new FoundClause( null, sqlString );
     }
 
@@ -570,28 +709,25 @@ public class ThinUtil {
       return new FoundClause( sqlString.substring( startIndex ), null );
     }
 
-    // Index of first character of end clause
-    int endIndex = sql.length();
+    // Index of first character of end clause, found in a single pass for all end clauses
+    int endIndex = sqlString.length();
 
-    for ( String endClause : endClauses ) {
+    int index = startIndex;
+    while ( index < endIndex ) {
+      index = ThinUtil.skipChars( sqlString, index, '"', '\'' );
 
-      int index = startIndex;
-      while ( index < endIndex ) {
-        index = ThinUtil.skipChars( sql, index, '"', '\'' );
-
-        // See if the end-clause is present at this location.
-        //
-        if ( sql.substring( index ).startsWith( endClause.toUpperCase() ) ) {
-          if ( index < endIndex ) {
-            endIndex = index;
-          }
+      // See if an end-clause is present at this location.
+      //
+      for ( String endClause : endClauses ) {
+        if ( index < endIndex && startsWithIgnoreCase( sqlString, index, endClause ) ) {
+          endIndex = index;
         }
-        index++;
       }
+      index++;
     }
     String foundClause = Const.trim( sqlString.substring( startIndex, endIndex ) );
     String rest = null;
-    if ( endIndex < sql.length() ) {
+    if ( endIndex < sqlString.length() ) {
       rest = Const.trim( sqlString.substring( endIndex ) );
       if ( rest.length() == 0 ) {
         rest = null;
@@ -600,6 +736,13 @@ public class ThinUtil {
     return new FoundClause( foundClause, rest );
   }
 
+  /**
+   * Same as {@code string.substring( index ).toUpperCase().startsWith( prefix.toUpperCase() )}, without copying
+   */
+  public static boolean startsWithIgnoreCase( String string, int index, String prefix ) {
+    return string.regionMatches( true, index, prefix, 0, prefix.length() );
+  }
+
   public static boolean like( String subject, String pattern ) {
     return like( pattern ).matcher( subject ).matches();
   }
@@ -50,6 +50,27 @@ public class IifFunction {
     falseValue = extractValue( falseValueString, false );
   }
 
+  private IifFunction() {
+  }
+
+  /**
+   * @return a copy of this function with its own condition
+   */
+  IifFunction copy() {
+    IifFunction copy = new IifFunction();
+    copy.tableAlias = tableAlias;
+    copy.conditionClause = conditionClause;
+    copy.sqlCondition = sqlCondition.copy( sqlCondition.getSelectFields() );
+    copy.serviceFields = serviceFields;
+    copy.trueValueString = trueValueString;
+    copy.trueValue = trueValue;
+    copy.trueField = trueField;
+    copy.falseValueString = falseValueString;
+    copy.falseValue = falseValue;
+    copy.falseField = falseField;
+    return copy;
+  }
+
   private ValueMetaAndData extractValue( String string, boolean trueIndicator ) throws KettleSQLException {
     if ( Const.isEmpty( string ) ) {
       return null;
@@ -70,6 +70,9 @@ public class SQL {
     splitSql( sqlString );
   }
 
+  private SQL() {
+  }
+
   private void splitSql( String sql ) throws KettleSQLException {
     // First get the major blocks...
     /*
@@ -195,6 +198,37 @@ public class SQL {
     }
   }
 
+  /**
+   * Copy a parsed statement, the copy shares no conditions or field lists with this one so both can be used by
+   * different threads.
+   *
+   * @param rowMeta the row layout of the service, equal to the one this statement was parsed against
+   * @return the copy
+   */
+  SQL copy( RowMetaInterface rowMeta ) {
+    SQL copy = new SQL();
+    copy.sqlString = sqlString;
+    copy.rowMeta = rowMeta;
+    copy.serviceClause = serviceClause;
+    copy.namespace = namespace;
+    copy.serviceName = serviceName;
+    copy.serviceAlias = serviceAlias;
+    copy.selectClause = selectClause;
+    copy.whereClause = whereClause;
+    copy.groupClause = groupClause;
+    copy.havingClause = havingClause;
+    copy.orderClause = orderClause;
+    copy.limitClause = limitClause;
+
+    copy.selectFields = selectFields == null ? null : selectFields.copy( null );
+    copy.whereCondition = whereCondition == null ? null : whereCondition.copy( null );
+    copy.groupFields = groupFields == null ? null : groupFields.copy( null );
+    copy.havingCondition = havingCondition == null ? null : havingCondition.copy( copy.selectFields );
+    copy.orderFields = orderFields == null ? null : orderFields.copy( copy.selectFields );
+    copy.limitValues = limitValues == null ? null : limitValues.copy();
+    return copy;
+  }
+
   public String getSqlString() {
     return sqlString;
   }
@@ -207,6 +241,13 @@ public class SQL {
     return serviceName;
   }
 
+  /**
+   * @return the alias of the service in the FROM clause, the service name if there is none
+   */
+  public String getServiceAlias() {
+    return serviceAlias;
+  }
+
   /**
    * @return the selectClause
    */
@@ -0,0 +1,187 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleSQLException;
+import org.pentaho.di.core.jdbc.ThinUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Bounded cache of parsed statements, keyed by the SQL text with its whitespace collapsed and a fingerprint of the
+ * service row layout it was parsed against. Least recently used statements are evicted first.
+ * <p>
+ * The cached statements are never handed out: every caller gets its own copy with cloned conditions, a Kettle
+ * {@link org.pentaho.di.core.Condition} is not safe to evaluate from several threads at once.
+ */
+public final class SQLCache {
+  public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+  private static final SQLCache INSTANCE = new SQLCache( DEFAULT_MAXIMUM_SIZE );
+
+  private final Cache<Key, SQL> statements;
+
+  /**
+   * @param maximumSize number of parsed statements to keep
+   */
+  public SQLCache( long maximumSize ) {
+    statements = CacheBuilder.newBuilder().maximumSize( maximumSize ).recordStats().build();
+  }
+
+  /**
+   * @return the cache shared by everything in this class loader, used by the JDBC driver
+   */
+  public static SQLCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Get a statement parsed against the fields of its service, parsing it on the first request
+   *
+   * @param sqlString the SQL string, new lines are treated as spaces
+   * @param rowMeta   the row layout of the service
+   * @return a copy of the parsed statement owned by the caller
+   * @throws KettleSQLException in case there is a SQL parsing error, failures are not cached
+   */
+  public SQL get( String sqlString, RowMetaInterface rowMeta ) throws KettleSQLException {
+    String normalized = normalize( sqlString );
+    try {
+      SQL parsed = statements.get( new Key( normalized, fingerprint( rowMeta ) ), () -> {
+        SQL sql = new SQL( normalized );
+        sql.parse( rowMeta );
+        return sql;
+      } );
+      return parsed.copy( rowMeta );
+    } catch ( ExecutionException | UncheckedExecutionException e ) {
+      Throwables.propagateIfPossible( e.getCause(), KettleSQLException.class );
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+
+  /**
+   * Drop all cached statements, the counters are kept
+   */
+  public void invalidateAll() {
+    statements.invalidateAll();
+  }
+
+  /**
+   * @return number of cached statements
+   */
+  public long size() {
+    return statements.size();
+  }
+
+  /**
+   * @return lookups answered with a cached statement
+   */
+  public long getHitCount() {
+    return statements.stats().hitCount();
+  }
+
+  /**
+   * @return lookups that had to parse the statement
+   */
+  public long getMissCount() {
+    return statements.stats().missCount();
+  }
+
+  /**
+   * Trim the statement and collapse runs of whitespace outside quoted text and {@code [...]} literals to a single
+   * space, so that statements only differing in layout share an entry. Keyword case is kept as written: telling
+   * keywords apart from names and labels, which do keep their case, takes the tokenizer of {@link SQLFingerprint}.
+   */
+  static String normalize( String sqlString ) {
+    String stripped = Const.trim( ThinUtil.stripNewlines( sqlString ) );
+    StringBuilder normalized = new StringBuilder( stripped.length() );
+    char closingQuote = 0;
+    for ( int i = 0; i < stripped.length(); i++ ) {
+      char c = stripped.charAt( i );
+      if ( closingQuote != 0 ) {
+        // An escaped quote is written twice, it closes the text and opens it again right away
+        if ( c == closingQuote ) {
+          closingQuote = 0;
+        }
+      } else if ( c == '\'' || c == '"' ) {
+        closingQuote = c;
+      } else if ( c == '[' ) {
+        closingQuote = ']';
+      } else if ( Character.isWhitespace( c ) ) {
+        if ( normalized.length() > 0 && normalized.charAt( normalized.length() - 1 ) != ' ' ) {
+          normalized.append( ' ' );
+        }
+        continue;
+      }
+      normalized.append( c );
+    }
+    if ( closingQuote == 0 && normalized.length() > 0 && normalized.charAt( normalized.length() - 1 ) == ' ' ) {
+      normalized.setLength( normalized.length() - 1 );
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Hash everything of the row layout that parsing looks at: names, types and formats of the fields
+   */
+  static HashCode fingerprint( RowMetaInterface rowMeta ) {
+    Hasher hasher = Hashing.murmur3_128().newHasher();
+    for ( ValueMetaInterface valueMeta : rowMeta.getValueMetaList() ) {
+      hasher.putString( valueMeta.getName(), StandardCharsets.UTF_8 )
+        .putInt( valueMeta.getType() )
+        .putInt( valueMeta.getLength() )
+        .putInt( valueMeta.getPrecision() )
+        .putString( Const.NVL( valueMeta.getConversionMask(), "" ), StandardCharsets.UTF_8 )
+        .putByte( (byte) 0 );
+    }
+    return hasher.hash();
+  }
+
+  private static final class Key {
+    private final String sqlString;
+    private final HashCode rowMetaFingerprint;
+
+    Key( String sqlString, HashCode rowMetaFingerprint ) {
+      this.sqlString = sqlString;
+      this.rowMetaFingerprint = rowMetaFingerprint;
+    }
+
+    @Override public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      Key key = (Key) o;
+      return sqlString.equals( key.sqlString ) && rowMetaFingerprint.equals( key.rowMetaFingerprint );
+    }
+
+    @Override public int hashCode() {
+      return Objects.hashCode( sqlString, rowMetaFingerprint );
+    }
+  }
+}
@@ -43,6 +43,7 @@ public class SQLCondition {
   private String conditionClause;
   private SQLFields selectFields;
   private Map<String, DateToStrFunction> dateToStrFunctions = Collections.emptyMap();
+  private Map<String, SQLInList> inLists = Collections.emptyMap();
 
   private static final Pattern
     PARAMETER_REGEX_PATTERN =
@@ -67,6 +68,27 @@ public class SQLCondition {
     parse();
   }
 
+  private SQLCondition() {
+  }
+
+  /**
+   * A Kettle condition keeps evaluation state in its tree, the copy gets a clone of it.
+   *
+   * @param selectFields the copied select fields the copy should refer to
+   * @return a copy of this condition
+   */
+  SQLCondition copy( SQLFields selectFields ) {
+    SQLCondition copy = new SQLCondition();
+    copy.tableAlias = tableAlias;
+    copy.serviceFields = serviceFields;
+    copy.condition = (Condition) condition.clone();
+    copy.conditionClause = conditionClause;
+    copy.selectFields = selectFields;
+    copy.dateToStrFunctions = dateToStrFunctions;
+    copy.inLists = inLists;
+    return copy;
+  }
+
   /**
    * Support for conditions is very simple for now:
    * <p/>
@@ -109,13 +131,13 @@ public class SQLCondition {
       if ( index + word.length() > clause.length() ) {
         return -1; // done.
       }
-      if ( clause.substring( index ).toUpperCase().startsWith( word.toUpperCase() ) ) {
-        if ( index > 0 && String.valueOf( clause.charAt( index - 1 ) ).matches( "\\S" ) ) {
+      if ( ThinUtil.startsWithIgnoreCase( clause, index, word ) ) {
+        if ( index > 0 && !isWhitespace( clause.charAt( index - 1 ) ) ) {
           // symbol before is not a whitespace character
           index++;
           continue;
         }
-        if ( index + word.length() < clause.length() && String.valueOf( clause.charAt( index + word.length() ) ).matches( "\\S" ) ) {
+        if ( index + word.length() < clause.length() && !isWhitespace( clause.charAt( index + word.length() ) ) ) {
           // symbol after is not a whitespace character
           index++;
           continue;
@@ -127,6 +149,13 @@ public class SQLCondition {
     return -1;
   }
 
+  /**
+   * @return true for the characters matched by {@code \s} in a regular expression
+   */
+  private static boolean isWhitespace( char c ) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
   private Condition splitConditionByOperator( String clause, Condition parentCondition, int parentOperator )
     throws KettleSQLException {
     if ( parentCondition == null ) {
@@ -288,12 +317,8 @@ public class SQLCondition {
       String trimmed = Const.trim( right );
       String partClause = trimmed.substring( 1, trimmed.length() - 1 );
       List<String> parts = ThinUtil.splitClause( partClause, ',', '\'' );
-      StringBuilder valueString = new StringBuilder();
+      List<String> elements = new ArrayList<>( parts.size() );
       for ( String part : parts ) {
-        if ( valueString.length() > 0 ) {
-          valueString.append( ";" );
-        }
-
         part = Const.trim( part );
 
         ValueMetaAndData extractedConstraint = ThinUtil.extractConstant( part );
@@ -302,15 +327,19 @@ public class SQLCondition {
         } else if ( !extractedConstraint.getValueMeta().isNumber() && !extractedConstraint.getValueMeta().isBigNumber() ) {
           part = extractedConstraint.toString();
         }
+        elements.add( part );
+      }
 
-        // Escape semi-colons
-        //
-        part = part.replace( ";", "\\;" );
-
-        valueString.append( part );
+      // Semi-colons in the elements are escaped in the list value
+      //
+      SQLInList inList = new SQLInList( elements );
+      String valueString = inList.toConstantInList();
+      if ( inLists.isEmpty() ) {
+        // on first use, replace with a mutable instance
+        inLists = new HashMap<>();
       }
-      value =
-        new ValueMetaAndData( new ValueMetaString( "constant-in-list" ), valueString.toString() );
+      inLists.put( valueString, inList );
+      value = new ValueMetaAndData( new ValueMetaString( "constant-in-list" ), valueString );
     } else {
 
       // Mondrian, analyzer CONTAINS hack:
@@ -494,7 +523,7 @@ public class SQLCondition {
       index = ThinUtil.skipChars( clause, index, '\'', '"' );
       for ( String operator : operators ) {
         if ( index <= clause.length() - operator.length() ) {
-          if ( clause.substring( index ).toUpperCase().startsWith( operator ) ) {
+          if ( ThinUtil.startsWithIgnoreCase( clause, index, operator ) ) {
             int functionIndex = Const.indexOfString( operator, operators );
 
             // OK, we found an operator.
@@ -627,4 +656,17 @@ public class SQLCondition {
   public Collection<DateToStrFunction> getDateToStrFunctions() {
     return dateToStrFunctions.values();
   }
+
+  /**
+   * @param condition an atomic IN condition of this SQL condition
+   * @return the values of the IN list, parsed once, or null if the condition does not compare with a constant list
+   */
+  public SQLInList getInList( Condition condition ) {
+    if ( condition.getFunction() != Condition.FUNC_IN_LIST || condition.getRightExact() == null ) {
+      return null;
+    }
+    String constantInList = condition.getRightExactString();
+    SQLInList inList = inLists.get( constantInList );
+    return inList != null ? inList : SQLInList.fromConstantInList( constantInList );
+  }
 }
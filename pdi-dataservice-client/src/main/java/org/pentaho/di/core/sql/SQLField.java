@@ -255,6 +255,24 @@ public class SQLField {
     }
   }
 
+  /**
+   * @param selectFields the copied select fields the copy should refer to
+   * @return a copy of this field, an IIF function gets its own condition
+   */
+  SQLField copy( SQLFields selectFields ) {
+    SQLField copy = new SQLField( tableAlias, field, alias, aggregation, valueMeta );
+    copy.countStar = countStar;
+    copy.countDistinct = countDistinct;
+    copy.orderField = orderField;
+    copy.ascending = ascending;
+    copy.expression = expression;
+    copy.selectFields = selectFields;
+    copy.valueData = valueData;
+    copy.iif = iif == null ? null : iif.copy();
+    copy.fieldIndex = fieldIndex;
+    return copy;
+  }
+
   /**
    * @return the name
    */
@@ -55,6 +55,27 @@ public class SQLFields {
     parse( orderClause );
   }
 
+  private SQLFields() {
+  }
+
+  /**
+   * @param selectFields the copied select fields the copy should refer to
+   * @return a copy of these fields, the fields themselves are copied too
+   */
+  SQLFields copy( SQLFields selectFields ) {
+    SQLFields copy = new SQLFields();
+    copy.tableAlias = tableAlias;
+    copy.serviceFields = serviceFields;
+    copy.fieldsClause = fieldsClause;
+    copy.selectFields = selectFields;
+    copy.distinct = distinct;
+    copy.fields = Lists.newArrayListWithCapacity( fields.size() );
+    for ( SQLField field : fields ) {
+      copy.fields.add( field.copy( selectFields ) );
+    }
+    return copy;
+  }
+
   private void parse( boolean orderClause ) throws KettleSQLException {
     if ( Const.isEmpty( fieldsClause ) ) {
       return;
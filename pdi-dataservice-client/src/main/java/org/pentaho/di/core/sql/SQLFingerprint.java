@@ -0,0 +1,304 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleSQLException;
+import org.pentaho.di.core.jdbc.ThinUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The shape of a statement: the clauses found by {@link SQL} with every literal replaced by a positional {@code ?}
+ * slot, keywords and unquoted names in upper case, whitespace collapsed and the service alias removed from field
+ * references. Statements that only differ in their literal values, layout or alias quoting share the same normalized
+ * text and 64-bit fingerprint, so caches, statistics and prepared plans can be keyed by shape.
+ * <p>
+ * Field names are compared without regard to case, like service fields are looked up. Labels given with AS and the
+ * service name keep their case.
+ */
+public class SQLFingerprint {
+  private final String normalizedSql;
+  private final List<String> literals;
+  private final long fingerprint;
+
+  private SQLFingerprint( String normalizedSql, List<String> literals ) {
+    this.normalizedSql = normalizedSql;
+    this.literals = ImmutableList.copyOf( literals );
+    this.fingerprint = Hashing.murmur3_128().hashString( normalizedSql, StandardCharsets.UTF_8 ).asLong();
+  }
+
+  /**
+   * @param sqlString the SQL string to split and normalize
+   * @throws KettleSQLException in case the statement can't be split into clauses
+   */
+  public static SQLFingerprint of( String sqlString ) throws KettleSQLException {
+    return of( new SQL( ThinUtil.stripNewlines( sqlString ) ) );
+  }
+
+  /**
+   * @param sql a statement, it does not have to be parsed against the service fields
+   */
+  public static SQLFingerprint of( SQL sql ) {
+    Normalizer normalizer = new Normalizer( sql.getServiceAlias() );
+    normalizer.clause( "SELECT", sql.getSelectClause() );
+    if ( sql.hasServiceClause() ) {
+      normalizer.token( "FROM" );
+      if ( !Const.isEmpty( sql.getNamespace() ) ) {
+        normalizer.token( quote( sql.getNamespace() ) + "." + quote( sql.getServiceName() ) );
+      } else {
+        normalizer.token( quote( sql.getServiceName() ) );
+      }
+    }
+    normalizer.clause( "WHERE", sql.getWhereClause() );
+    normalizer.clause( "GROUP BY", sql.getGroupClause() );
+    normalizer.clause( "HAVING", sql.getHavingClause() );
+    normalizer.clause( "ORDER BY", sql.getOrderClause() );
+    normalizer.clause( "LIMIT", sql.getLimitClause() );
+    return new SQLFingerprint( normalizer.sql.toString(), normalizer.literals );
+  }
+
+  /**
+   * @return the statement with literals replaced by {@code ?}
+   */
+  public String getNormalizedSql() {
+    return normalizedSql;
+  }
+
+  /**
+   * @return the literals as they were written, in the order of their slots
+   */
+  public List<String> getLiterals() {
+    return literals;
+  }
+
+  /**
+   * @return a 64-bit hash of the normalized statement, the same in every JVM
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  @Override public String toString() {
+    return normalizedSql;
+  }
+
+  private static String quote( String name ) {
+    return "\"" + name.replace( "\"", "\"\"" ) + "\"";
+  }
+
+  private static class Normalizer {
+    private final String tableAlias;
+    private final StringBuilder sql = new StringBuilder();
+    private final List<String> literals = new ArrayList<>();
+    private String previous;
+
+    Normalizer( String tableAlias ) {
+      this.tableAlias = tableAlias;
+    }
+
+    void clause( String keyword, String clause ) {
+      if ( Const.isEmpty( clause ) ) {
+        return;
+      }
+      token( keyword );
+
+      int index = 0;
+      while ( index < clause.length() ) {
+        char c = clause.charAt( index );
+        int end;
+        if ( Character.isWhitespace( c ) ) {
+          index++;
+          continue;
+        } else if ( c == '\'' ) {
+          end = endOfQuoted( clause, index, '\'' );
+          literal( clause.substring( index, end ) );
+        } else if ( c == '[' ) {
+          end = clause.indexOf( ']', index );
+          end = end < 0 ? clause.length() : end + 1;
+          literal( clause.substring( index, end ) );
+        } else if ( isDigit( c ) || c == '.' && index + 1 < clause.length() && isDigit( clause.charAt( index + 1 ) ) ) {
+          end = endOfNumber( clause, index );
+          literal( clause.substring( index, end ) );
+        } else if ( c == '"' || isWordStart( c ) ) {
+          end = endOfName( clause, index );
+          name( clause.substring( index, end ) );
+        } else {
+          end = endOfOperator( clause, index );
+          token( clause.substring( index, end ) );
+        }
+        index = end;
+      }
+    }
+
+    private void literal( String literal ) {
+      literals.add( literal );
+      token( "?" );
+    }
+
+    /**
+     * A possibly qualified name or a boolean literal. The service alias is stripped like the parser does, and every
+     * part of a field name is upper case, only quoted if it has to be. Labels given with AS keep their case.
+     */
+    private void name( String name ) {
+      boolean label = "AS".equals( previous );
+      if ( !label && ( name.equalsIgnoreCase( "TRUE" ) || name.equalsIgnoreCase( "FALSE" ) ) ) {
+        literal( name );
+        return;
+      }
+      if ( !label && tableAlias != null ) {
+        String field = ThinUtil.stripQuoteTableAlias( name, tableAlias );
+        if ( !field.equals( name ) && !field.startsWith( "\"" ) ) {
+          // A single field name, the parser reads it without alias and quotes
+          String part = field.toUpperCase();
+          token( isWord( part ) ? part : quote( part ) );
+          return;
+        }
+        name = field;
+      }
+
+      StringBuilder canonical = new StringBuilder();
+      int index = 0;
+      while ( index < name.length() ) {
+        if ( name.charAt( index ) == '.' ) {
+          canonical.append( '.' );
+          index++;
+          continue;
+        }
+        String part;
+        int end;
+        if ( name.charAt( index ) == '"' ) {
+          end = endOfQuoted( name, index, '"' );
+          part = name.substring( index + 1, Math.max( index + 1, end - 1 ) ).replace( "\"\"", "\"" );
+        } else {
+          end = endOfWord( name, index );
+          part = name.substring( index, end );
+        }
+        if ( label ) {
+          canonical.append( quote( part ) );
+        } else {
+          part = part.toUpperCase();
+          canonical.append( isWord( part ) ? part : quote( part ) );
+        }
+        index = end;
+      }
+      token( canonical.toString() );
+    }
+
+    void token( String token ) {
+      if ( previous != null && !previous.equals( "(" ) && !token.equals( ")" ) && !token.equals( "," ) ) {
+        sql.append( ' ' );
+      }
+      sql.append( token );
+      previous = token;
+    }
+
+    private static int endOfQuoted( String string, int index, char quote ) {
+      int end = index + 1;
+      while ( end < string.length() ) {
+        if ( string.charAt( end ) == quote ) {
+          if ( end + 1 < string.length() && string.charAt( end + 1 ) == quote ) {
+            // Escaped quote
+            end += 2;
+            continue;
+          }
+          return end + 1;
+        }
+        end++;
+      }
+      return end;
+    }
+
+    private static int endOfNumber( String string, int index ) {
+      int end = index;
+      while ( end < string.length() && ( isDigit( string.charAt( end ) ) || string.charAt( end ) == '.' ) ) {
+        end++;
+      }
+      if ( end < string.length() && ( string.charAt( end ) == 'E' || string.charAt( end ) == 'e' ) ) {
+        int exponent = end + 1;
+        if ( exponent < string.length() && ( string.charAt( exponent ) == '+' || string.charAt( exponent ) == '-' ) ) {
+          exponent++;
+        }
+        if ( exponent < string.length() && isDigit( string.charAt( exponent ) ) ) {
+          end = exponent;
+          while ( end < string.length() && isDigit( string.charAt( end ) ) ) {
+            end++;
+          }
+        }
+      }
+      return end;
+    }
+
+    /**
+     * @return end of words and quoted names joined by dots
+     */
+    private static int endOfName( String string, int index ) {
+      int end = index;
+      while ( end < string.length() ) {
+        end = string.charAt( end ) == '"' ? endOfQuoted( string, end, '"' ) : endOfWord( string, end );
+        if ( end + 1 < string.length() && string.charAt( end ) == '.'
+          && ( string.charAt( end + 1 ) == '"' || isWordStart( string.charAt( end + 1 ) ) ) ) {
+          end++;
+        } else {
+          break;
+        }
+      }
+      return end;
+    }
+
+    private static int endOfWord( String string, int index ) {
+      int end = index;
+      while ( end < string.length() && ( isWordStart( string.charAt( end ) ) || isDigit( string.charAt( end ) ) ) ) {
+        end++;
+      }
+      return end;
+    }
+
+    private static int endOfOperator( String string, int index ) {
+      if ( index + 1 < string.length() ) {
+        String pair = string.substring( index, index + 2 );
+        switch ( pair ) {
+          case "<>":
+          case "<=":
+          case ">=":
+          case "=<":
+          case "=>":
+          case "!=":
+          case "||":
+            return index + 2;
+          default:
+            break;
+        }
+      }
+      return index + 1;
+    }
+
+    private static boolean isWord( String string ) {
+      return !string.isEmpty() && isWordStart( string.charAt( 0 ) ) && endOfWord( string, 0 ) == string.length();
+    }
+
+    private static boolean isWordStart( char c ) {
+      return Character.isLetter( c ) || c == '_' || c == '$';
+    }
+
+    private static boolean isDigit( char c ) {
+      return c >= '0' && c <= '9';
+    }
+  }
+}
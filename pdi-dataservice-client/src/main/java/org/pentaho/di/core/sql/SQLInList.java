@@ -0,0 +1,137 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The values of an IN ( ... ) list, parsed once and kept in a hash set. Values are compared the way the Kettle
+ * {@link org.pentaho.di.core.Condition} compares them: by the compatible string of the field value, with any
+ * backslashes removed from the list elements.
+ */
+public class SQLInList {
+  private final ImmutableList<String> elements;
+  private final ImmutableSet<String> values;
+
+  /**
+   * @param elements the list elements, as they appear in the condition value
+   */
+  public SQLInList( List<String> elements ) {
+    this.elements = ImmutableList.copyOf( elements );
+
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for ( String element : elements ) {
+      builder.add( element.replace( "\\", "" ) );
+    }
+    values = builder.build();
+  }
+
+  /**
+   * Parse the semicolon separated value of a legacy constant-in-list condition
+   */
+  public static SQLInList fromConstantInList( String constantInList ) {
+    List<String> elements = new ArrayList<>();
+    StringBuilder element = new StringBuilder();
+    for ( int i = 0; i < constantInList.length(); i++ ) {
+      char c = constantInList.charAt( i );
+      if ( c == '\\' && i + 1 < constantInList.length() && constantInList.charAt( i + 1 ) == ';' ) {
+        element.append( ';' );
+        i++;
+      } else if ( c == ';' ) {
+        elements.add( element.toString() );
+        element.setLength( 0 );
+      } else {
+        element.append( c );
+      }
+    }
+    elements.add( element.toString() );
+    return new SQLInList( elements );
+  }
+
+  /**
+   * @return the semicolon separated value of the constant-in-list condition, semicolons in elements are escaped
+   */
+  public String toConstantInList() {
+    StringBuilder builder = new StringBuilder();
+    for ( String element : elements ) {
+      if ( builder.length() > 0 ) {
+        builder.append( ';' );
+      }
+      builder.append( element.replace( ";", "\\;" ) );
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @param valueMeta the type of the value
+   * @param value     the value to look up
+   * @return true if the value is in the list, null is never in the list
+   * @throws KettleValueException in case the value can't be converted to a string
+   */
+  public boolean contains( ValueMetaInterface valueMeta, Object value ) throws KettleValueException {
+    String string = valueMeta.getCompatibleString( value );
+    return string != null && values.contains( string );
+  }
+
+  /**
+   * @return the list elements, in the order of the condition
+   */
+  public List<String> getElements() {
+    return elements;
+  }
+
+  /**
+   * @return number of list elements
+   */
+  public int size() {
+    return elements.size();
+  }
+
+  /**
+   * Write the list as an element count followed by the length and UTF-8 bytes of every element
+   */
+  public void writeTo( DataOutput output ) throws IOException {
+    output.writeInt( elements.size() );
+    for ( String element : elements ) {
+      byte[] bytes = element.getBytes( StandardCharsets.UTF_8 );
+      output.writeInt( bytes.length );
+      output.write( bytes );
+    }
+  }
+
+  /**
+   * Read a list written by {@link #writeTo(DataOutput)}
+   */
+  public static SQLInList readFrom( DataInput input ) throws IOException {
+    int size = input.readInt();
+    List<String> elements = new ArrayList<>( size );
+    for ( int i = 0; i < size; i++ ) {
+      byte[] bytes = new byte[ input.readInt() ];
+      input.readFully( bytes );
+      elements.add( new String( bytes, StandardCharsets.UTF_8 ) );
+    }
+    return new SQLInList( elements );
+  }
+}
@@ -30,6 +30,17 @@ public class SQLLimit {
     parse();
   }
 
+  private SQLLimit() {
+  }
+
+  SQLLimit copy() {
+    SQLLimit copy = new SQLLimit();
+    copy.limitClause = limitClause;
+    copy.limit = limit;
+    copy.offset = offset;
+    return copy;
+  }
+
   /**
    *
    * @return The limit of rows to return
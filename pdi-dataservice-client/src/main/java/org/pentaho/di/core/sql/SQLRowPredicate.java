@@ -0,0 +1,187 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import org.pentaho.di.core.Condition;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaAndData;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+/**
+ * A {@link SQLCondition} compiled against a row layout, for filtering rows without walking the interpreted
+ * {@link Condition} tree. Field indexes are resolved once, constants are converted to the type of the field they are
+ * compared with, IN lists are hash lookups and AND/OR short-circuit.
+ * <p>
+ * Results are the same as {@link Condition#evaluate(RowMetaInterface, Object[])}: conditions without a fast path
+ * (LIKE, REGEX, CONTAINS, comparisons between two fields or with a null value) are evaluated by the condition itself.
+ */
+public class SQLRowPredicate {
+  private final Node root;
+
+  private SQLRowPredicate( Node root ) {
+    this.root = root;
+  }
+
+  /**
+   * @param sqlCondition the parsed condition
+   * @param rowMeta      the layout of the rows to test
+   */
+  public static SQLRowPredicate compile( SQLCondition sqlCondition, RowMetaInterface rowMeta ) {
+    return new SQLRowPredicate( compile( sqlCondition, sqlCondition.getCondition(), rowMeta ) );
+  }
+
+  /**
+   * @param row a row of the layout this predicate was compiled for
+   * @return true if the row satisfies the condition
+   * @throws KettleValueException in case a value can't be compared
+   */
+  public boolean test( Object[] row ) throws KettleValueException {
+    return root.test( row );
+  }
+
+  private static Node compile( SQLCondition sqlCondition, Condition condition, RowMetaInterface rowMeta ) {
+    if ( !condition.isAtomic() ) {
+      int size = condition.nrConditions();
+      Node[] children = new Node[ size ];
+      int[] operators = new int[ size ];
+      for ( int i = 0; i < size; i++ ) {
+        children[ i ] = compile( sqlCondition, condition.getCondition( i ), rowMeta );
+        operators[ i ] = condition.getCondition( i ).getOperator();
+      }
+      return new CompositeNode( children, operators, condition.isNegated() );
+    }
+
+    boolean negated = condition.isNegated();
+    if ( condition.getFunction() == Condition.FUNC_TRUE ) {
+      return row -> !negated;
+    }
+
+    Node interpreted = row -> condition.evaluate( rowMeta, row );
+    int index = condition.getLeftValuename() == null ? -1 : rowMeta.indexOfValue( condition.getLeftValuename() );
+    if ( index < 0 ) {
+      return interpreted;
+    }
+    ValueMetaInterface fieldMeta = rowMeta.getValueMeta( index );
+
+    switch ( condition.getFunction() ) {
+      case Condition.FUNC_NULL:
+        return row -> negated != fieldMeta.isNull( row[ index ] );
+      case Condition.FUNC_NOT_NULL:
+        return row -> negated == fieldMeta.isNull( row[ index ] );
+      default:
+        break;
+    }
+
+    ValueMetaAndData right = condition.getRightExact();
+    if ( fieldMeta.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL
+      || right == null || right.getValueData() == null ) {
+      return interpreted;
+    }
+
+    if ( condition.getFunction() == Condition.FUNC_IN_LIST ) {
+      SQLInList inList = sqlCondition.getInList( condition );
+      return row -> negated != inList.contains( fieldMeta, row[ index ] );
+    }
+
+    Comparison comparison = getComparison( condition.getFunction() );
+    if ( comparison == null ) {
+      return interpreted;
+    }
+    Object constant;
+    try {
+      constant = fieldMeta.getType() == right.getValueMeta().getType()
+        ? right.getValueMeta().convertToNormalStorageType( right.getValueData() )
+        : fieldMeta.convertData( right.getValueMeta(), right.getValueData() );
+    } catch ( KettleValueException e ) {
+      // Let the condition report it
+      return interpreted;
+    }
+    return row -> {
+      Object value = row[ index ];
+      if ( fieldMeta.isNull( value ) ) {
+        // Null handling depends on the Kettle configuration
+        return interpreted.test( row );
+      }
+      return negated != comparison.matches( fieldMeta.compare( value, constant ) );
+    };
+  }
+
+  private static Comparison getComparison( int function ) {
+    switch ( function ) {
+      case Condition.FUNC_EQUAL:
+        return result -> result == 0;
+      case Condition.FUNC_NOT_EQUAL:
+        return result -> result != 0;
+      case Condition.FUNC_SMALLER:
+        return result -> result < 0;
+      case Condition.FUNC_SMALLER_EQUAL:
+        return result -> result <= 0;
+      case Condition.FUNC_LARGER:
+        return result -> result > 0;
+      case Condition.FUNC_LARGER_EQUAL:
+        return result -> result >= 0;
+      default:
+        return null;
+    }
+  }
+
+  private interface Node {
+    boolean test( Object[] row ) throws KettleValueException;
+  }
+
+  private interface Comparison {
+    boolean matches( int compareResult );
+  }
+
+  private static class CompositeNode implements Node {
+    private final Node[] children;
+    private final int[] operators;
+    private final boolean negated;
+
+    CompositeNode( Node[] children, int[] operators, boolean negated ) {
+      this.children = children;
+      this.operators = operators;
+      this.negated = negated;
+    }
+
+    @Override public boolean test( Object[] row ) throws KettleValueException {
+      // The operator of the first condition is ignored, like Condition does
+      boolean result = children[ 0 ].test( row );
+      for ( int i = 1; i < children.length; i++ ) {
+        switch ( operators[ i ] ) {
+          case Condition.OPERATOR_OR:
+            result = result || children[ i ].test( row );
+            break;
+          case Condition.OPERATOR_AND:
+            result = result && children[ i ].test( row );
+            break;
+          case Condition.OPERATOR_OR_NOT:
+            result = result || !children[ i ].test( row );
+            break;
+          case Condition.OPERATOR_AND_NOT:
+            result = result && !children[ i ].test( row );
+            break;
+          case Condition.OPERATOR_XOR:
+            result = result ^ children[ i ].test( row );
+            break;
+          default:
+            break;
+        }
+      }
+      return negated != result;
+    }
+  }
+}
@@ -22,6 +22,10 @@ import org.pentaho.di.core.plugins.DatabaseMetaPlugin;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.dataservice.jdbc.ThinConnection;
 import org.pentaho.di.trans.dataservice.jdbc.ThinDriver;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinRowStream;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 /**
  * Contains the wrapper for the Kettle Think JDBC driver database connection information through static final members
@@ -220,4 +224,12 @@ public class DataServiceClientPlugin extends BaseDatabaseMeta implements Databas
   @Override public boolean requiresName() {
     return false;
   }
+
+  /**
+   * @param resultSet result set of a query on this database
+   * @return the result set's Kettle rows, or null if it is not a thin result set
+   */
+  public static IThinRowStream getRowStream( ResultSet resultSet ) throws SQLException {
+    return resultSet.isWrapperFor( IThinRowStream.class ) ? resultSet.unwrap( IThinRowStream.class ) : null;
+  }
 }
@@ -15,6 +15,8 @@
 package org.pentaho.di.trans.dataservice.jdbc;
 
 import com.google.common.base.Throwables;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.dataservice.jdbc.annotation.NotSupported;
@@ -45,7 +47,14 @@ import java.util.Map;
  */
 public abstract class BaseResultSet extends ThinBase implements ResultSet {
   private final RowMetaInterface rowMeta;
+  /**
+   * Value metas of the columns, and their types where the data is stored as plain objects, see
+   * {@link #readValueMetas()}
+   */
+  private ValueMetaInterface[] valueMetas;
+  private int[] plainTypes;
   private Object[] currentRow;
+  private PrimitiveRow primitiveRow;
   private int rowNumber = 0;
   private boolean lastNull;
   private ThinStatement statement;
@@ -58,6 +67,16 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   protected abstract int size() throws SQLException;
 
+  /**
+   * Subclasses that read rows into a {@link PrimitiveRow} return it here, the getters then read its slots instead of
+   * the row returned by {@link #retrieveRow(int)}.
+   *
+   * @return the buffer holding the current row, or null if rows are plain arrays
+   */
+  protected PrimitiveRow getPrimitiveRow() {
+    return null;
+  }
+
   @Override @NotSupported
   public boolean rowDeleted() throws SQLException {
     throw new SQLFeatureNotSupportedException( "Result set is read-only" );
@@ -80,12 +99,13 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public Date getDate( int index ) throws SQLException {
-    return getDate( index, Calendar.getInstance() );
+    java.util.Date date = getDateValue( index );
+    return date != null ? new Date( date.getTime() ) : null;
   }
 
   @Override
   public Date getDate( String columnName ) throws SQLException {
-    return getDate( columnName, Calendar.getInstance() );
+    return getDate( findColumn( columnName ) );
   }
 
   @Override
@@ -97,18 +117,26 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
     return date;
   }
 
-  private Boolean setCalendar( int index, final Calendar calendar ) throws SQLException {
-    return getValue( index, new ValueRetriever<Boolean>() {
-      @Override public Boolean value( int index ) throws Exception {
-        java.util.Date date = rowMeta.getDate( currentRow, index );
-        if ( date != null ) {
-          calendar.setTime( date );
-          return true;
-        } else {
-          return false;
-        }
-      }
-    } );
+  private boolean setCalendar( int index, Calendar calendar ) throws SQLException {
+    java.util.Date date = getDateValue( index );
+    if ( date != null ) {
+      calendar.setTime( date );
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  private java.util.Date getDateValue( int index ) throws SQLException {
+    Object data = getColumnData( index );
+    try {
+      java.util.Date value = plainTypes[ index - 1 ] == ValueMetaInterface.TYPE_DATE && data instanceof java.util.Date
+        ? (java.util.Date) data : valueMetas[ index - 1 ].getDate( data );
+      lastNull = value == null;
+      return value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -118,11 +146,20 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public double getDouble( int index ) throws SQLException {
-    return getNonNullableValue( index, new ValueRetriever<Double>() {
-      @Override public Double value( int index ) throws Exception {
-        return rowMeta.getNumber( currentRow, index );
-      }
-    }, 0.0 );
+    checkColumn( index );
+    if ( primitiveRow != null && primitiveRow.getPrimitiveType( index - 1 ) == ValueMetaInterface.TYPE_NUMBER ) {
+      lastNull = primitiveRow.isNull( index - 1 );
+      return primitiveRow.getDouble( index - 1 );
+    }
+    Object data = getColumnValue( index - 1 );
+    try {
+      Double value = plainTypes[ index - 1 ] == ValueMetaInterface.TYPE_NUMBER && data instanceof Double
+        ? (Double) data : valueMetas[ index - 1 ].getNumber( data );
+      lastNull = value == null;
+      return value == null ? 0.0 : value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -152,11 +189,14 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public BigDecimal getBigDecimal( int index ) throws SQLException {
-    return getValue( index, new ValueRetriever<BigDecimal>() {
-      @Override public BigDecimal value( int index ) throws Exception {
-        return rowMeta.getBigNumber( currentRow, index );
-      }
-    } );
+    Object data = getColumnData( index );
+    try {
+      BigDecimal value = valueMetas[ index - 1 ].getBigNumber( data );
+      lastNull = value == null;
+      return value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -198,11 +238,20 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public boolean getBoolean( int index ) throws SQLException {
-    return getNonNullableValue( index, new ValueRetriever<Boolean>() {
-      @Override public Boolean value( int index ) throws Exception {
-        return rowMeta.getBoolean( currentRow, index );
-      }
-    }, false );
+    checkColumn( index );
+    if ( primitiveRow != null && primitiveRow.getPrimitiveType( index - 1 ) == ValueMetaInterface.TYPE_BOOLEAN ) {
+      lastNull = primitiveRow.isNull( index - 1 );
+      return primitiveRow.getLong( index - 1 ) != 0L;
+    }
+    Object data = getColumnValue( index - 1 );
+    try {
+      Boolean value = plainTypes[ index - 1 ] == ValueMetaInterface.TYPE_BOOLEAN && data instanceof Boolean
+        ? (Boolean) data : valueMetas[ index - 1 ].getBoolean( data );
+      lastNull = value == null;
+      return value != null && value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -223,11 +272,14 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public byte[] getBytes( int index ) throws SQLException {
-    return getValue( index, new ValueRetriever<byte[]>() {
-      @Override public byte[] value( int index ) throws Exception {
-        return rowMeta.getBinary( currentRow, index );
-      }
-    } );
+    Object data = getColumnData( index );
+    try {
+      byte[] value = valueMetas[ index - 1 ].getBinary( data );
+      lastNull = value == null;
+      return value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -277,11 +329,20 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public long getLong( int index ) throws SQLException {
-    return getNonNullableValue( index, new ValueRetriever<Long>() {
-      @Override public Long value( int index ) throws Exception {
-        return rowMeta.getInteger( currentRow, index );
-      }
-    }, 0l );
+    checkColumn( index );
+    if ( primitiveRow != null && primitiveRow.getPrimitiveType( index - 1 ) == ValueMetaInterface.TYPE_INTEGER ) {
+      lastNull = primitiveRow.isNull( index - 1 );
+      return primitiveRow.getLong( index - 1 );
+    }
+    Object data = getColumnValue( index - 1 );
+    try {
+      Long value = plainTypes[ index - 1 ] == ValueMetaInterface.TYPE_INTEGER && data instanceof Long
+        ? (Long) data : valueMetas[ index - 1 ].getInteger( data );
+      lastNull = value == null;
+      return value == null ? 0L : value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -320,15 +381,13 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
   }
 
   @Override
-  public Object getObject( final int index ) throws SQLException {
-    return getValue( index, new ValueRetriever<Object>() {
-      @Override public Object value( int i ) throws Exception {
-        if ( getRowMeta().getValueMeta( i ).getType() == ValueMetaInterface.TYPE_DATE ) {
-          return getTimestamp( index );
-        }
-        return currentRow[ i ];
-      }
-    } );
+  public Object getObject( int index ) throws SQLException {
+    Object data = getColumnData( index );
+    if ( valueMetas[ index - 1 ].getType() == ValueMetaInterface.TYPE_DATE ) {
+      return getTimestamp( index );
+    }
+    lastNull = data == null;
+    return data;
   }
 
   @Override
@@ -389,11 +448,14 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public String getString( int index ) throws SQLException {
-    return getValue( index, new ValueRetriever<String>() {
-      @Override public String value( int index ) throws Exception {
-        return rowMeta.getString( currentRow, index );
-      }
-    } );
+    Object data = getColumnData( index );
+    try {
+      String value = valueMetas[ index - 1 ].getString( data );
+      lastNull = value == null;
+      return value;
+    } catch ( KettleValueException e ) {
+      throw new SQLException( e );
+    }
   }
 
   @Override
@@ -403,12 +465,13 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public Time getTime( int index ) throws SQLException {
-    return getTime( index, Calendar.getInstance() );
+    java.util.Date date = getDateValue( index );
+    return date != null ? new Time( date.getTime() ) : null;
   }
 
   @Override
   public Time getTime( String columnLabel ) throws SQLException {
-    return getTime( findColumn( columnLabel ), Calendar.getInstance() );
+    return getTime( findColumn( columnLabel ) );
   }
 
   @Override
@@ -427,12 +490,13 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override
   public Timestamp getTimestamp( int index ) throws SQLException {
-    return getTimestamp( index, Calendar.getInstance() );
+    java.util.Date date = getDateValue( index );
+    return date != null ? new Timestamp( date.getTime() ) : null;
   }
 
   @Override
   public Timestamp getTimestamp( String columnName ) throws SQLException {
-    return getTimestamp( findColumn( columnName ), Calendar.getInstance() );
+    return getTimestamp( findColumn( columnName ) );
   }
 
   @Override
@@ -894,37 +958,40 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
     return type.cast( getObject( columnLabel ) );
   }
 
-  private <T> T getValue( int index, ValueRetriever<T> valueRetriever ) throws SQLException {
-    if ( index < 1 || rowMeta.size() < index ) {
-      throw new SQLException( "Invalid column reference: " + index );
-    }
+  /**
+   * Check the column reference and return the column's data in the current row
+   *
+   * @param index column index, starting at 1
+   */
+  private Object getColumnData( int index ) throws SQLException {
+    checkColumn( index );
+    return getColumnValue( index - 1 );
+  }
 
-    if ( currentRow == null ) {
-      throw new SQLException( "Current row is not selected" );
+  /**
+   * @param i column index, starting at 0
+   */
+  private Object getColumnValue( int i ) throws SQLException {
+    if ( primitiveRow == null ) {
+      return currentRow[ i ];
     }
-
     try {
-      T value = valueRetriever.value( index - 1 );
-      lastNull = value == null;
-      return value;
-    } catch ( Exception e ) {
-      Throwables.propagateIfPossible( e, SQLException.class );
-      throw new SQLException( e );
+      return primitiveRow.getObject( i );
+    } catch ( KettleException e ) {
+      throw new SQLException( "Unable to decode column " + ( i + 1 ), e );
     }
   }
 
-  /**
-   * Retrieves the value of a non-nullable column.  If the column has a SQL NULL value,
-   * return the specified defaultValue instead.
-   * Methods which return primitive values (getLong, getInt, getBoolean, etc.) cannot
-   * return null.  The client can determine whether the value was SQL NULL or actually
-   * equal to defaultValue by using the .wasNull() method.
-   * @throws SQLException
-   */
-  private <T> T getNonNullableValue( int index, ValueRetriever<T> valueRetriever, T defaultValue )
-          throws SQLException {
-    T value = getValue( index, valueRetriever );
-    return value == null ? defaultValue : value;
+  private void checkColumn( int index ) throws SQLException {
+    if ( currentRow == null ) {
+      if ( index < 1 || rowMeta.size() < index ) {
+        throw new SQLException( "Invalid column reference: " + index );
+      }
+      throw new SQLException( "Current row is not selected" );
+    }
+    if ( index < 1 || valueMetas.length < index ) {
+      throw new SQLException( "Invalid column reference: " + index );
+    }
   }
 
   @Override
@@ -982,12 +1049,17 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
 
   @Override public boolean absolute( int row ) throws SQLException {
     verifyOpen();
-    while ( row < 0 ) {
-      row += size();
+    if ( row < 0 ) {
+      // Counted back from the end, -1 is the last row
+      row = Math.max( 0, size() + 1 + row );
     }
     try {
       currentRow = retrieveRow( row );
       rowNumber = currentRow != null ? row : row > size() ? size() + 1 : 0;
+      if ( currentRow != null ) {
+        readValueMetas();
+      }
+      primitiveRow = currentRow != null ? getPrimitiveRow() : null;
       return currentRow != null;
     } catch ( Exception e ) {
       Throwables.propagateIfPossible( e, SQLException.class );
@@ -995,6 +1067,23 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
     }
   }
 
+  /**
+   * Look up the value metas once, instead of for every value. Checked again for every row, in case fields were added.
+   */
+  private void readValueMetas() {
+    int size = rowMeta.size();
+    if ( valueMetas == null || valueMetas.length != size ) {
+      ValueMetaInterface[] metas = new ValueMetaInterface[ size ];
+      int[] types = new int[ size ];
+      for ( int i = 0; i < size; i++ ) {
+        metas[ i ] = rowMeta.getValueMeta( i );
+        types[ i ] = metas[ i ].isStorageNormal() ? metas[ i ].getType() : ValueMetaInterface.TYPE_NONE;
+      }
+      plainTypes = types;
+      valueMetas = metas;
+    }
+  }
+
   @Override @NotSupported
   public void cancelRowUpdates() throws SQLException {
     throw new SQLFeatureNotSupportedException( "Updates are not supported" );
@@ -1064,11 +1153,18 @@ public abstract class BaseResultSet extends ThinBase implements ResultSet {
     return absolute( rowNumber + rows );
   }
 
+  /**
+   * @return values of the current row. Rows kept in a {@link PrimitiveRow} are boxed into a new array, so that the
+   * next row does not overwrite them.
+   */
   public Object[] getCurrentRow() {
-    return currentRow;
-  }
-
-  private interface ValueRetriever<T> {
-    T value( int index ) throws Exception;
+    if ( primitiveRow == null ) {
+      return currentRow;
+    }
+    try {
+      return primitiveRow.toArray();
+    } catch ( KettleException e ) {
+      throw new IllegalStateException( "Unable to decode the current row", e );
+    }
   }
 }
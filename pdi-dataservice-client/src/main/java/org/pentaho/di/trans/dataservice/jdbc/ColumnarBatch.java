@@ -0,0 +1,294 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Charsets;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinColumnBatch;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * One decoded {@link ResultFormat#COLUMNAR} batch. Columns are read-only views over the block received from the
+ * server, so values are only materialized when they are asked for.
+ *
+ * @see ColumnarBatchWriter
+ */
+class ColumnarBatch implements IThinColumnBatch {
+  private final int rowCount;
+  private final Column[] columns;
+
+  private ColumnarBatch( int rowCount, Column[] columns ) {
+    this.rowCount = rowCount;
+    this.columns = columns;
+  }
+
+  /**
+   * Lay out column views over a received block
+   *
+   * @param types    Kettle value types of each column
+   * @param rowCount number of rows in the batch
+   * @param block    block content, exactly as written by {@link ColumnarBatchWriter}
+   * @return decoded batch
+   * @throws SQLException if the block does not match the expected layout
+   */
+  static ColumnarBatch wrap( int[] types, int rowCount, byte[] block ) throws SQLException {
+    ByteBuffer buffer = ByteBuffer.wrap( block );
+    Column[] columns = new Column[ types.length ];
+    int bitmapLength = ColumnarBatchWriter.bitmapLength( rowCount );
+    int position = 0;
+    try {
+      for ( int i = 0; i < types.length; i++ ) {
+        int nulls = position;
+        int values = nulls + bitmapLength;
+        switch ( types[ i ] ) {
+          case ValueMetaInterface.TYPE_INTEGER:
+            columns[ i ] = new LongColumn( buffer, nulls, values );
+            position = values + rowCount * 8;
+            break;
+          case ValueMetaInterface.TYPE_DATE:
+            columns[ i ] = new DateColumn( buffer, nulls, values );
+            position = values + rowCount * 8;
+            break;
+          case ValueMetaInterface.TYPE_NUMBER:
+            columns[ i ] = new DoubleColumn( buffer, nulls, values );
+            position = values + rowCount * 8;
+            break;
+          case ValueMetaInterface.TYPE_BOOLEAN:
+            columns[ i ] = new BooleanColumn( buffer, nulls, values );
+            position = values + bitmapLength;
+            break;
+          case ValueMetaInterface.TYPE_TIMESTAMP:
+            columns[ i ] = new TimestampColumn( buffer, nulls, values, values + rowCount * 8 );
+            position = values + rowCount * 12;
+            break;
+          default:
+            int data = values + ( rowCount + 1 ) * 4;
+            columns[ i ] = new VariableWidthColumn( types[ i ], buffer, nulls, values, data );
+            position = data + buffer.getInt( values + rowCount * 4 );
+        }
+      }
+    } catch ( IndexOutOfBoundsException e ) {
+      throw new SQLException( "Columnar batch is truncated", e );
+    }
+    if ( position != block.length ) {
+      throw new SQLException( "Columnar batch length mismatch: expected " + position + " bytes, got " + block.length );
+    }
+    return new ColumnarBatch( rowCount, columns );
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  @Override
+  public boolean isNull( int column, int row ) {
+    return columns[ column ].isNull( row );
+  }
+
+  @Override
+  public long getLong( int column, int row ) {
+    Column c = columns[ column ];
+    if ( c.isNull( row ) ) {
+      return 0L;
+    }
+    if ( c instanceof LongColumn ) {
+      return ( (LongColumn) c ).getLong( row );
+    }
+    if ( c instanceof BooleanColumn ) {
+      return ( (BooleanColumn) c ).getBoolean( row ) ? 1L : 0L;
+    }
+    throw new IllegalArgumentException( "Not an integer, date or boolean column: " + column );
+  }
+
+  @Override
+  public double getDouble( int column, int row ) {
+    Column c = columns[ column ];
+    if ( !( c instanceof DoubleColumn ) ) {
+      throw new IllegalArgumentException( "Not a number column: " + column );
+    }
+    return c.isNull( row ) ? 0.0 : ( (DoubleColumn) c ).getDouble( row );
+  }
+
+  @Override
+  public Object getObject( int column, int row ) {
+    Column c = columns[ column ];
+    return c.isNull( row ) ? null : c.get( row );
+  }
+
+  Column getColumn( int index ) {
+    return columns[ index ];
+  }
+
+  /**
+   * Materialize a row as Kettle row data
+   *
+   * @param row index of the row within this batch
+   * @return a new row, with values in normal storage
+   */
+  Object[] getRow( int row ) {
+    Object[] data = new Object[ columns.length ];
+    for ( int i = 0; i < columns.length; i++ ) {
+      data[ i ] = columns[ i ].isNull( row ) ? null : columns[ i ].get( row );
+    }
+    return data;
+  }
+
+  abstract static class Column {
+    final ByteBuffer buffer;
+    private final int nulls;
+
+    Column( ByteBuffer buffer, int nulls ) {
+      this.buffer = buffer;
+      this.nulls = nulls;
+    }
+
+    boolean isNull( int row ) {
+      return ( buffer.get( nulls + ( row >>> 3 ) ) & ( 1 << ( row & 7 ) ) ) != 0;
+    }
+
+    /**
+     * @param row index of a non-null row
+     * @return boxed value
+     */
+    abstract Object get( int row );
+  }
+
+  static class LongColumn extends Column {
+    private final int values;
+
+    LongColumn( ByteBuffer buffer, int nulls, int values ) {
+      super( buffer, nulls );
+      this.values = values;
+    }
+
+    long getLong( int row ) {
+      return buffer.getLong( values + row * 8 );
+    }
+
+    @Override Object get( int row ) {
+      return getLong( row );
+    }
+  }
+
+  static class DateColumn extends LongColumn {
+    DateColumn( ByteBuffer buffer, int nulls, int values ) {
+      super( buffer, nulls, values );
+    }
+
+    @Override Object get( int row ) {
+      return new Date( getLong( row ) );
+    }
+  }
+
+  static class DoubleColumn extends Column {
+    private final int values;
+
+    DoubleColumn( ByteBuffer buffer, int nulls, int values ) {
+      super( buffer, nulls );
+      this.values = values;
+    }
+
+    double getDouble( int row ) {
+      return buffer.getDouble( values + row * 8 );
+    }
+
+    @Override Object get( int row ) {
+      return getDouble( row );
+    }
+  }
+
+  static class BooleanColumn extends Column {
+    private final int values;
+
+    BooleanColumn( ByteBuffer buffer, int nulls, int values ) {
+      super( buffer, nulls );
+      this.values = values;
+    }
+
+    boolean getBoolean( int row ) {
+      return ( buffer.get( values + ( row >>> 3 ) ) & ( 1 << ( row & 7 ) ) ) != 0;
+    }
+
+    @Override Object get( int row ) {
+      return getBoolean( row );
+    }
+  }
+
+  static class TimestampColumn extends Column {
+    private final int millis;
+    private final int nanos;
+
+    TimestampColumn( ByteBuffer buffer, int nulls, int millis, int nanos ) {
+      super( buffer, nulls );
+      this.millis = millis;
+      this.nanos = nanos;
+    }
+
+    @Override Object get( int row ) {
+      Timestamp timestamp = new Timestamp( buffer.getLong( millis + row * 8 ) );
+      timestamp.setNanos( buffer.getInt( nanos + row * 4 ) );
+      return timestamp;
+    }
+  }
+
+  static class VariableWidthColumn extends Column {
+    private final int type;
+    private final int offsets;
+    private final int data;
+
+    VariableWidthColumn( int type, ByteBuffer buffer, int nulls, int offsets, int data ) {
+      super( buffer, nulls );
+      this.type = type;
+      this.offsets = offsets;
+      this.data = data;
+    }
+
+    int getStart( int row ) {
+      return data + buffer.getInt( offsets + row * 4 );
+    }
+
+    int getLength( int row ) {
+      return buffer.getInt( offsets + ( row + 1 ) * 4 ) - buffer.getInt( offsets + row * 4 );
+    }
+
+    String getString( int row ) {
+      return new String( buffer.array(), getStart( row ), getLength( row ), Charsets.UTF_8 );
+    }
+
+    @Override Object get( int row ) {
+      switch ( type ) {
+        case ValueMetaInterface.TYPE_BINARY:
+          int start = getStart( row );
+          return Arrays.copyOfRange( buffer.array(), start, start + getLength( row ) );
+        case ValueMetaInterface.TYPE_BIGNUMBER:
+          return new BigDecimal( getString( row ) );
+        default:
+          return getString( row );
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Reads {@link ResultFormat#COLUMNAR} batches from a result stream, one block at a time.
+ *
+ * @see ColumnarBatchWriter
+ */
+class ColumnarBatchReader {
+  private final DataInputStream dataInputStream;
+  private final int[] types;
+  private ColumnarBatch batch;
+  private int position;
+  private boolean finished;
+
+  private ColumnarBatchReader( DataInputStream dataInputStream, int[] types ) {
+    this.dataInputStream = dataInputStream;
+    this.types = types;
+  }
+
+  /**
+   * Read the format version that follows the result header
+   *
+   * @param rowMeta         header row metadata
+   * @param dataInputStream result stream, positioned after the header
+   * @return a reader for the remaining batches
+   * @throws SQLException if the version or column types can not be read by this client
+   */
+  static ColumnarBatchReader open( RowMetaInterface rowMeta, DataInputStream dataInputStream )
+    throws IOException, SQLException {
+    int version = dataInputStream.readInt();
+    if ( version != ColumnarBatchWriter.VERSION ) {
+      throw new SQLException( "Unsupported columnar result version: " + version );
+    }
+    int[] types = new int[ rowMeta.size() ];
+    for ( int i = 0; i < types.length; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      if ( !ColumnarBatchWriter.isSupported( valueMeta )
+        || valueMeta.getStorageType() != ValueMetaInterface.STORAGE_TYPE_NORMAL ) {
+        throw new SQLException( "Column " + valueMeta.getName() + " can not be read from a columnar result" );
+      }
+      types[ i ] = valueMeta.getType();
+    }
+    return new ColumnarBatchReader( dataInputStream, types );
+  }
+
+  /**
+   * @return the next batch, or null when the stream is exhausted
+   */
+  ColumnarBatch nextBatch() throws IOException, SQLException {
+    if ( finished ) {
+      return null;
+    }
+    int rowCount;
+    try {
+      rowCount = dataInputStream.readInt();
+    } catch ( EOFException e ) {
+      // Server closed the stream on a batch boundary, e.g. after a stop
+      rowCount = 0;
+    }
+    if ( rowCount <= 0 ) {
+      finished = true;
+      return null;
+    }
+    byte[] block = new byte[ dataInputStream.readInt() ];
+    dataInputStream.readFully( block );
+    return ColumnarBatch.wrap( types, rowCount, block );
+  }
+
+  /**
+   * @return true if rows of the current batch are left for {@link #readRow()}
+   */
+  boolean hasBufferedRows() {
+    return batch != null && position < batch.getRowCount();
+  }
+
+  /**
+   * Move to the next row without materializing it, see {@link #getBatch()} and {@link #getBatchRow()}
+   *
+   * @return false when the stream is exhausted
+   */
+  boolean advance() throws IOException, SQLException {
+    while ( batch == null || position >= batch.getRowCount() ) {
+      batch = nextBatch();
+      position = 0;
+      if ( batch == null ) {
+        return false;
+      }
+    }
+    position++;
+    return true;
+  }
+
+  /**
+   * @return batch holding the row {@link #advance()} moved to
+   */
+  ColumnarBatch getBatch() {
+    return batch;
+  }
+
+  /**
+   * @return index of the row {@link #advance()} moved to, within {@link #getBatch()}
+   */
+  int getBatchRow() {
+    return position - 1;
+  }
+
+  /**
+   * @return the next row, or null when the stream is exhausted
+   */
+  Object[] readRow() throws IOException, SQLException {
+    return advance() ? batch.getRow( getBatchRow() ) : null;
+  }
+}
@@ -0,0 +1,231 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Writes rows in the {@link ResultFormat#COLUMNAR} encoding.
+ * <p>
+ * The body starts with an int format version, followed by any number of batches and a terminating
+ * zero row count. Each batch is
+ * <pre>
+ *   int rowCount
+ *   int blockLength
+ *   block: for each column, a null bitmap of (rowCount + 7) / 8 bytes followed by its values
+ * </pre>
+ * Values are stored per type: integers and dates as rowCount longs, numbers as rowCount doubles, booleans as a
+ * bitmap, strings, big numbers and binaries as rowCount + 1 int offsets followed by the UTF-8 (or raw) bytes, and
+ * timestamps as rowCount longs followed by rowCount int nanos. Null slots hold zero values.
+ *
+ * @see ColumnarBatchReader
+ */
+public class ColumnarBatchWriter {
+  public static final int VERSION = 1;
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+
+  private final RowMetaInterface rowMeta;
+  private final DataOutputStream outputStream;
+  private final int batchSize;
+  private final Object[][] pending;
+  private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+  private final DataOutputStream blockOutput = new DataOutputStream( block );
+  private int pendingRows = 0;
+
+  public ColumnarBatchWriter( RowMetaInterface rowMeta, DataOutputStream outputStream ) {
+    this( rowMeta, outputStream, DEFAULT_BATCH_SIZE );
+  }
+
+  public ColumnarBatchWriter( RowMetaInterface rowMeta, DataOutputStream outputStream, int batchSize ) {
+    Preconditions.checkArgument( batchSize > 0, "Batch size must be positive" );
+    for ( ValueMetaInterface valueMeta : rowMeta.getValueMetaList() ) {
+      Preconditions.checkArgument( isSupported( valueMeta ),
+        "Column %s can not be written in the columnar format", valueMeta.getName() );
+    }
+    this.rowMeta = rowMeta;
+    this.outputStream = outputStream;
+    this.batchSize = batchSize;
+    this.pending = new Object[ batchSize ][];
+  }
+
+  /**
+   * @param valueMeta column to check
+   * @return true if values of this column can be encoded
+   */
+  public static boolean isSupported( ValueMetaInterface valueMeta ) {
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_NUMBER:
+      case ValueMetaInterface.TYPE_BOOLEAN:
+      case ValueMetaInterface.TYPE_STRING:
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+      case ValueMetaInterface.TYPE_BINARY:
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Write the format version. Must be called once, after the result header and before any rows.
+   */
+  public void writeHeader() throws IOException {
+    outputStream.writeInt( VERSION );
+  }
+
+  public void putRow( Object[] row ) throws IOException, KettleValueException {
+    pending[ pendingRows++ ] = row;
+    if ( pendingRows == batchSize ) {
+      flush();
+    }
+  }
+
+  /**
+   * Write any buffered rows as a batch
+   */
+  public void flush() throws IOException, KettleValueException {
+    if ( pendingRows > 0 ) {
+      block.reset();
+      for ( int column = 0; column < rowMeta.size(); column++ ) {
+        writeColumn( rowMeta.getValueMeta( column ), column );
+      }
+      outputStream.writeInt( pendingRows );
+      outputStream.writeInt( block.size() );
+      block.writeTo( outputStream );
+      for ( int i = 0; i < pendingRows; i++ ) {
+        pending[ i ] = null;
+      }
+      pendingRows = 0;
+    }
+    outputStream.flush();
+  }
+
+  /**
+   * Write any buffered rows and the end-of-stream marker. The underlying stream is left open.
+   */
+  public void finish() throws IOException, KettleValueException {
+    flush();
+    outputStream.writeInt( 0 );
+    outputStream.flush();
+  }
+
+  private void writeColumn( ValueMetaInterface valueMeta, int column ) throws IOException, KettleValueException {
+    Object[] values = new Object[ pendingRows ];
+    byte[] nulls = new byte[ bitmapLength( pendingRows ) ];
+    for ( int i = 0; i < pendingRows; i++ ) {
+      values[ i ] = convert( valueMeta, pending[ i ][ column ] );
+      if ( values[ i ] == null ) {
+        nulls[ i >>> 3 ] |= 1 << ( i & 7 );
+      }
+    }
+    blockOutput.write( nulls );
+
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        for ( Object value : values ) {
+          blockOutput.writeLong( value == null ? 0L : (Long) value );
+        }
+        break;
+      case ValueMetaInterface.TYPE_DATE:
+        for ( Object value : values ) {
+          blockOutput.writeLong( value == null ? 0L : ( (Date) value ).getTime() );
+        }
+        break;
+      case ValueMetaInterface.TYPE_NUMBER:
+        for ( Object value : values ) {
+          blockOutput.writeDouble( value == null ? 0d : (Double) value );
+        }
+        break;
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        byte[] bits = new byte[ nulls.length ];
+        for ( int i = 0; i < values.length; i++ ) {
+          if ( Boolean.TRUE.equals( values[ i ] ) ) {
+            bits[ i >>> 3 ] |= 1 << ( i & 7 );
+          }
+        }
+        blockOutput.write( bits );
+        break;
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        for ( Object value : values ) {
+          blockOutput.writeLong( value == null ? 0L : ( (Date) value ).getTime() );
+        }
+        for ( Object value : values ) {
+          blockOutput.writeInt( value instanceof Timestamp ? ( (Timestamp) value ).getNanos() : 0 );
+        }
+        break;
+      default:
+        byte[][] bytes = new byte[ values.length ][];
+        int offset = 0;
+        blockOutput.writeInt( offset );
+        for ( int i = 0; i < values.length; i++ ) {
+          bytes[ i ] = toBytes( values[ i ] );
+          offset += bytes[ i ].length;
+          blockOutput.writeInt( offset );
+        }
+        for ( byte[] value : bytes ) {
+          blockOutput.write( value );
+        }
+    }
+  }
+
+  private static Object convert( ValueMetaInterface valueMeta, Object value ) throws KettleValueException {
+    switch ( valueMeta.getType() ) {
+      case ValueMetaInterface.TYPE_INTEGER:
+        return valueMeta.getInteger( value );
+      case ValueMetaInterface.TYPE_DATE:
+      case ValueMetaInterface.TYPE_TIMESTAMP:
+        return valueMeta.getDate( value );
+      case ValueMetaInterface.TYPE_NUMBER:
+        return valueMeta.getNumber( value );
+      case ValueMetaInterface.TYPE_BOOLEAN:
+        return valueMeta.getBoolean( value );
+      case ValueMetaInterface.TYPE_BIGNUMBER:
+        return valueMeta.getBigNumber( value );
+      case ValueMetaInterface.TYPE_BINARY:
+        return valueMeta.getBinary( value );
+      default:
+        return valueMeta.getString( value );
+    }
+  }
+
+  private static byte[] toBytes( Object value ) {
+    if ( value == null ) {
+      return new byte[ 0 ];
+    } else if ( value instanceof byte[] ) {
+      return (byte[]) value;
+    } else if ( value instanceof BigDecimal ) {
+      return ( (BigDecimal) value ).toString().getBytes( Charsets.UTF_8 );
+    } else {
+      return value.toString().getBytes( Charsets.UTF_8 );
+    }
+  }
+
+  static int bitmapLength( int rowCount ) {
+    return ( rowCount + 7 ) >>> 3;
+  }
+}
@@ -0,0 +1,69 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * A {@link PrimitiveRow} that is a view of the current row of a {@link ColumnarBatchReader}. Getters read the typed
+ * columns of the batch directly, values are only boxed when asked for as objects, and a row array is only built for
+ * {@link #toArray()}.
+ */
+class ColumnarRow extends PrimitiveRow {
+  private final ColumnarBatchReader batchReader;
+
+  ColumnarRow( RowMetaInterface rowMeta, ColumnarBatchReader batchReader ) {
+    super( rowMeta );
+    this.batchReader = batchReader;
+  }
+
+  /**
+   * Move to the next row of the batch reader, instead of {@link #read(DataInputStream)}
+   *
+   * @return false at the end of the stream
+   */
+  boolean next() throws IOException, SQLException {
+    return batchReader.advance();
+  }
+
+  @Override
+  boolean isNull( int i ) {
+    return batchReader.getBatch().isNull( i, batchReader.getBatchRow() );
+  }
+
+  @Override
+  long getLong( int i ) {
+    return batchReader.getBatch().getLong( i, batchReader.getBatchRow() );
+  }
+
+  @Override
+  double getDouble( int i ) {
+    return batchReader.getBatch().getDouble( i, batchReader.getBatchRow() );
+  }
+
+  @Override
+  Object getObject( int i ) {
+    return batchReader.getBatch().getObject( i, batchReader.getBatchRow() );
+  }
+
+  @Override
+  Object[] toArray() {
+    return batchReader.getBatch().getRow( batchReader.getBatchRow() );
+  }
+}
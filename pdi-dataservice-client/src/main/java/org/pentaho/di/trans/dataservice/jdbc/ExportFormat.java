@@ -0,0 +1,32 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+/**
+ * File formats for {@link ThinStatement#export}
+ */
+public enum ExportFormat {
+  /**
+   * UTF-8 text as in RFC 4180, with a header line of field names. Values are formatted by their value meta.
+   */
+  CSV,
+  /**
+   * The row meta, written with {@link org.pentaho.di.core.row.RowMetaInterface#writeMeta}, followed by one
+   * {@link org.pentaho.di.core.row.RowMetaInterface#writeData} record per row. Read back with
+   * {@link org.pentaho.di.core.row.RowMeta#RowMeta(java.io.DataInputStream)} and
+   * {@link org.pentaho.di.core.row.RowMetaInterface#readData}.
+   */
+  KETTLE
+}
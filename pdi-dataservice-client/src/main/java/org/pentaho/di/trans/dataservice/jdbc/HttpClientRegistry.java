@@ -0,0 +1,238 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver-wide registry of pooled HTTP clients. Connections to the same server through the same proxy share one
+ * client, so that opening a {@link ThinConnection} reuses live sockets instead of paying for a new TCP and TLS setup.
+ * Pooled sockets are kept alive as long as the server allows and closed once idle for
+ * {@link PoolSettings#getIdleTimeoutSeconds()}.
+ * <p>
+ * The clients hold no credentials or cookies, each connection passes its own in an
+ * {@link org.apache.http.client.protocol.HttpClientContext}. Clients are reference counted: every
+ * {@link #acquire(Key, PoolSettings)} is matched by a {@link #release(Key)} when the connection closes, and a client
+ * nobody holds is closed along with its pool and idle socket evictor.
+ */
+class HttpClientRegistry {
+  private static final HttpClientRegistry INSTANCE = new HttpClientRegistry();
+
+  private final Map<Key, PooledClient> clients = new HashMap<>();
+
+  @VisibleForTesting
+  HttpClientRegistry() {
+  }
+
+  static HttpClientRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Get the shared client for a route, creating it on first use. Pool limits only ever grow: a connection asking
+   * for more connections than the current pool allows raises the limits for everyone on that route.
+   *
+   * @return the client, to be released when the connection closes
+   */
+  synchronized HttpClient acquire( Key key, PoolSettings settings ) {
+    PooledClient pooledClient = clients.get( key );
+    if ( pooledClient == null ) {
+      pooledClient = new PooledClient( key, settings );
+      clients.put( key, pooledClient );
+    } else {
+      pooledClient.raiseLimits( settings );
+    }
+    pooledClient.references++;
+    return pooledClient.client;
+  }
+
+  /**
+   * Give back a client taken with {@link #acquire(Key, PoolSettings)}, closing it when nobody else holds it
+   */
+  synchronized void release( Key key ) {
+    PooledClient pooledClient = clients.get( key );
+    if ( pooledClient != null && --pooledClient.references <= 0 ) {
+      clients.remove( key );
+      pooledClient.close();
+    }
+  }
+
+  /**
+   * @return number of connections holding the client of a route
+   */
+  @VisibleForTesting
+  synchronized int getReferences( Key key ) {
+    PooledClient pooledClient = clients.get( key );
+    return pooledClient != null ? pooledClient.references : 0;
+  }
+
+  /**
+   * @return connection manager of the shared client for a route, or null if there is none
+   */
+  @VisibleForTesting
+  synchronized PoolingHttpClientConnectionManager getConnectionManager( Key key ) {
+    PooledClient pooledClient = clients.get( key );
+    return pooledClient != null ? pooledClient.connectionManager : null;
+  }
+
+  synchronized int size() {
+    return clients.size();
+  }
+
+  /**
+   * Close all shared clients and their sockets, whether they are held or not. Clients are created again on demand.
+   */
+  synchronized void shutdown() {
+    for ( PooledClient pooledClient : clients.values() ) {
+      pooledClient.close();
+    }
+    clients.clear();
+  }
+
+  private static class PooledClient {
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private int references;
+
+    PooledClient( Key key, PoolSettings settings ) {
+      connectionManager = new PoolingHttpClientConnectionManager();
+      connectionManager.setMaxTotal( settings.getMaxTotal() );
+      connectionManager.setDefaultMaxPerRoute( settings.getMaxPerRoute() );
+      // Catch sockets closed by the server while they sat in the pool
+      connectionManager.setValidateAfterInactivity( (int) TimeUnit.SECONDS.toMillis( 2 ) );
+
+      RequestConfig.Builder requestConfig = RequestConfig.custom().setSocketTimeout( 0 ).setConnectTimeout( 0 );
+      if ( key.proxyHost != null ) {
+        requestConfig.setProxy( new HttpHost( key.proxyHost, key.proxyPort ) );
+      }
+      // The evictor thread stops when the client is closed
+      client = HttpClientBuilder.create()
+        .setConnectionManager( connectionManager )
+        .setKeepAliveStrategy( DefaultConnectionKeepAliveStrategy.INSTANCE )
+        .setDefaultRequestConfig( requestConfig.build() )
+        .evictExpiredConnections()
+        .evictIdleConnections( settings.getIdleTimeoutSeconds(), TimeUnit.SECONDS )
+        .build();
+    }
+
+    void raiseLimits( PoolSettings settings ) {
+      if ( settings.getMaxTotal() > connectionManager.getMaxTotal() ) {
+        connectionManager.setMaxTotal( settings.getMaxTotal() );
+      }
+      if ( settings.getMaxPerRoute() > connectionManager.getDefaultMaxPerRoute() ) {
+        connectionManager.setDefaultMaxPerRoute( settings.getMaxPerRoute() );
+      }
+    }
+
+    void close() {
+      try {
+        client.close();
+      } catch ( IOException e ) {
+        ThinDriver.logger.warning( e.getMessage() );
+      }
+    }
+  }
+
+  /**
+   * Identifies clients that may share sockets
+   */
+  static final class Key {
+    private final String scheme;
+    private final String host;
+    private final int port;
+    private final String proxyHost;
+    private final int proxyPort;
+
+    /**
+     * @param proxyHost proxy to connect through, or null to connect directly
+     */
+    Key( String scheme, String host, int port, String proxyHost, int proxyPort ) {
+      this.scheme = scheme;
+      this.host = host;
+      this.port = port;
+      this.proxyHost = proxyHost;
+      this.proxyPort = proxyHost != null ? proxyPort : -1;
+    }
+
+    @Override public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      Key that = (Key) o;
+      return port == that.port && proxyPort == that.proxyPort
+        && Objects.equal( scheme, that.scheme ) && Objects.equal( host, that.host )
+        && Objects.equal( proxyHost, that.proxyHost );
+    }
+
+    @Override public int hashCode() {
+      return Objects.hashCode( scheme, host, port, proxyHost, proxyPort );
+    }
+
+    @Override public String toString() {
+      return MoreObjects.toStringHelper( this ).omitNullValues()
+        .add( "scheme", scheme ).add( "host", host ).add( "port", port )
+        .add( "proxyHost", proxyHost )
+        .toString();
+    }
+  }
+
+  /**
+   * Pool limits requested by a connection
+   */
+  static final class PoolSettings {
+    static final int DEFAULT_MAX_TOTAL = 50;
+    static final int DEFAULT_MAX_PER_ROUTE = 20;
+    static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final long idleTimeoutSeconds;
+
+    PoolSettings( int maxTotal, int maxPerRoute, long idleTimeoutSeconds ) {
+      this.maxTotal = maxTotal;
+      this.maxPerRoute = maxPerRoute;
+      this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    int getMaxTotal() {
+      return maxTotal;
+    }
+
+    int getMaxPerRoute() {
+      return maxPerRoute;
+    }
+
+    long getIdleTimeoutSeconds() {
+      return idleTimeoutSeconds;
+    }
+  }
+}
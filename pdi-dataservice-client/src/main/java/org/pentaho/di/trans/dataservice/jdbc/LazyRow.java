@@ -0,0 +1,173 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A {@link PrimitiveRow} that also defers the decoding of its other columns. Strings, big numbers, binaries and
+ * dates are copied as raw bytes, framed by their null flag and length prefix, and only decoded by their value meta
+ * when a getter first asks for them. Columns a query never reads are never decoded.
+ * <p>
+ * Types whose encoding is not a plain length-prefixed or fixed-size value are decoded while reading, as before.
+ */
+class LazyRow extends PrimitiveRow {
+  private static final int VARIABLE = -1;
+  private static final int EAGER = -2;
+
+  /**
+   * Encoded size of each column after its null flag: fixed, {@link #VARIABLE} for a length prefix, or
+   * {@link #EAGER} if the column is decoded while reading
+   */
+  private final int[] encodedSizes;
+  private final int[] offsets;
+  private final int[] lengths;
+  private final boolean[] decoded;
+  private byte[] buffer = new byte[ 256 ];
+  private int position;
+  private final ColumnInput columnInput = new ColumnInput();
+  private final DataInputStream columnStream = new DataInputStream( columnInput );
+
+  LazyRow( RowMetaInterface rowMeta ) {
+    super( rowMeta );
+    encodedSizes = new int[ valueMetas.length ];
+    offsets = new int[ valueMetas.length ];
+    lengths = new int[ valueMetas.length ];
+    decoded = new boolean[ valueMetas.length ];
+    for ( int i = 0; i < valueMetas.length; i++ ) {
+      encodedSizes[ i ] = encodedSize( valueMetas[ i ] );
+    }
+  }
+
+  private static int encodedSize( ValueMetaInterface valueMeta ) {
+    switch ( valueMeta.getStorageType() ) {
+      case ValueMetaInterface.STORAGE_TYPE_BINARY_STRING:
+        return VARIABLE;
+      case ValueMetaInterface.STORAGE_TYPE_INDEXED:
+        return Integer.BYTES;
+      case ValueMetaInterface.STORAGE_TYPE_NORMAL:
+        switch ( valueMeta.getType() ) {
+          case ValueMetaInterface.TYPE_STRING:
+          case ValueMetaInterface.TYPE_BIGNUMBER:
+          case ValueMetaInterface.TYPE_BINARY:
+            return VARIABLE;
+          case ValueMetaInterface.TYPE_DATE:
+            return Long.BYTES;
+          default:
+            return EAGER;
+        }
+      default:
+        return EAGER;
+    }
+  }
+
+  @Override
+  protected void startRow() {
+    position = 0;
+  }
+
+  /**
+   * Copy the column's bytes, skipping over the value instead of decoding it
+   */
+  @Override
+  protected void readObject( int i, DataInputStream inputStream ) throws KettleFileException, IOException {
+    if ( encodedSizes[ i ] == EAGER ) {
+      super.readObject( i, inputStream );
+      decoded[ i ] = true;
+      return;
+    }
+    values[ i ] = null;
+    decoded[ i ] = false;
+    offsets[ i ] = position;
+
+    boolean isNull = inputStream.readBoolean();
+    append( isNull ? 1 : 0 );
+    if ( !isNull ) {
+      int size = encodedSizes[ i ];
+      if ( size == VARIABLE ) {
+        size = inputStream.readInt();
+        appendInt( size );
+      }
+      if ( size > 0 ) {
+        ensureCapacity( size );
+        inputStream.readFully( buffer, position, size );
+        position += size;
+      }
+    }
+    lengths[ i ] = position - offsets[ i ];
+  }
+
+  @Override
+  protected Object getObjectValue( int i ) throws KettleException {
+    if ( !decoded[ i ] ) {
+      if ( buffer[ offsets[ i ] ] == 0 ) {
+        columnInput.select( buffer, offsets[ i ], lengths[ i ] );
+        values[ i ] = valueMetas[ i ].readData( columnStream );
+      }
+      decoded[ i ] = true;
+    }
+    return values[ i ];
+  }
+
+  /**
+   * @return true if the column has not been decoded since the row was read
+   */
+  boolean isEncoded( int i ) {
+    return !decoded[ i ];
+  }
+
+  private void append( int b ) {
+    ensureCapacity( 1 );
+    buffer[ position++ ] = (byte) b;
+  }
+
+  private void appendInt( int v ) {
+    ensureCapacity( Integer.BYTES );
+    buffer[ position++ ] = (byte) ( v >>> 24 );
+    buffer[ position++ ] = (byte) ( v >>> 16 );
+    buffer[ position++ ] = (byte) ( v >>> 8 );
+    buffer[ position++ ] = (byte) v;
+  }
+
+  private void ensureCapacity( int size ) {
+    if ( position + size > buffer.length ) {
+      buffer = Arrays.copyOf( buffer, Math.max( buffer.length * 2, position + size ) );
+    }
+  }
+
+  /**
+   * Reads one column of the row buffer, kept across columns and rows so that decoding allocates no streams
+   */
+  private static class ColumnInput extends ByteArrayInputStream {
+    ColumnInput() {
+      super( new byte[ 0 ] );
+    }
+
+    void select( byte[] bytes, int offset, int length ) {
+      buf = bytes;
+      pos = offset;
+      count = offset + length;
+      mark = offset;
+    }
+  }
+}
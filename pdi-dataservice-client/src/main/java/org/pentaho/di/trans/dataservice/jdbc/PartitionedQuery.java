@@ -0,0 +1,236 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.jdbc.ThinUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.sql.SQL;
+import org.pentaho.di.core.sql.SQLCache;
+import org.pentaho.di.core.sql.SQLField;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a query into range partitions on an Integer, Number or Date column, so that the partitions can be fetched
+ * concurrently over separate requests. Partition bounds are taken from the MIN and MAX of the column, rows with a
+ * null key go to the first partition.
+ * <p>
+ * Queries whose result depends on seeing all rows at once (GROUP BY, HAVING, LIMIT, DISTINCT or aggregates) are
+ * not split, nor are ordered queries that sort on columns missing from the select list.
+ */
+class PartitionedQuery {
+  private final List<String> queries;
+  private final int[] orderIndexes;
+  private final boolean[] ascending;
+
+  private PartitionedQuery( List<String> queries, int[] orderIndexes, boolean[] ascending ) {
+    this.queries = queries;
+    this.orderIndexes = orderIndexes;
+    this.ascending = ascending;
+  }
+
+  static PartitionedQuery create( String sqlString, String column, int partitions, IDataServiceClientService client,
+                                  Map<String, String> parameters, ThinResultFactory resultFactory )
+    throws SQLException {
+    PartitionedQuery single = new PartitionedQuery( ImmutableList.of( sqlString ), new int[ 0 ], new boolean[ 0 ] );
+    try {
+      String stripped = ThinUtil.stripNewlines( sqlString );
+      SQL sql = new SQL( stripped );
+      if ( partitions < 2 || !sql.hasServiceClause() || !Const.isEmpty( sql.getGroupClause() )
+        || !Const.isEmpty( sql.getHavingClause() ) || !Const.isEmpty( sql.getLimitClause() ) ) {
+        return single;
+      }
+      IThinServiceInformation serviceInformation = client.getServiceInformation( sql.getServiceName() );
+      if ( serviceInformation == null ) {
+        return single;
+      }
+      RowMetaInterface serviceFields = serviceInformation.getServiceFields();
+      sql = SQLCache.getInstance().get( stripped, serviceFields );
+      if ( sql.getSelectFields().hasAggregates() || sql.getSelectFields().isDistinct() ) {
+        return single;
+      }
+
+      ValueMetaInterface columnMeta = serviceFields.searchValueMeta( column );
+      if ( columnMeta == null ) {
+        throw new SQLException( "Partition column not found in data service " + sql.getServiceName() + ": " + column );
+      }
+      switch ( columnMeta.getType() ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+        case ValueMetaInterface.TYPE_NUMBER:
+        case ValueMetaInterface.TYPE_DATE:
+          break;
+        default:
+          throw new SQLException( "Partition column must be an Integer, Number or Date field: " + column );
+      }
+
+      // Resolve the sort columns in the result, a merge needs all of them
+      List<SQLField> orderFields = sql.getOrderFields() == null
+        ? ImmutableList.<SQLField>of() : sql.getOrderFields().getFields();
+      int[] orderIndexes = new int[ orderFields.size() ];
+      boolean[] ascending = new boolean[ orderFields.size() ];
+      for ( int i = 0; i < orderFields.size(); i++ ) {
+        orderIndexes[ i ] = indexOfSelectField( sql.getSelectFields().getFields(), orderFields.get( i ) );
+        ascending[ i ] = orderFields.get( i ).isAscending();
+        if ( orderIndexes[ i ] < 0 ) {
+          return single;
+        }
+      }
+
+      String quotedColumn = "\"" + columnMeta.getName().replace( "\"", "\"\"" ) + "\"";
+      String fromClause = ThinUtil.findClause( stripped, "FROM", "WHERE", "GROUP BY", "HAVING", "ORDER BY", "LIMIT" );
+      String whereClause = sql.getWhereClause();
+
+      List<String> bounds = findBounds( quotedColumn, fromClause, whereClause, columnMeta.getType(), partitions,
+        client, parameters, resultFactory );
+      if ( bounds.isEmpty() ) {
+        return single;
+      }
+
+      ImmutableList.Builder<String> queries = ImmutableList.builder();
+      for ( int i = 0; i <= bounds.size(); i++ ) {
+        String range;
+        if ( i == 0 ) {
+          range = "( " + quotedColumn + " IS NULL OR " + quotedColumn + " < " + bounds.get( 0 ) + " )";
+        } else if ( i == bounds.size() ) {
+          range = quotedColumn + " >= " + bounds.get( i - 1 );
+        } else {
+          range = quotedColumn + " >= " + bounds.get( i - 1 ) + " AND " + quotedColumn + " < " + bounds.get( i );
+        }
+        StringBuilder query = new StringBuilder( "SELECT " ).append( sql.getSelectClause() )
+          .append( " FROM " ).append( fromClause )
+          .append( " WHERE " ).append( Const.isEmpty( whereClause ) ? range : "( " + whereClause + " ) AND ( " + range
+            + " )" );
+        if ( !Const.isEmpty( sql.getOrderClause() ) ) {
+          query.append( " ORDER BY " ).append( sql.getOrderClause() );
+        }
+        queries.add( query.toString() );
+      }
+      return new PartitionedQuery( queries.build(), orderIndexes, ascending );
+    } catch ( Exception e ) {
+      Throwables.propagateIfPossible( e, SQLException.class );
+      throw new SQLException( "Unable to partition query: " + sqlString, e );
+    }
+  }
+
+  private static int indexOfSelectField( List<SQLField> selectFields, SQLField orderField ) {
+    String orderName = Const.NVL( orderField.getAlias(), orderField.getField() );
+    for ( int i = 0; i < selectFields.size(); i++ ) {
+      SQLField selectField = selectFields.get( i );
+      if ( orderName.equalsIgnoreCase( Const.NVL( selectField.getAlias(), selectField.getField() ) ) ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Query the range of the column and divide it evenly
+   *
+   * @return ascending SQL literals separating the partitions, empty if the range can not be divided
+   */
+  private static List<String> findBounds( String quotedColumn, String fromClause, String whereClause, int type,
+                                          int partitions, IDataServiceClientService client,
+                                          Map<String, String> parameters, ThinResultFactory resultFactory )
+    throws SQLException, KettleValueException {
+    String rangeQuery = "SELECT MIN(" + quotedColumn + "), MAX(" + quotedColumn + ") FROM " + fromClause
+      + ( Const.isEmpty( whereClause ) ? "" : " WHERE " + whereClause );
+    ThinResultSet rangeResult = resultFactory.loadResultSet( client.query( rangeQuery, 0, parameters ), client );
+    try {
+      if ( !rangeResult.next() ) {
+        return ImmutableList.of();
+      }
+      RowMetaInterface rowMeta = rangeResult.getRowMeta();
+      Object[] row = rangeResult.getCurrentRow();
+      ImmutableList.Builder<String> bounds = ImmutableList.builder();
+      if ( type == ValueMetaInterface.TYPE_NUMBER ) {
+        Double min = rowMeta.getNumber( row, 0 );
+        Double max = rowMeta.getNumber( row, 1 );
+        if ( min == null || max == null ) {
+          return ImmutableList.of();
+        }
+        double previous = min;
+        for ( int i = 1; i < partitions; i++ ) {
+          double bound = min + ( max - min ) * i / partitions;
+          if ( bound > previous ) {
+            bounds.add( Double.toString( bound ) );
+            previous = bound;
+          }
+        }
+      } else {
+        // Integers and dates, the latter by milliseconds
+        boolean date = type == ValueMetaInterface.TYPE_DATE;
+        Long min = date ? millis( rowMeta.getDate( row, 0 ) ) : rowMeta.getInteger( row, 0 );
+        Long max = date ? millis( rowMeta.getDate( row, 1 ) ) : rowMeta.getInteger( row, 1 );
+        if ( min == null || max == null ) {
+          return ImmutableList.of();
+        }
+        long previous = min;
+        for ( int i = 1; i < partitions; i++ ) {
+          long bound = min + Math.round( ( (double) max - min ) * i / partitions );
+          if ( bound > previous ) {
+            bounds.add( date ? "[" + XMLHandler.date2string( new Date( bound ) ) + "]" : Long.toString( bound ) );
+            previous = bound;
+          }
+        }
+      }
+      return bounds.build();
+    } finally {
+      rangeResult.close();
+    }
+  }
+
+  private static Long millis( Date date ) {
+    return date == null ? null : date.getTime();
+  }
+
+  /**
+   * @return a query for each partition, or just the original query if it could not be split
+   */
+  List<String> getQueries() {
+    return queries;
+  }
+
+  /**
+   * @return true if partitions are sorted and must be merged in order
+   */
+  boolean isOrdered() {
+    return orderIndexes.length > 0;
+  }
+
+  /**
+   * Compare result rows by the ORDER BY clause of the query
+   */
+  int compare( RowMetaInterface rowMeta, Object[] row1, Object[] row2 ) throws KettleValueException {
+    for ( int i = 0; i < orderIndexes.length; i++ ) {
+      int index = orderIndexes[ i ];
+      int cmp = rowMeta.getValueMeta( index ).compare( row1[ index ], row2[ index ] );
+      if ( cmp != 0 ) {
+        return ascending[ i ] ? cmp : -cmp;
+      }
+    }
+    return 0;
+  }
+}
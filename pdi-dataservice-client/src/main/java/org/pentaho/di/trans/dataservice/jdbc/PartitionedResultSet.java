@@ -0,0 +1,232 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.collect.ImmutableList;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Presents the partitions of a {@link PartitionedQuery} as one forward-only result set. Each partition is read on
+ * its own thread. Rows are passed on as they arrive, or merged by the ORDER BY clause if the query is ordered.
+ */
+class PartitionedResultSet extends BaseResultSet {
+  static final int DEFAULT_FETCH_SIZE = 1000;
+
+  private final String cursorName;
+  private final PartitionedQuery query;
+  private final int maxRows;
+  private List<? extends BaseResultSet> partitions;
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+  private int size = 1;
+
+  // Unordered: one buffer shared by all partitions. Ordered: a buffer and a head row per partition
+  private RowPrefetcher[] prefetchers;
+  private Object[][] heads;
+  private int taken = -1;
+
+  /**
+   * @param maxRows limit of the merged rows, or 0 for no limit
+   */
+  PartitionedResultSet( String cursorName, PartitionedQuery query, List<? extends BaseResultSet> partitions,
+                        int maxRows ) {
+    super( partitions.get( 0 ).getRowMeta() );
+    this.cursorName = cursorName;
+    this.query = query;
+    this.partitions = ImmutableList.copyOf( partitions );
+    this.maxRows = maxRows;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    if ( partitions == null ) {
+      return;
+    }
+    if ( prefetchers != null ) {
+      stopPrefetchers();
+    }
+    SQLException failure = null;
+    for ( BaseResultSet partition : partitions ) {
+      try {
+        partition.close();
+      } catch ( SQLException e ) {
+        if ( failure == null ) {
+          failure = e;
+        } else {
+          failure.setNextException( e );
+        }
+      }
+    }
+    partitions = null;
+    if ( failure != null ) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Stop the decoders before their partitions are closed. A decoder blocked in a socket read ignores interrupts, so
+   * the partition requests are aborted first.
+   */
+  private void stopPrefetchers() {
+    for ( BaseResultSet partition : partitions ) {
+      if ( partition instanceof ThinResultSet ) {
+        ( (ThinResultSet) partition ).abortRequest();
+      }
+    }
+    for ( RowPrefetcher prefetcher : prefetchers ) {
+      prefetcher.cancel();
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( RowPrefetcher.JOIN_TIMEOUT_MILLIS );
+    for ( RowPrefetcher prefetcher : prefetchers ) {
+      if ( !prefetcher.join( TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() ) ) ) {
+        ThinDriver.logger.warning( "Fetch of " + cursorName + " did not stop in time" );
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean isClosed() throws SQLException {
+    return partitions == null;
+  }
+
+  @Override protected Object[] retrieveRow( int i ) throws Exception {
+    if ( isAfterLast() ? i > size() : i == getRow() ) {
+      return getCurrentRow();
+    } else if ( i == getRow() + 1 ) {
+      Object[] data = maxRows > 0 && i > maxRows ? null : nextRow();
+      if ( data != null ) {
+        size += 1;
+      } else {
+        size = getRow();
+      }
+      return data;
+    } else {
+      throw new SQLFeatureNotSupportedException( "Scrollable result sets are not supported" );
+    }
+  }
+
+  private Object[] nextRow() throws Exception {
+    if ( prefetchers == null ) {
+      start();
+    }
+    if ( !query.isOrdered() ) {
+      return prefetchers[ 0 ].take();
+    }
+    // Replace the row handed out last time, then pick the lowest head
+    if ( taken >= 0 ) {
+      heads[ taken ] = prefetchers[ taken ].take();
+    }
+    taken = -1;
+    for ( int p = 0; p < heads.length; p++ ) {
+      if ( heads[ p ] != null
+        && ( taken < 0 || query.compare( getRowMeta(), heads[ p ], heads[ taken ] ) < 0 ) ) {
+        taken = p;
+      }
+    }
+    return taken >= 0 ? heads[ taken ] : null;
+  }
+
+  private void start() throws SQLException {
+    ImmutableList.Builder<RowPrefetcher.RowSource> sources = ImmutableList.builder();
+    for ( final BaseResultSet partition : partitions ) {
+      sources.add( () -> partition.next() ? partition.getCurrentRow() : null );
+    }
+    List<RowPrefetcher.RowSource> rowSources = sources.build();
+    String name = "PartitionedResultSet fetch: " + cursorName;
+    if ( query.isOrdered() ) {
+      prefetchers = new RowPrefetcher[ rowSources.size() ];
+      for ( int p = 0; p < prefetchers.length; p++ ) {
+        prefetchers[ p ] = new RowPrefetcher( name + " #" + p, Math.max( 1, fetchSize / prefetchers.length ),
+          rowSources.get( p ) );
+        prefetchers[ p ].start();
+      }
+      heads = new Object[ prefetchers.length ][];
+      for ( int p = 0; p < prefetchers.length; p++ ) {
+        heads[ p ] = prefetchers[ p ].take();
+      }
+    } else {
+      prefetchers = new RowPrefetcher[] { new RowPrefetcher( name, fetchSize, rowSources ) };
+      prefetchers[ 0 ].start();
+    }
+  }
+
+  @Override
+  protected int size() throws SQLException {
+    return size;
+  }
+
+  /**
+   * @return number of concurrent partitions
+   */
+  int getPartitionCount() {
+    return partitions == null ? 0 : partitions.size();
+  }
+
+  @Override
+  public String getCursorName() throws SQLException {
+    return cursorName;
+  }
+
+  @Override
+  public int getType() throws SQLException {
+    return ResultSet.TYPE_FORWARD_ONLY;
+  }
+
+  @Override
+  public int getFetchDirection() throws SQLException {
+    return ResultSet.FETCH_FORWARD;
+  }
+
+  @Override
+  public void setFetchDirection( int direction ) throws SQLException {
+    if ( direction != FETCH_FORWARD ) {
+      throw new SQLFeatureNotSupportedException( "Only FETCH_FORWARD is allowed" );
+    }
+  }
+
+  @Override
+  public int getFetchSize() throws SQLException {
+    return fetchSize;
+  }
+
+  /**
+   * Number of rows buffered ahead across all partitions. Fixed once reading has started.
+   */
+  @Override
+  public void setFetchSize( int rows ) throws SQLException {
+    if ( rows < 0 ) {
+      throw new SQLException( "Fetch size must not be negative: " + rows );
+    }
+    if ( prefetchers == null ) {
+      fetchSize = rows > 0 ? rows : DEFAULT_FETCH_SIZE;
+    }
+  }
+
+  @Override
+  public int getHoldability() throws SQLException {
+    return ResultSet.HOLD_CURSORS_OVER_COMMIT;
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    return new ThinResultSetMetaData( cursorName, getRowMeta() );
+  }
+}
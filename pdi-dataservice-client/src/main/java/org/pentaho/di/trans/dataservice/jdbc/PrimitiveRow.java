@@ -0,0 +1,210 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+/**
+ * Buffer for one row of the row stream, refilled for every row. Integer, number and boolean columns are decoded
+ * straight into primitive slots with a null bitmap, so that they are only boxed if asked for as objects. Other
+ * columns are read by their value meta, exactly as {@link RowMetaInterface#readData} does.
+ */
+class PrimitiveRow {
+  protected final ValueMetaInterface[] valueMetas;
+  protected final Object[] values;
+  private final int[] primitiveTypes;
+  private final long[] longs;
+  private final double[] doubles;
+  private final long[] nulls;
+
+  PrimitiveRow( RowMetaInterface rowMeta ) {
+    int size = rowMeta.size();
+    valueMetas = new ValueMetaInterface[ size ];
+    primitiveTypes = new int[ size ];
+    longs = new long[ size ];
+    doubles = new double[ size ];
+    nulls = new long[ ( size + 63 ) / 64 ];
+    values = new Object[ size ];
+    for ( int i = 0; i < size; i++ ) {
+      valueMetas[ i ] = rowMeta.getValueMeta( i );
+      primitiveTypes[ i ] = primitiveType( valueMetas[ i ] );
+    }
+  }
+
+  /**
+   * @return true if the row meta has columns that can be kept in primitive slots
+   */
+  static boolean isUseful( RowMetaInterface rowMeta ) {
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      if ( primitiveType( rowMeta.getValueMeta( i ) ) != ValueMetaInterface.TYPE_NONE ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int primitiveType( ValueMetaInterface valueMeta ) {
+    if ( valueMeta.isStorageNormal() ) {
+      switch ( valueMeta.getType() ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+        case ValueMetaInterface.TYPE_NUMBER:
+        case ValueMetaInterface.TYPE_BOOLEAN:
+          return valueMeta.getType();
+        default:
+          break;
+      }
+    }
+    return ValueMetaInterface.TYPE_NONE;
+  }
+
+  /**
+   * Replace the contents with the next row of the stream
+   *
+   * @throws KettleEOFException at the end of the stream
+   */
+  void read( DataInputStream inputStream ) throws KettleFileException, SocketTimeoutException {
+    for ( int w = 0; w < nulls.length; w++ ) {
+      nulls[ w ] = 0L;
+    }
+    startRow();
+    try {
+      for ( int i = 0; i < valueMetas.length; i++ ) {
+        int type = primitiveTypes[ i ];
+        if ( type == ValueMetaInterface.TYPE_NONE ) {
+          readObject( i, inputStream );
+          continue;
+        }
+        values[ i ] = null;
+        // Same layout as ValueMetaBase#readData: a null flag, then the value
+        if ( inputStream.readBoolean() ) {
+          nulls[ i >> 6 ] |= 1L << i;
+        } else if ( type == ValueMetaInterface.TYPE_INTEGER ) {
+          longs[ i ] = inputStream.readLong();
+        } else if ( type == ValueMetaInterface.TYPE_NUMBER ) {
+          doubles[ i ] = inputStream.readDouble();
+        } else {
+          longs[ i ] = inputStream.readBoolean() ? 1L : 0L;
+        }
+      }
+    } catch ( SocketTimeoutException e ) {
+      throw e;
+    } catch ( EOFException e ) {
+      throw new KettleEOFException( e );
+    } catch ( IOException e ) {
+      throw new KettleFileException( e );
+    }
+  }
+
+  /**
+   * Called before a new row is read
+   */
+  protected void startRow() {
+  }
+
+  /**
+   * Read a column that is not kept in a primitive slot
+   */
+  protected void readObject( int i, DataInputStream inputStream ) throws KettleFileException, IOException {
+    values[ i ] = valueMetas[ i ].readData( inputStream );
+  }
+
+  /**
+   * @return value of a column that is not kept in a primitive slot
+   */
+  protected Object getObjectValue( int i ) throws KettleException {
+    return values[ i ];
+  }
+
+  /**
+   * @param i column index, starting at 0
+   * @return the column's type if it is kept in a primitive slot, {@link ValueMetaInterface#TYPE_NONE} otherwise
+   */
+  int getPrimitiveType( int i ) {
+    return primitiveTypes[ i ];
+  }
+
+  /**
+   * @return true if a primitive slot is null
+   */
+  boolean isNull( int i ) {
+    return ( nulls[ i >> 6 ] & 1L << i ) != 0;
+  }
+
+  /**
+   * @return value of an integer or boolean slot, 0 if null
+   */
+  long getLong( int i ) {
+    return isNull( i ) ? 0L : longs[ i ];
+  }
+
+  /**
+   * @return value of a number slot, 0 if null
+   */
+  double getDouble( int i ) {
+    return isNull( i ) ? 0.0 : doubles[ i ];
+  }
+
+  /**
+   * @return the column's value as {@link RowMetaInterface#readData} would have returned it, boxed on first request
+   */
+  Object getObject( int i ) throws KettleException {
+    if ( primitiveTypes[ i ] == ValueMetaInterface.TYPE_NONE ) {
+      return getObjectValue( i );
+    }
+    Object value = values[ i ];
+    if ( value == null && !isNull( i ) ) {
+      switch ( primitiveTypes[ i ] ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          value = longs[ i ];
+          break;
+        case ValueMetaInterface.TYPE_NUMBER:
+          value = doubles[ i ];
+          break;
+        default:
+          value = longs[ i ] != 0L;
+          break;
+      }
+      values[ i ] = value;
+    }
+    return value;
+  }
+
+  /**
+   * @return the buffer for the object columns, primitive slots are only filled once boxed
+   */
+  Object[] getValues() {
+    return values;
+  }
+
+  /**
+   * @return a new array with all values boxed, which is not changed by later rows
+   */
+  Object[] toArray() throws KettleException {
+    Object[] row = new Object[ values.length ];
+    for ( int i = 0; i < row.length; i++ ) {
+      row[ i ] = getObject( i );
+    }
+    return row;
+  }
+}
@@ -15,15 +15,20 @@
 package org.pentaho.di.trans.dataservice.jdbc;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import io.reactivex.Observer;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -31,30 +36,26 @@ import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.pentaho.di.core.RowMetaAndData;
-import org.pentaho.di.core.row.RowMeta;
-import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.util.HttpClientUtil;
-import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.repository.Repository;
 import org.pentaho.di.trans.dataservice.client.ConnectionAbortingSupport;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
 import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
 import org.pentaho.metastore.api.IMetaStore;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 class RemoteClient implements IDataServiceClientService, ConnectionAbortingSupport {
 
@@ -70,8 +71,11 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
   private final ThinConnection connection;
   private final HttpClient client;
   private final HttpClientContext context;
-  private DocumentBuilderFactory docBuilderFactory;
+  private final ServiceListParser serviceListParser = new ServiceListParser();
+  private volatile ServiceCatalog catalog;
   private static final String SERVICE_PATH = "/sql/";
+  private static final String PING_PATH = "/ping";
+  private static final String LIST_SERVICES_PATH = "/listServices";
   private final CopyOnWriteArrayList<HttpPost> activeMethods = new CopyOnWriteArrayList<HttpPost>();
 
   RemoteClient( ThinConnection connection, HttpClient client, HttpClientContext context ) {
@@ -87,12 +91,32 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
 
   @Override
   public DataInputStream query( String sql, int maxRows, Map<String, String> params ) throws SQLException {
+    return execQuery( sql, maxRows, null );
+  }
+
+  /**
+   * Run a query that fails if the server does not answer in time. Only this query's request times out, other
+   * queries of the connection are not affected.
+   *
+   * @param timeout seconds to wait for the server
+   */
+  DataInputStream queryWithTimeout( String sql, int maxRows, int timeout ) throws SQLException {
+    return execQuery( sql, maxRows, timeoutConfig( timeout ) );
+  }
+
+  /**
+   * @param requestConfig timeouts of this request, or null to wait indefinitely
+   */
+  private DataInputStream execQuery( String sql, int maxRows, RequestConfig requestConfig ) throws SQLException {
     HttpPost method = null;
     try {
       String url = connection.constructUrl( SERVICE_PATH );
       method = new HttpPost( url );
 
       method.getParams().setParameter( "http.socket.timeout", 0 );
+      if ( requestConfig != null ) {
+        method.setConfig( requestConfig );
+      }
 
       String windowMode = connection.getWindowMode();
       String windowSize = connection.getWindowSize();
@@ -144,12 +168,13 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
         postParameters.add( new BasicNameValuePair( ThinConnection.ARG_DEBUGTRANS,
                 connection.getDebugTransFilename() ) );
       }
+      addNegotiatedParameters( sql, postParameters );
 
       method.setEntity( new UrlEncodedFormEntity( postParameters, CONTENT_CHARSET ) );
 
       activeMethods.add( method );
       HttpResponse httpResponse = execMethod( method );
-      return new DataInputStream( HttpClientUtil.responseToInputStream( httpResponse ) );
+      return new ThinResultInputStream( HttpClientUtil.responseToInputStream( httpResponse ), httpResponse, method );
     } catch ( Exception e ) {
       throw serverException( e );
     } finally {
@@ -197,12 +222,13 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
       if ( !Strings.isNullOrEmpty( connection.getDebugTransFilename() ) ) {
         postParameters.add( new BasicNameValuePair( ThinConnection.ARG_DEBUGTRANS, connection.getDebugTransFilename() ) );
       }
+      addNegotiatedParameters( sql, postParameters );
 
       method.setEntity( new UrlEncodedFormEntity( postParameters, CONTENT_CHARSET ) );
 
       activeMethods.add( method );
       HttpResponse httpResponse = execMethod( method );
-      return new DataInputStream( HttpClientUtil.responseToInputStream( httpResponse ) );
+      return new ThinResultInputStream( HttpClientUtil.responseToInputStream( httpResponse ), httpResponse, method );
     } catch ( Exception e ) {
       throw serverException( e );
     } finally {
@@ -210,48 +236,64 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
     }
   }
 
-  @Override public List<IThinServiceInformation> getServiceInformation() throws SQLException {
-    List<IThinServiceInformation> services = Lists.newArrayList();
-
-    try {
-      String result = execService( "/listServices" );
-      Document doc = XMLHandler.loadXMLString( createDocumentBuilder(), result );
-      Node servicesNode = XMLHandler.getSubNode( doc, "services" );
-      List<Node> serviceNodes = XMLHandler.getNodes( servicesNode, "service" );
-
-      for ( Node serviceNode : serviceNodes ) {
-        String name = XMLHandler.getTagValue( serviceNode, "name" );
-        boolean streaming = XMLHandler.getTagValue( serviceNode, "streaming" ).equals( "Y" );
-        Node rowMetaNode = XMLHandler.getSubNode( serviceNode, RowMeta.XML_META_TAG );
-        RowMetaInterface serviceFields = new RowMeta( rowMetaNode );
-        ThinServiceInformation service = new ThinServiceInformation( name, streaming, serviceFields );
-        services.add( service );
-      }
-    } catch ( Exception e ) {
-      throw serverException( e );
+  /**
+   * Advertise the optional encodings this connection is willing to read. The server reports its choice in the
+   * response headers, see {@link ThinResultInputStream}.
+   */
+  private void addNegotiatedParameters( String sql, List<NameValuePair> postParameters ) throws SQLException {
+    if ( isControlCommand( sql ) ) {
+      // Control commands answer with a bare flag rather than a result set, which is read as is
+      return;
     }
+    ResultFormat resultFormat = ResultFormat.fromOption( connection.getResultFormat() );
+    if ( resultFormat != ResultFormat.ROWS ) {
+      postParameters.add( new BasicNameValuePair( ResultFormat.PARAMETER, resultFormat.getWireName() ) );
+    }
+    List<String> codecs = Lists.newArrayList();
+    for ( ResultCompression codec : ResultCompression.fromOption( connection.getCompression() ) ) {
+      codecs.add( codec.getWireName() );
+    }
+    if ( !codecs.isEmpty() ) {
+      postParameters.add( new BasicNameValuePair( ResultCompression.PARAMETER, Joiner.on( ',' ).join( codecs ) ) );
+    }
+  }
 
-    return services;
+  /**
+   * @return true for commands on a running query, such as {@code [ stop id ]}
+   */
+  static boolean isControlCommand( String sql ) {
+    String trimmed = sql.trim();
+    return trimmed.startsWith( "[" ) && trimmed.endsWith( "]" );
+  }
+
+  @Override public List<IThinServiceInformation> getServiceInformation() throws SQLException {
+    return loadCatalog();
   }
 
   @Override public ThinServiceInformation getServiceInformation( String name ) throws SQLException {
-    try {
-      List<Node> serviceNodes = getServiceNodes( name );
-      for ( Node serviceNode : serviceNodes ) {
-        String serviceName = XMLHandler.getTagValue( serviceNode, "name" );
-        boolean streaming = XMLHandler.getTagValue( serviceNode, "streaming" ).equals( "Y" );
-        if ( serviceName.equals( name ) ) {
-          Node rowMetaNode = XMLHandler.getSubNode( serviceNode, RowMeta.XML_META_TAG );
-          RowMetaInterface serviceFields = new RowMeta( rowMetaNode );
-          return new ThinServiceInformation( serviceName, streaming, serviceFields );
+    List<IThinServiceInformation> cached = getCatalog().getFresh( connection.getCatalogTtl() );
+    if ( cached != null ) {
+      for ( IThinServiceInformation service : cached ) {
+        if ( service.getName().equals( name ) ) {
+          return (ThinServiceInformation) service;
         }
       }
+      return null;
+    }
 
+    HttpGet method = new HttpGet( listServicesUrl( name ) );
+    try {
+      HttpResponse httpResponse = execMethod( method );
+      try {
+        return serviceListParser.readService( httpResponseToStream( httpResponse ), name );
+      } finally {
+        EntityUtils.consumeQuietly( httpResponse.getEntity() );
+      }
     } catch ( Exception e ) {
       throw serverException( e );
+    } finally {
+      method.releaseConnection();
     }
-
-    return null;
   }
 
   @Override public List<String> getServiceNames() throws SQLException {
@@ -259,32 +301,146 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
   }
 
   @Override public List<String> getServiceNames( String serviceName ) throws SQLException {
-    return getServices( serviceName );
+    List<IThinServiceInformation> services = StringUtils.isBlank( serviceName )
+      ? loadCatalog() : getCatalog().getFresh( connection.getCatalogTtl() );
+    if ( services == null ) {
+      return getServices( serviceName );
+    }
+    List<String> serviceNames = new ArrayList<String>();
+    for ( IThinServiceInformation service : services ) {
+      if ( StringUtils.isBlank( serviceName ) || service.getName().equals( serviceName ) ) {
+        serviceNames.add( service.getName() );
+      }
+    }
+    return serviceNames;
+  }
+
+  /**
+   * @return the shared service list of this connection's server and user
+   */
+  ServiceCatalog getCatalog() throws SQLException {
+    if ( catalog == null ) {
+      catalog = ServiceCatalog.forServer(
+        connection.constructUrl( LIST_SERVICES_PATH ) + '#' + Strings.nullToEmpty( connection.getUsername() ) );
+    }
+    return catalog;
+  }
+
+  /**
+   * Answer from the catalog while it is fresh, otherwise revalidate it with a conditional request. The list is only
+   * downloaded and parsed again if the server reports a change, or sends no validators at all.
+   */
+  private ImmutableList<IThinServiceInformation> loadCatalog() throws SQLException {
+    ServiceCatalog serviceCatalog = getCatalog();
+    ImmutableList<IThinServiceInformation> cached = serviceCatalog.getFresh( connection.getCatalogTtl() );
+    if ( cached != null ) {
+      return cached;
+    }
+
+    ServiceCatalog.Snapshot snapshot = serviceCatalog.getSnapshot();
+    HttpGet method = new HttpGet( connection.constructUrl( LIST_SERVICES_PATH ) );
+    if ( snapshot != null && snapshot.getETag() != null ) {
+      method.addHeader( HttpHeaders.IF_NONE_MATCH, snapshot.getETag() );
+    }
+    if ( snapshot != null && snapshot.getLastModified() != null ) {
+      method.addHeader( HttpHeaders.IF_MODIFIED_SINCE, snapshot.getLastModified() );
+    }
+
+    try {
+      boolean conditional = method.containsHeader( HttpHeaders.IF_NONE_MATCH )
+        || method.containsHeader( HttpHeaders.IF_MODIFIED_SINCE );
+      HttpResponse httpResponse = execMethod( method, conditional );
+      if ( httpResponse.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED ) {
+        EntityUtils.consumeQuietly( httpResponse.getEntity() );
+        return serviceCatalog.revalidate( snapshot );
+      }
+      ImmutableList<IThinServiceInformation> services;
+      try {
+        services = serviceListParser.readServices( httpResponseToStream( httpResponse ) );
+      } finally {
+        EntityUtils.consumeQuietly( httpResponse.getEntity() );
+      }
+      return serviceCatalog.update( services, headerValue( httpResponse, HttpHeaders.ETAG ),
+        headerValue( httpResponse, HttpHeaders.LAST_MODIFIED ) );
+    } catch ( Exception e ) {
+      throw serverException( e );
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  private static String headerValue( HttpResponse httpResponse, String name ) {
+    Header header = httpResponse.getFirstHeader( name );
+    return header != null ? header.getValue() : null;
   }
 
   private List<String> getServices( String serviceName ) throws SQLException {
-    List<String> serviceNames = new ArrayList<String>();
+    HttpGet method = new HttpGet( listServicesUrl( serviceName ) );
     try {
-      List<Node> serviceNodes = getServiceNodes( serviceName );
-      for ( Node serviceNode : serviceNodes ) {
-        serviceNames.add( XMLHandler.getTagValue( serviceNode, "name" ) );
+      HttpResponse httpResponse = execMethod( method );
+      try {
+        return serviceListParser.readNames( httpResponseToStream( httpResponse ) );
+      } finally {
+        EntityUtils.consumeQuietly( httpResponse.getEntity() );
       }
     } catch ( Exception e ) {
       throw serverException( e );
+    } finally {
+      method.releaseConnection();
     }
-    return serviceNames;
   }
 
-  private List<Node> getServiceNodes( String name ) throws Exception {
-    StringBuilder serviceArguments = new StringBuilder().append( "/listServices" );
-    if ( StringUtils.isNotBlank( name ) ) {
-      serviceArguments.append( "?serviceName=" );
-      serviceArguments.append( URLEncoder.encode( name, CONTENT_CHARSET ) );
+  private String listServicesUrl( String name ) throws SQLException {
+    StringBuilder serviceArguments = new StringBuilder().append( LIST_SERVICES_PATH );
+    try {
+      if ( StringUtils.isNotBlank( name ) ) {
+        serviceArguments.append( "?serviceName=" );
+        serviceArguments.append( URLEncoder.encode( name, CONTENT_CHARSET ) );
+      }
+    } catch ( UnsupportedEncodingException e ) {
+      throw serverException( e );
     }
-    String result = execService( serviceArguments.toString() );
-    Document doc = XMLHandler.loadXMLString( createDocumentBuilder(), result );
-    Node servicesNode = XMLHandler.getSubNode( doc, "services" );
-    return XMLHandler.getNodes( servicesNode, "service" );
+    return connection.constructUrl( serviceArguments.toString() );
+  }
+
+  /**
+   * Check that the server is up and accepts our credentials, without starting a service transformation
+   *
+   * @param timeout seconds to wait for the server, or 0 to wait indefinitely
+   * @return capabilities reported by the server, or null if the server has no ping command
+   * @throws SQLException if the server can not be reached or refuses the credentials
+   */
+  ServerCapabilities ping( int timeout ) throws SQLException {
+    HttpGet method = new HttpGet( connection.constructUrl( PING_PATH ) );
+    if ( timeout > 0 ) {
+      method.setConfig( timeoutConfig( timeout ) );
+    }
+    try {
+      HttpResponse httpResponse = context != null ? client.execute( method, context ) : client.execute( method );
+      int result = httpResponse.getStatusLine().getStatusCode();
+      EntityUtils.consumeQuietly( httpResponse.getEntity() );
+
+      if ( result == HttpStatus.SC_UNAUTHORIZED ) {
+        throw new SQLException(
+          "Nice try-but we couldn't log you in. Check your username and password and try again." );
+      }
+      if ( result != HttpStatus.SC_OK ) {
+        // Older servers answer 404 or an error page
+        return null;
+      }
+      Header header = httpResponse.getFirstHeader( ServerCapabilities.HEADER );
+      return ServerCapabilities.parse( header != null ? header.getValue() : null );
+    } catch ( IOException e ) {
+      throw new SQLException( "Unable to reach the server at " + method.getURI(), e );
+    } finally {
+      method.releaseConnection();
+    }
+  }
+
+  private static RequestConfig timeoutConfig( int timeout ) {
+    int millis = (int) TimeUnit.SECONDS.toMillis( timeout );
+    return RequestConfig.custom()
+      .setConnectionRequestTimeout( millis ).setConnectTimeout( millis ).setSocketTimeout( millis ).build();
   }
 
   @Override
@@ -294,13 +450,6 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
     }
   }
 
-  private DocumentBuilder createDocumentBuilder() throws ParserConfigurationException {
-    if ( docBuilderFactory == null ) {
-      docBuilderFactory = DocumentBuilderFactory.newInstance();
-    }
-    return docBuilderFactory.newDocumentBuilder();
-  }
-
   String execService( String serviceAndArguments ) throws SQLException {
     try {
       String urlString = connection.constructUrl( serviceAndArguments );
@@ -319,6 +468,13 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
   }
 
   HttpResponse execMethod( HttpRequestBase method ) throws SQLException {
+    return execMethod( method, false );
+  }
+
+  /**
+   * @param conditional true if the request carries validators, so that 304 Not Modified is an expected answer
+   */
+  private HttpResponse execMethod( HttpRequestBase method, boolean conditional ) throws SQLException {
     HttpResponse httpResponse = null;
     try {
       httpResponse = context != null ? client.execute( method, context ) : client.execute( method );
@@ -333,7 +489,7 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
           "Nice try-but we couldn't log you in. Check your username and password and try again." );
       }
 
-      if ( result != HttpStatus.SC_OK ) {
+      if ( result != HttpStatus.SC_OK && !( conditional && result == HttpStatus.SC_NOT_MODIFIED ) ) {
         throw new SQLException( httpResponseToString( httpResponse ) );
       }
     } catch ( IOException e ) {
@@ -347,6 +503,10 @@ class RemoteClient implements IDataServiceClientService, ConnectionAbortingSuppo
     return HttpClientUtil.responseToString( httpResponse );
   }
 
+  protected InputStream httpResponseToStream( HttpResponse httpResponse ) throws IOException {
+    return HttpClientUtil.responseToInputStream( httpResponse );
+  }
+
   private static SQLException serverException( Exception e ) throws SQLException {
     Throwables.propagateIfPossible( e, SQLException.class );
     throw new SQLException( "Error connecting to server", e );
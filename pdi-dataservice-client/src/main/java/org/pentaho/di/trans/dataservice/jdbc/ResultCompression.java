@@ -0,0 +1,142 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression codecs a data service may apply to a /sql/ response body.
+ * <p>
+ * The client lists the codecs it accepts, in order of preference, with the {@link #PARAMETER} post parameter. The
+ * server names the codec it applied in a {@link #PARAMETER} response header; no header means the body is not
+ * compressed. A custom header is used rather than Content-Encoding so that HTTP client interceptors do not decode
+ * the stream before the driver can account for it.
+ */
+public enum ResultCompression {
+  NONE( "none" ) {
+    @Override public InputStream decode( InputStream inputStream ) {
+      return inputStream;
+    }
+
+    @Override public OutputStream encode( OutputStream outputStream ) {
+      return outputStream;
+    }
+  },
+  GZIP( "gzip" ) {
+    @Override public InputStream decode( InputStream inputStream ) throws IOException {
+      return new GZIPInputStream( inputStream, BUFFER_SIZE );
+    }
+
+    @Override public OutputStream encode( OutputStream outputStream ) throws IOException {
+      return new GZIPOutputStream( outputStream, BUFFER_SIZE, true );
+    }
+  },
+  DEFLATE( "deflate" ) {
+    @Override public InputStream decode( InputStream inputStream ) {
+      return new InflaterInputStream( inputStream );
+    }
+
+    @Override public OutputStream encode( OutputStream outputStream ) {
+      return new DeflaterOutputStream( outputStream, true );
+    }
+  };
+
+  public static final String PARAMETER = "Compression";
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  private final String wireName;
+
+  ResultCompression( String wireName ) {
+    this.wireName = wireName;
+  }
+
+  public String getWireName() {
+    return wireName;
+  }
+
+  /**
+   * @param inputStream compressed stream
+   * @return stream of decompressed bytes
+   */
+  public abstract InputStream decode( InputStream inputStream ) throws IOException;
+
+  /**
+   * @param outputStream destination of compressed bytes
+   * @return stream accepting uncompressed bytes. Flushing it flushes pending compressed output.
+   */
+  public abstract OutputStream encode( OutputStream outputStream ) throws IOException;
+
+  /**
+   * Resolve the codecs named by a connection option, e.g. {@code compression=gzip,deflate}
+   *
+   * @param option comma or pipe separated codec names, may be null
+   * @return accepted codecs in order of preference, empty if compression is not wanted
+   * @throws SQLException if a codec is not available in this client
+   */
+  public static List<ResultCompression> fromOption( String option ) throws SQLException {
+    ImmutableList.Builder<ResultCompression> codecs = ImmutableList.builder();
+    Splitter splitter = Splitter.on( CharMatcher.anyOf( ",|" ) ).trimResults().omitEmptyStrings();
+    for ( String name : splitter.split( Strings.nullToEmpty( option ) ) ) {
+      ResultCompression codec = forName( name );
+      if ( codec == null ) {
+        throw new SQLException( "Unsupported compression codec: " + name );
+      }
+      if ( codec != NONE ) {
+        codecs.add( codec );
+      }
+    }
+    return codecs.build();
+  }
+
+  /**
+   * Resolve the codec a server reported in its response
+   *
+   * @param wireName response header value, may be null
+   * @return codec applied to the response body, {@link #NONE} if the server did not compress
+   * @throws SQLException if the server used a codec this client can not decode
+   */
+  public static ResultCompression fromWireName( String wireName ) throws SQLException {
+    if ( Strings.isNullOrEmpty( wireName ) ) {
+      return NONE;
+    }
+    ResultCompression codec = forName( wireName.trim() );
+    if ( codec == null ) {
+      throw new SQLException( "Unsupported compression codec: " + wireName );
+    }
+    return codec;
+  }
+
+  private static ResultCompression forName( String name ) {
+    for ( ResultCompression codec : values() ) {
+      if ( codec.wireName.equalsIgnoreCase( name ) ) {
+        return codec;
+      }
+    }
+    return null;
+  }
+}
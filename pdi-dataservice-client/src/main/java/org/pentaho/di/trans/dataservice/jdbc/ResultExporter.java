@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CountingOutputStream;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+
+/**
+ * Writes the rows of a result set to a file as they are read, holding one row at a time
+ */
+class ResultExporter {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final RowMetaInterface rowMeta;
+  private final ExportFormat format;
+
+  ResultExporter( RowMetaInterface rowMeta, ExportFormat format ) {
+    this.rowMeta = rowMeta;
+    this.format = format;
+  }
+
+  /**
+   * Write all remaining rows of the result set, replacing the file if it exists
+   *
+   * @param startNanos {@link System#nanoTime()} when the query started
+   */
+  ThinExportStatistics export( BaseResultSet resultSet, Path path, long startNanos ) throws SQLException {
+    long rows = 0;
+    CountingOutputStream counter;
+    try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+      StandardOpenOption.TRUNCATE_EXISTING ) ) {
+      counter = new CountingOutputStream(
+        new BufferedOutputStream( Channels.newOutputStream( channel ), BUFFER_SIZE ) );
+      if ( format == ExportFormat.CSV ) {
+        Writer writer = new OutputStreamWriter( counter, Charsets.UTF_8 );
+        writeCsvHeader( writer );
+        while ( resultSet.next() ) {
+          writeCsvRow( writer, resultSet.getCurrentRow() );
+          rows++;
+        }
+        writer.flush();
+      } else {
+        DataOutputStream output = new DataOutputStream( counter );
+        rowMeta.writeMeta( output );
+        while ( resultSet.next() ) {
+          rowMeta.writeData( output, resultSet.getCurrentRow() );
+          rows++;
+        }
+        output.flush();
+      }
+    } catch ( IOException | KettleException e ) {
+      throw new SQLException( "Unable to export to " + path, e );
+    }
+    return new ThinExportStatistics( rows, counter.getCount(), System.nanoTime() - startNanos );
+  }
+
+  private void writeCsvHeader( Writer writer ) throws IOException {
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      if ( i > 0 ) {
+        writer.write( ',' );
+      }
+      writeCsvField( writer, rowMeta.getValueMeta( i ).getName() );
+    }
+    writer.write( "\r\n" );
+  }
+
+  private void writeCsvRow( Writer writer, Object[] row ) throws IOException, KettleException {
+    for ( int i = 0; i < rowMeta.size(); i++ ) {
+      if ( i > 0 ) {
+        writer.write( ',' );
+      }
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      Object value = row[ i ];
+      if ( value != null ) {
+        writeCsvField( writer, valueMeta.getString( value ) );
+      }
+    }
+    writer.write( "\r\n" );
+  }
+
+  private static void writeCsvField( Writer writer, String field ) throws IOException {
+    if ( field == null ) {
+      return;
+    }
+    boolean quoted = false;
+    for ( int i = 0; i < field.length() && !quoted; i++ ) {
+      char c = field.charAt( i );
+      quoted = c == ',' || c == '"' || c == '\r' || c == '\n';
+    }
+    if ( !quoted ) {
+      writer.write( field );
+      return;
+    }
+    writer.write( '"' );
+    for ( int i = 0; i < field.length(); i++ ) {
+      char c = field.charAt( i );
+      if ( c == '"' ) {
+        writer.write( '"' );
+      }
+      writer.write( c );
+    }
+    writer.write( '"' );
+  }
+}
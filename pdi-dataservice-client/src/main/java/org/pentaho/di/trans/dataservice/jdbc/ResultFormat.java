@@ -0,0 +1,87 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Strings;
+
+import java.sql.SQLException;
+
+/**
+ * Encodings a data service may use for the rows of a /sql/ response.
+ * <p>
+ * The client asks for a format with the {@link #PARAMETER} post parameter and the server answers with a
+ * {@link #PARAMETER} response header naming the format it actually wrote. A server that does not know about
+ * negotiation sends no header, in which case the row-at-a-time {@link #ROWS} format is assumed.
+ */
+public enum ResultFormat {
+  /**
+   * One {@link org.pentaho.di.core.row.RowMetaInterface#writeData} record per row
+   */
+  ROWS( "rows" ),
+  /**
+   * Column-major batches, see {@link ColumnarBatchWriter}
+   */
+  COLUMNAR( "columnar/" + ColumnarBatchWriter.VERSION );
+
+  public static final String PARAMETER = "ResultFormat";
+
+  private final String wireName;
+
+  ResultFormat( String wireName ) {
+    this.wireName = wireName;
+  }
+
+  public String getWireName() {
+    return wireName;
+  }
+
+  /**
+   * Resolve the format named by a connection option, e.g. {@code resultformat=columnar}
+   *
+   * @param option connection option value, may be null
+   * @return requested format, {@link #ROWS} if not set
+   * @throws SQLException if the option names an unknown format
+   */
+  public static ResultFormat fromOption( String option ) throws SQLException {
+    if ( Strings.isNullOrEmpty( option ) ) {
+      return ROWS;
+    }
+    for ( ResultFormat format : values() ) {
+      if ( format.name().equalsIgnoreCase( option ) || format.wireName.equalsIgnoreCase( option ) ) {
+        return format;
+      }
+    }
+    throw new SQLException( "Unknown result format: " + option );
+  }
+
+  /**
+   * Resolve the format a server reported in its response
+   *
+   * @param wireName response header value, may be null
+   * @return format of the response body, {@link #ROWS} if the server did not negotiate
+   * @throws SQLException if the server answered with a format or version this client can not read
+   */
+  public static ResultFormat fromWireName( String wireName ) throws SQLException {
+    if ( Strings.isNullOrEmpty( wireName ) ) {
+      return ROWS;
+    }
+    for ( ResultFormat format : values() ) {
+      if ( format.wireName.equalsIgnoreCase( wireName.trim() ) ) {
+        return format;
+      }
+    }
+    throw new SQLException( "Unsupported result format: " + wireName );
+  }
+}
@@ -0,0 +1,126 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinColumnBatch;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Column batch gathered from rows of a row by row result. Integer, date, boolean and number columns are copied
+ * into primitive arrays, other values are read from the rows.
+ */
+class RowColumnBatch implements IThinColumnBatch {
+  private final List<Object[]> rows;
+  private final int columnCount;
+  private final long[][] longs;
+  private final double[][] doubles;
+
+  RowColumnBatch( RowMetaInterface rowMeta, List<Object[]> rows ) {
+    this.rows = rows;
+    this.columnCount = rowMeta.size();
+    this.longs = new long[ columnCount ][];
+    this.doubles = new double[ columnCount ][];
+    for ( int i = 0; i < columnCount; i++ ) {
+      ValueMetaInterface valueMeta = rowMeta.getValueMeta( i );
+      if ( valueMeta.isStorageNormal() ) {
+        switch ( valueMeta.getType() ) {
+          case ValueMetaInterface.TYPE_INTEGER:
+          case ValueMetaInterface.TYPE_DATE:
+          case ValueMetaInterface.TYPE_BOOLEAN:
+            longs[ i ] = copyLongs( i, valueMeta.getType() );
+            break;
+          case ValueMetaInterface.TYPE_NUMBER:
+            doubles[ i ] = copyDoubles( i );
+            break;
+          default:
+            break;
+        }
+      }
+    }
+  }
+
+  private long[] copyLongs( int column, int type ) {
+    long[] values = new long[ rows.size() ];
+    for ( int row = 0; row < values.length; row++ ) {
+      Object value = rows.get( row )[ column ];
+      if ( value == null ) {
+        continue;
+      }
+      switch ( type ) {
+        case ValueMetaInterface.TYPE_INTEGER:
+          values[ row ] = (Long) value;
+          break;
+        case ValueMetaInterface.TYPE_DATE:
+          values[ row ] = ( (Date) value ).getTime();
+          break;
+        default:
+          values[ row ] = (Boolean) value ? 1L : 0L;
+          break;
+      }
+    }
+    return values;
+  }
+
+  private double[] copyDoubles( int column ) {
+    double[] values = new double[ rows.size() ];
+    for ( int row = 0; row < values.length; row++ ) {
+      Object value = rows.get( row )[ column ];
+      if ( value != null ) {
+        values[ row ] = (Double) value;
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public int getRowCount() {
+    return rows.size();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columnCount;
+  }
+
+  @Override
+  public boolean isNull( int column, int row ) {
+    return rows.get( row )[ column ] == null;
+  }
+
+  @Override
+  public long getLong( int column, int row ) {
+    if ( longs[ column ] == null ) {
+      throw new IllegalArgumentException( "Not an integer, date or boolean column: " + column );
+    }
+    return longs[ column ][ row ];
+  }
+
+  @Override
+  public double getDouble( int column, int row ) {
+    if ( doubles[ column ] == null ) {
+      throw new IllegalArgumentException( "Not a number column: " + column );
+    }
+    return doubles[ column ][ row ];
+  }
+
+  @Override
+  public Object getObject( int column, int row ) {
+    return rows.get( row )[ column ];
+  }
+}
@@ -0,0 +1,180 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes rows on a background thread into a bounded buffer, so that network reads and deserialization overlap
+ * with the consumer's work. The decoder blocks when the buffer is full, so a slow consumer holds back the stream.
+ * <p>
+ * Several sources may share one buffer, each decoded on its own thread. Their rows are interleaved in arrival order.
+ */
+class RowPrefetcher {
+  /**
+   * Source of decoded rows, called from the decoder thread only
+   */
+  interface RowSource {
+    /**
+     * @return the next row, or null when the stream is exhausted
+     */
+    Object[] readRow() throws Exception;
+  }
+
+  static final long JOIN_TIMEOUT_MILLIS = 1000;
+  private static final Object[] END = new Object[ 0 ];
+
+  private final BlockingQueue<Object[]> buffer;
+  private final List<Thread> threads;
+  private volatile boolean cancelled = false;
+  private volatile Throwable failure;
+  private boolean finished = false;
+  private int running;
+
+  RowPrefetcher( String name, int capacity, RowSource rowSource ) {
+    this( name, capacity, ImmutableList.of( rowSource ) );
+  }
+
+  RowPrefetcher( String name, int capacity, List<? extends RowSource> rowSources ) {
+    Preconditions.checkArgument( capacity > 0, "Prefetch buffer capacity must be positive" );
+    Preconditions.checkArgument( !rowSources.isEmpty(), "At least one row source is required" );
+    this.buffer = new ArrayBlockingQueue<>( capacity );
+    ImmutableList.Builder<Thread> threads = ImmutableList.builder();
+    for ( int i = 0; i < rowSources.size(); i++ ) {
+      final RowSource rowSource = rowSources.get( i );
+      Thread thread = new Thread( () -> decode( rowSource ), rowSources.size() > 1 ? name + " #" + i : name );
+      thread.setDaemon( true );
+      threads.add( thread );
+    }
+    this.threads = threads.build();
+    this.running = this.threads.size();
+  }
+
+  void start() {
+    for ( Thread thread : threads ) {
+      thread.start();
+    }
+  }
+
+  int getCapacity() {
+    return buffer.size() + buffer.remainingCapacity();
+  }
+
+  /**
+   * Wait for the next decoded row
+   *
+   * @return the next row, or null when the stream is exhausted
+   * @throws SQLException if decoding failed or the wait was interrupted
+   */
+  Object[] take() throws SQLException {
+    if ( finished ) {
+      return null;
+    }
+    Object[] row;
+    try {
+      while ( ( row = buffer.take() ) == END ) {
+        // A source is exhausted, or failed and the consumer should hear about it now
+        running -= 1;
+        if ( failure != null || running == 0 ) {
+          finished = true;
+          if ( failure instanceof SQLException ) {
+            throw (SQLException) failure;
+          } else if ( failure != null ) {
+            throw new SQLException( "Unable to read row", failure );
+          }
+          return null;
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new SQLException( "Interrupted while waiting for rows", e );
+    }
+    return row;
+  }
+
+  /**
+   * Stop decoding and release buffered rows, without waiting for the decoders. A decoder blocked in a socket read
+   * ignores the interrupt, so owners abort the request and {@link #join(long)} before they close the stream.
+   */
+  void cancel() {
+    cancelled = true;
+    finished = true;
+    for ( Thread thread : threads ) {
+      thread.interrupt();
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Wait for the decoders to stop
+   *
+   * @param timeoutMillis longest time to wait for all decoders together
+   * @return true if no decoder is running anymore
+   */
+  boolean join( long timeoutMillis ) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos( timeoutMillis );
+    try {
+      for ( Thread thread : threads ) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+        if ( remaining <= 0 ) {
+          break;
+        }
+        thread.join( remaining );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+    return !isAlive();
+  }
+
+  boolean isAlive() {
+    for ( Thread thread : threads ) {
+      if ( thread.isAlive() ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void decode( RowSource rowSource ) {
+    try {
+      Object[] row;
+      while ( !cancelled && ( row = rowSource.readRow() ) != null ) {
+        buffer.put( row );
+      }
+    } catch ( InterruptedException e ) {
+      // Cancelled
+      return;
+    } catch ( Throwable e ) {
+      if ( failure == null ) {
+        failure = e;
+      }
+    }
+    try {
+      while ( !cancelled && !buffer.offer( END, 100, TimeUnit.MILLISECONDS ) ) {
+        // Wait for the consumer to make room
+      }
+    } catch ( InterruptedException e ) {
+      // Cancelled
+    }
+  }
+}
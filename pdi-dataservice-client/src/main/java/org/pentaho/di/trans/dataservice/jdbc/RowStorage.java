@@ -0,0 +1,56 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Strings;
+
+import java.sql.SQLException;
+
+/**
+ * How a {@link ThinResultSet} keeps the rows it reads, set with the {@link ThinConnection#ARG_ROW_STORAGE}
+ * connection option.
+ */
+public enum RowStorage {
+  /**
+   * One new array of boxed values per row, as {@link org.pentaho.di.core.row.RowMetaInterface#readData} returns it
+   */
+  OBJECTS,
+  /**
+   * One buffer reused for every row, with integer, number and boolean columns in primitive slots, see
+   * {@link PrimitiveRow}. Applies to row by row reads without prefetching.
+   */
+  PRIMITIVE,
+  /**
+   * As {@link #PRIMITIVE}, but other columns are kept as raw bytes and only decoded when read, see {@link LazyRow}
+   */
+  LAZY;
+
+  /**
+   * @param option connection option value, may be null
+   * @return requested storage, {@link #OBJECTS} if not set
+   * @throws SQLException if the option names an unknown storage
+   */
+  public static RowStorage fromOption( String option ) throws SQLException {
+    if ( Strings.isNullOrEmpty( option ) ) {
+      return OBJECTS;
+    }
+    for ( RowStorage storage : values() ) {
+      if ( storage.name().equalsIgnoreCase( option.trim() ) ) {
+        return storage;
+      }
+    }
+    throw new SQLException( "Unknown row storage: " + option );
+  }
+}
@@ -0,0 +1,215 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.io.CountingOutputStream;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps every row of a scroll insensitive {@link ThinResultSet}, so that it can be read again without another
+ * query. Rows are kept decoded in memory up to a budget. Later rows are written to a temporary file in the row
+ * stream format, and read back with positional reads using an index of row offsets.
+ */
+class ScrollBuffer implements Closeable {
+  static final int DEFAULT_MEMORY_MB = 16;
+
+  private final RowMetaInterface rowMeta;
+  private final long memoryBudget;
+  private final List<Object[]> memoryRows = new ArrayList<>();
+  private long memoryUsed;
+
+  private Path file;
+  private CountingOutputStream counter;
+  private DataOutputStream output;
+  private FileChannel channel;
+  /**
+   * Start of each spilled row in the file, followed by the end of the last one
+   */
+  private long[] offsets = new long[ 1024 ];
+  private int spilled;
+  private long flushed;
+  /**
+   * Holds the spilled row being decoded, grown for larger rows
+   */
+  private ByteBuffer rowBuffer = ByteBuffer.allocate( 8192 );
+  private final ByteBufferInputStream rowStream = new ByteBufferInputStream();
+  private final DataInputStream rowInput = new DataInputStream( rowStream );
+
+  /**
+   * @param memoryBudget estimated size in bytes of the rows kept in memory before spilling to disk
+   */
+  ScrollBuffer( RowMetaInterface rowMeta, long memoryBudget ) {
+    this.rowMeta = rowMeta;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * @return number of rows added
+   */
+  int size() {
+    return memoryRows.size() + spilled;
+  }
+
+  /**
+   * @return number of rows written to disk
+   */
+  int getSpilledRows() {
+    return spilled;
+  }
+
+  /**
+   * Append a row. The row must not be changed afterwards, it is kept as is while the memory budget lasts.
+   */
+  void add( Object[] row ) throws KettleException, IOException {
+    if ( spilled == 0 ) {
+      long rowSize = estimateSize( row );
+      if ( memoryUsed + rowSize <= memoryBudget ) {
+        memoryRows.add( row );
+        memoryUsed += rowSize;
+        return;
+      }
+    }
+    spill( row );
+  }
+
+  /**
+   * @param i row index, starting at 0
+   * @return the row, decoded again for every call if it was spilled
+   */
+  Object[] get( int i ) throws KettleException, IOException {
+    if ( i < memoryRows.size() ) {
+      return memoryRows.get( i );
+    }
+    int k = i - memoryRows.size();
+    long start = offsets[ k ];
+    long end = offsets[ k + 1 ];
+    if ( end > flushed ) {
+      output.flush();
+      flushed = counter.getCount();
+    }
+    int length = (int) ( end - start );
+    if ( rowBuffer.capacity() < length ) {
+      rowBuffer = ByteBuffer.allocate( Math.max( length, rowBuffer.capacity() * 2 ) );
+    }
+    rowBuffer.clear();
+    rowBuffer.limit( length );
+    while ( rowBuffer.hasRemaining() ) {
+      if ( channel.read( rowBuffer, start + rowBuffer.position() ) < 0 ) {
+        throw new EOFException( "Spilled row " + i + " is truncated" );
+      }
+    }
+    rowBuffer.flip();
+    rowStream.buffer = rowBuffer;
+    return rowMeta.readData( rowInput );
+  }
+
+  private void spill( Object[] row ) throws KettleException, IOException {
+    if ( output == null ) {
+      file = Files.createTempFile( "thin-result-set", ".rows" );
+      counter = new CountingOutputStream( new BufferedOutputStream( Files.newOutputStream( file ) ) );
+      output = new DataOutputStream( counter );
+      channel = FileChannel.open( file, StandardOpenOption.READ );
+    }
+    rowMeta.writeData( output, row );
+    if ( spilled + 1 == offsets.length ) {
+      offsets = Arrays.copyOf( offsets, offsets.length * 2 );
+    }
+    offsets[ ++spilled ] = counter.getCount();
+  }
+
+  /**
+   * Rough heap size of a decoded row, enough to keep the memory budget in bounds
+   */
+  static long estimateSize( Object[] row ) {
+    long size = 16L + 8L * row.length;
+    for ( Object value : row ) {
+      if ( value instanceof String ) {
+        size += 40L + 2L * ( (String) value ).length();
+      } else if ( value instanceof byte[] ) {
+        size += 16L + ( (byte[]) value ).length;
+      } else if ( value instanceof BigDecimal ) {
+        size += 64L;
+      } else if ( value != null ) {
+        size += 24L;
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Drop all rows and delete the temporary file
+   */
+  @Override
+  public void close() throws IOException {
+    memoryRows.clear();
+    try {
+      if ( output != null ) {
+        output.close();
+        channel.close();
+      }
+    } finally {
+      if ( file != null ) {
+        Files.deleteIfExists( file );
+        file = null;
+      }
+      output = null;
+      channel = null;
+      spilled = 0;
+    }
+  }
+
+  /**
+   * Reads the row buffer, kept across rows so that decoding a row allocates no streams
+   */
+  private static class ByteBufferInputStream extends InputStream {
+    private ByteBuffer buffer;
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read( byte[] b, int off, int len ) {
+      if ( len == 0 ) {
+        return 0;
+      }
+      if ( !buffer.hasRemaining() ) {
+        return -1;
+      }
+      int n = Math.min( len, buffer.remaining() );
+      buffer.get( b, off, n );
+      return n;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Optional protocol features a data service server advertises in the {@link #HEADER} response header, as a
+ * comma separated list. Servers that predate the header support none of them.
+ */
+public final class ServerCapabilities {
+  public static final String HEADER = "Capabilities";
+
+  /**
+   * {@code [ finish <id> ]} reports the error flag of a query and stops it, in one round trip
+   */
+  public static final String FINISH = "finish";
+
+  public static final ServerCapabilities NONE = new ServerCapabilities( ImmutableSet.<String>of() );
+
+  private final ImmutableSet<String> names;
+
+  private ServerCapabilities( ImmutableSet<String> names ) {
+    this.names = names;
+  }
+
+  /**
+   * @param header header value, may be null
+   * @return the advertised capabilities
+   */
+  public static ServerCapabilities parse( String header ) {
+    if ( Strings.isNullOrEmpty( header ) ) {
+      return NONE;
+    }
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for ( String name : Splitter.on( ',' ).trimResults().omitEmptyStrings().split( header ) ) {
+      names.add( name.toLowerCase( Locale.ROOT ) );
+    }
+    return new ServerCapabilities( names.build() );
+  }
+
+  public boolean supports( String capability ) {
+    return names.contains( capability );
+  }
+
+  public Set<String> getNames() {
+    return names;
+  }
+
+  @Override public String toString() {
+    return names.toString();
+  }
+}
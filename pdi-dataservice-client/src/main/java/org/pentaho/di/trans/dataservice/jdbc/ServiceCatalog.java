@@ -0,0 +1,144 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cached service list of one server, shared by all connections to it in this JVM. Within its time to live the list
+ * is served without a request; after that it is revalidated with a conditional GET, and only parsed again if the
+ * server reports a change.
+ * <p>
+ * Obtain it with {@code connection.unwrap( ServiceCatalog.class )} to force a reload or read the cache counters.
+ */
+public final class ServiceCatalog {
+  private static final ConcurrentMap<String, ServiceCatalog> CATALOGS = new ConcurrentHashMap<>();
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong notModifiedCount = new AtomicLong();
+  private volatile Snapshot snapshot;
+
+  ServiceCatalog() {
+  }
+
+  /**
+   * @param key identifies the server and the user, who may not see the same services as others
+   */
+  static ServiceCatalog forServer( String key ) {
+    return CATALOGS.computeIfAbsent( key, k -> new ServiceCatalog() );
+  }
+
+  /**
+   * Drop the cached list, the next lookup downloads it in full
+   */
+  public void invalidate() {
+    snapshot = null;
+  }
+
+  /**
+   * @return lookups answered from the cache without a request
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * @return lookups that downloaded and parsed the list
+   */
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  /**
+   * @return lookups revalidated by the server without a new list
+   */
+  public long getNotModifiedCount() {
+    return notModifiedCount.get();
+  }
+
+  Snapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * @return the cached list if it is younger than the time to live, counting a hit
+   */
+  ImmutableList<IThinServiceInformation> getFresh( long ttlSeconds ) {
+    Snapshot current = snapshot;
+    if ( current != null && ttlSeconds > 0
+      && System.nanoTime() - current.validatedNanos < TimeUnit.SECONDS.toNanos( ttlSeconds ) ) {
+      hitCount.incrementAndGet();
+      return current.services;
+    }
+    return null;
+  }
+
+  /**
+   * Store a newly downloaded list
+   */
+  ImmutableList<IThinServiceInformation> update( ImmutableList<IThinServiceInformation> services, String eTag,
+                                                  String lastModified ) {
+    missCount.incrementAndGet();
+    snapshot = new Snapshot( services, eTag, lastModified );
+    return services;
+  }
+
+  /**
+   * Keep the current list after the server confirmed it is unchanged
+   */
+  ImmutableList<IThinServiceInformation> revalidate( Snapshot current ) {
+    notModifiedCount.incrementAndGet();
+    snapshot = new Snapshot( current.services, current.eTag, current.lastModified );
+    return current.services;
+  }
+
+  static final class Snapshot {
+    private final ImmutableList<IThinServiceInformation> services;
+    private final String eTag;
+    private final String lastModified;
+    private final long validatedNanos = System.nanoTime();
+
+    Snapshot( ImmutableList<IThinServiceInformation> services, String eTag, String lastModified ) {
+      this.services = services;
+      this.eTag = eTag;
+      this.lastModified = lastModified;
+    }
+
+    ImmutableList<IThinServiceInformation> getServices() {
+      return services;
+    }
+
+    /**
+     * @return entity tag of the response, or null if the server sent none
+     */
+    String getETag() {
+      return eTag;
+    }
+
+    /**
+     * @return Last-Modified date of the response, or null if the server sent none
+     */
+    String getLastModified() {
+      return lastModified;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Reads the response of the listServices command as it arrives, instead of loading it into a DOM first.
+ * <p>
+ * Only the row meta of a wanted service is copied to a small DOM fragment, so that it is decoded exactly as
+ * {@link RowMeta#RowMeta(Node)} always did. Services that are not wanted are skipped without building any objects.
+ */
+class ServiceListParser {
+  private static final String SERVICE = "service";
+  private static final String NAME = "name";
+  private static final String STREAMING = "streaming";
+
+  private final XMLInputFactory inputFactory;
+  private final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+
+  ServiceListParser() {
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    inputFactory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+    inputFactory.setProperty( XMLInputFactory.IS_COALESCING, true );
+  }
+
+  /**
+   * @return every service in the list
+   */
+  ImmutableList<IThinServiceInformation> readServices( InputStream in ) throws KettleException {
+    return ImmutableList.<IThinServiceInformation>copyOf( read( in, null, true ) );
+  }
+
+  /**
+   * Read up to the first service of the given name, the rest of the list is not parsed
+   *
+   * @return the service, or null if the list does not contain it
+   */
+  ThinServiceInformation readService( InputStream in, String serviceName ) throws KettleException {
+    List<ThinServiceInformation> services = read( in, serviceName, true );
+    return services.isEmpty() ? null : services.get( 0 );
+  }
+
+  /**
+   * @return names of the services in the list, their fields are skipped
+   */
+  List<String> readNames( InputStream in ) throws KettleException {
+    List<String> names = new ArrayList<String>();
+    for ( ThinServiceInformation service : read( in, null, false ) ) {
+      names.add( service.getName() );
+    }
+    return names;
+  }
+
+  private List<ThinServiceInformation> read( InputStream in, String serviceName, boolean withFields )
+    throws KettleException {
+    List<ThinServiceInformation> services = new ArrayList<ThinServiceInformation>();
+    try {
+      XMLStreamReader reader = inputFactory.createXMLStreamReader( in );
+      try {
+        Fragments fragments = new Fragments();
+        while ( reader.hasNext() ) {
+          if ( reader.next() == START_ELEMENT && SERVICE.equals( reader.getLocalName() ) ) {
+            ThinServiceInformation service = readService( reader, serviceName, withFields, fragments );
+            if ( service != null ) {
+              services.add( service );
+              if ( serviceName != null ) {
+                break;
+              }
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch ( XMLStreamException | ParserConfigurationException e ) {
+      throw new KettleException( "Unable to read the list of data services", e );
+    }
+    return services;
+  }
+
+  /**
+   * Read one service element, the reader is left at its end tag
+   *
+   * @return the service, or null if it does not have the requested name
+   */
+  private ThinServiceInformation readService( XMLStreamReader reader, String serviceName, boolean withFields,
+                                              Fragments fragments )
+    throws XMLStreamException, ParserConfigurationException, KettleException {
+    String name = null;
+    boolean streaming = false;
+    RowMetaInterface serviceFields = null;
+
+    while ( reader.nextTag() == START_ELEMENT ) {
+      String element = reader.getLocalName();
+      if ( NAME.equals( element ) && serviceName != null ) {
+        if ( !textEquals( reader, serviceName ) ) {
+          skip( reader );
+          return null;
+        }
+        name = serviceName;
+      } else if ( NAME.equals( element ) ) {
+        name = reader.getElementText();
+      } else if ( STREAMING.equals( element ) ) {
+        streaming = "Y".equals( reader.getElementText() );
+      } else if ( RowMeta.XML_META_TAG.equals( element ) && withFields ) {
+        serviceFields = new RowMeta( fragments.copy( reader ) );
+      } else {
+        skip( reader );
+      }
+    }
+    return name != null ? new ThinServiceInformation( name, streaming, serviceFields ) : null;
+  }
+
+  /**
+   * Compare the text of the current element without creating a string, the reader is left at its end tag
+   */
+  private static boolean textEquals( XMLStreamReader reader, String expected ) throws XMLStreamException {
+    boolean equal = true;
+    int matched = 0;
+    for ( int event = reader.next(); event != END_ELEMENT; event = reader.next() ) {
+      if ( equal && ( event == CHARACTERS || event == CDATA || event == SPACE ) ) {
+        int length = reader.getTextLength();
+        if ( matched + length > expected.length() ) {
+          equal = false;
+        } else {
+          char[] text = reader.getTextCharacters();
+          int start = reader.getTextStart();
+          for ( int i = 0; equal && i < length; i++ ) {
+            equal = text[ start + i ] == expected.charAt( matched + i );
+          }
+          matched += length;
+        }
+      } else if ( event == START_ELEMENT ) {
+        equal = false;
+        skip( reader );
+      }
+    }
+    return equal && matched == expected.length();
+  }
+
+  /**
+   * Skip to the end tag of the element the reader is in, or of the one it starts
+   */
+  private static void skip( XMLStreamReader reader ) throws XMLStreamException {
+    int depth = 1;
+    do {
+      int event = reader.next();
+      if ( event == START_ELEMENT ) {
+        depth++;
+      } else if ( event == END_ELEMENT ) {
+        depth--;
+      }
+    } while ( depth > 0 );
+  }
+
+  /**
+   * Copies elements to a DOM, one document is shared by all fragments of a response
+   */
+  private class Fragments {
+    private Document document;
+
+    /**
+     * @return a detached copy of the element at the reader, which is left at its end tag
+     */
+    Element copy( XMLStreamReader reader ) throws XMLStreamException, ParserConfigurationException {
+      if ( document == null ) {
+        synchronized ( documentBuilderFactory ) {
+          document = documentBuilderFactory.newDocumentBuilder().newDocument();
+        }
+      }
+      Element root = createElement( reader );
+      Node parent = root;
+      while ( parent != null ) {
+        int event = reader.next();
+        if ( event == START_ELEMENT ) {
+          parent = parent.appendChild( createElement( reader ) );
+        } else if ( event == CHARACTERS || event == CDATA || event == SPACE ) {
+          parent.appendChild( document.createTextNode( reader.getText() ) );
+        } else if ( event == END_ELEMENT ) {
+          parent = parent == root ? null : parent.getParentNode();
+        }
+      }
+      return root;
+    }
+
+    private Element createElement( XMLStreamReader reader ) {
+      Element element = document.createElement( reader.getLocalName() );
+      for ( int i = 0; i < reader.getAttributeCount(); i++ ) {
+        element.setAttribute( reader.getAttributeLocalName( i ), reader.getAttributeValue( i ) );
+      }
+      return element;
+    }
+  }
+}
@@ -22,12 +22,18 @@ import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.pentaho.di.cluster.SlaveConnectionManager;
 import org.pentaho.di.core.database.BaseDatabaseMeta;
-import org.pentaho.di.core.util.HttpClientManager;
 import org.pentaho.di.core.util.HttpClientUtil;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.dataservice.client.ConnectionAbortingSupport;
@@ -51,14 +57,22 @@ import java.sql.ResultSet;
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
 import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ThinConnection extends ThinBase implements Connection {
 
@@ -74,13 +88,34 @@ public class ThinConnection extends ThinBase implements Connection {
   public static final String ARG_WINDOW_SIZE = "windowsize";
   public static final String ARG_WINDOW_EVERY = "windowevery";
   public static final String ARG_WINDOW_LIMIT = "windowlimit";
+  public static final String ARG_RESULT_FORMAT = "resultformat";
+  public static final String ARG_COMPRESSION = "compression";
+  public static final String ARG_ASYNC_CLOSE = "asyncclose";
+  public static final String ARG_CATALOG_TTL = "catalogttl";
+  public static final String ARG_ROW_STORAGE = "rowstorage";
+  public static final String ARG_SCROLL_MEMORY = "scrollmemory";
+  public static final String ARG_MAX_CONNECTIONS = "maxconnections";
+  public static final String ARG_MAX_CONNECTIONS_PER_ROUTE = "maxconnectionsperroute";
+  public static final String ARG_IDLE_TIMEOUT = "idletimeout";
   public static final String ARG_WEB_APPLICATION_NAME = BaseDatabaseMeta.ATTRIBUTE_PREFIX_EXTRA_OPTION
       + "KettleThin.webappname";
 
   private static Class<?> PKG = ThinConnection.class; // for i18n purposes, needed by Translator2!!
 
+  private static final int CLEANUP_THREADS = 4;
+  private static final long CLEANUP_TIMEOUT_SECONDS = 30;
+  private static final String DUMMY_QUERY = "SELECT *";
+
+  /**
+   * Runs timed validation queries of local connections, shared by all connections
+   */
+  private static final ExecutorService VALIDATION_EXECUTOR = Executors.newCachedThreadPool(
+    new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "ThinConnection validation-%d" ).build() );
+
   public static IDataServiceClientService localClient;
   private IDataServiceClientService clientService;
+  /** Shared HTTP client of a remote connection, released on close */
+  private HttpClientRegistry.Key httpClientKey;
 
   private String url;
   private URI baseURI;
@@ -101,6 +136,21 @@ public class ThinConnection extends ThinBase implements Connection {
 
   private String debugTransFilename;
 
+  private String resultFormat;
+  private String compression;
+  private String rowStorage;
+  private boolean asyncClose;
+  private int catalogTtl;
+  private int scrollMemory = ScrollBuffer.DEFAULT_MEMORY_MB;
+  private volatile ServerCapabilities serverCapabilities = ServerCapabilities.NONE;
+
+  /**
+   * Runs result set cleanup off the caller's thread when {@link #ARG_ASYNC_CLOSE} is set, created on first use
+   */
+  private ExecutorService cleanupExecutor;
+  /** Set once close() stops taking cleanup, guarded by this connection */
+  private boolean closed;
+
   private ImmutableMap<String, String> parameters = ImmutableMap.of();
 
   /**
@@ -124,11 +174,57 @@ public class ThinConnection extends ThinBase implements Connection {
   @Override
   public void close() throws SQLException {
     //clean all resources
-    if ( clientService instanceof ConnectionAbortingSupport ) {
-      ( (ConnectionAbortingSupport) clientService ).disconnect();
+    try {
+      closeAllOpenStatements();
+    } finally {
+      awaitCleanup();
+      // Last, so that requests of the queued cleanup are not aborted
+      if ( clientService instanceof ConnectionAbortingSupport ) {
+        ( (ConnectionAbortingSupport) clientService ).disconnect();
+      }
+      clientService = null;
+      if ( httpClientKey != null ) {
+        HttpClientRegistry.getInstance().release( httpClientKey );
+        httpClientKey = null;
+      }
+    }
+  }
+
+  /**
+   * @return executor for result set cleanup, or null if cleanup should run on the caller's thread
+   */
+  synchronized Executor getCleanupExecutor() {
+    if ( !asyncClose || closed || clientService == null ) {
+      return null;
+    }
+    if ( cleanupExecutor == null ) {
+      cleanupExecutor = Executors.newFixedThreadPool( CLEANUP_THREADS, new ThreadFactoryBuilder()
+        .setDaemon( true ).setNameFormat( "ThinConnection cleanup-%d" ).build() );
+    }
+    return cleanupExecutor;
+  }
+
+  /**
+   * Let queued cleanup finish, so that no service transformation is left running on the server. Cleanup asked for
+   * from now on runs on the caller's thread.
+   */
+  private void awaitCleanup() {
+    ExecutorService executor;
+    synchronized ( this ) {
+      closed = true;
+      executor = cleanupExecutor;
+      cleanupExecutor = null;
+    }
+    if ( executor != null ) {
+      executor.shutdown();
+      try {
+        if ( !executor.awaitTermination( CLEANUP_TIMEOUT_SECONDS, TimeUnit.SECONDS ) ) {
+          ThinDriver.logger.warning( "Timed out waiting for queries to stop" );
+        }
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
     }
-    closeAllOpenStatements();
-    clientService = null;
   }
 
   @Override @NotSupported
@@ -168,12 +264,16 @@ public class ThinConnection extends ThinBase implements Connection {
 
   @Override
   public IThinStatement createStatement( int resultSetType, int resultSetConcurrency ) throws SQLException {
-    return new ThinStatement( this );
+    ThinStatement statement = new ThinStatement( this );
+    statement.setResultSetType( resultSetType );
+    return statement;
   }
 
   @Override
   public IThinStatement createStatement( int resultSetType, int resultSetConcurrency, int resultSetHoldability ) {
-    return new ThinStatement( this );
+    ThinStatement statement = new ThinStatement( this );
+    statement.setResultSetType( resultSetType );
+    return statement;
   }
 
   @Override @NotSupported
@@ -232,22 +332,101 @@ public class ThinConnection extends ThinBase implements Connection {
     return true; // always read-only
   }
 
+  /**
+   * Remote connections ping the server, which reports its capabilities without starting a transformation. Local
+   * connections, and servers without a ping command, run a dummy query instead.
+   *
+   * @param timeout seconds to wait, or 0 to wait indefinitely
+   */
   @Override
   public boolean isValid( int timeout ) throws SQLException {
+    if ( timeout < 0 ) {
+      throw new SQLException( "Timeout must not be negative: " + timeout );
+    }
+    IDataServiceClientService client = clientService;
+    if ( client == null ) {
+      return false;
+    }
     try {
-      // Execute dummy query to ensure data services are working
-      Statement statement = createStatement();
-      try {
-        return statement.executeQuery( "SELECT *" ).next();
-      } finally {
-        statement.close();
+      if ( client instanceof RemoteClient ) {
+        ServerCapabilities capabilities = ( (RemoteClient) client ).ping( timeout );
+        if ( capabilities != null ) {
+          serverCapabilities = capabilities;
+          return true;
+        }
       }
+      return timeout > 0 ? runDummyQuery( timeout ) : runDummyQuery();
     } catch ( Exception e ) {
       setWarning( e );
       return false;
     }
   }
 
+  private boolean runDummyQuery() throws SQLException {
+    // Execute dummy query to ensure data services are working
+    Statement statement = createStatement();
+    try {
+      return statement.executeQuery( DUMMY_QUERY ).next();
+    } finally {
+      statement.close();
+    }
+  }
+
+  private boolean runDummyQuery( int timeout ) throws Exception {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( timeout );
+    IDataServiceClientService client = clientService;
+    Callable<Boolean> validation;
+    if ( client instanceof RemoteClient ) {
+      // Only the validation's own request times out, other queries of this connection keep running. Closing sends a
+      // finish without a timeout, so it runs within the deadline as well.
+      final ThinResultSet resultSet = new ThinResultFactory().loadResultSet(
+        ( (RemoteClient) client ).queryWithTimeout( DUMMY_QUERY, 0, timeout ), client );
+      validation = () -> {
+        try {
+          return resultSet.next();
+        } finally {
+          resultSet.close();
+        }
+      };
+    } else {
+      validation = this::runDummyQuery;
+    }
+    FutureTask<Boolean> task = new FutureTask<>( validation );
+    VALIDATION_EXECUTOR.execute( task );
+    try {
+      return task.get( deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+    } catch ( ExecutionException e ) {
+      Throwables.propagateIfPossible( e.getCause(), Exception.class );
+      throw e;
+    } catch ( TimeoutException e ) {
+      task.cancel( true );
+      throw new SQLTimeoutException( "Connection validation timed out after " + timeout + " seconds", e );
+    }
+  }
+
+  /**
+   * @return capabilities reported by the last successful ping, {@link ServerCapabilities#NONE} if unknown
+   */
+  public ServerCapabilities getServerCapabilities() {
+    return serverCapabilities;
+  }
+
+  @Override
+  public boolean isWrapperFor( Class<?> type ) throws SQLException {
+    if ( ServiceCatalog.class.equals( type ) ) {
+      return clientService instanceof RemoteClient;
+    }
+    return super.isWrapperFor( type );
+  }
+
+  @Override
+  public <T> T unwrap( Class<T> type ) throws SQLException {
+    if ( ServiceCatalog.class.equals( type ) && clientService instanceof RemoteClient ) {
+      return type.cast( ( (RemoteClient) clientService ).getCatalog() );
+    }
+    return super.unwrap( type );
+  }
+
   @Override @NotSupported
   public String nativeSQL( String arg0 ) throws SQLException {
     throw new SQLFeatureNotSupportedException( BaseMessages.getString( PKG, "ThinConnection.Not.Supported.Singular", BaseMessages.getString( PKG, "ThinConnection.Native.SQL" ) ) );
@@ -291,13 +470,15 @@ public class ThinConnection extends ThinBase implements Connection {
   @Override
   public PreparedStatement prepareStatement( String sql, int resultSetType, int resultSetConcurrency )
     throws SQLException {
-    return prepareStatement( sql );
+    ThinPreparedStatement statement = new ThinPreparedStatement( this, sql );
+    statement.setResultSetType( resultSetType );
+    return statement;
   }
 
   @Override
   public PreparedStatement prepareStatement( String sql, int resultSetType, int resultSetConcurrency,
                                              int resultSetHoldability ) throws SQLException {
-    return prepareStatement( sql );
+    return prepareStatement( sql, resultSetType, resultSetConcurrency );
   }
 
   @Override @NotSupported
@@ -455,6 +636,48 @@ public class ThinConnection extends ThinBase implements Connection {
     return debugTransFilename;
   }
 
+  /**
+   * @return the requested result encoding, see {@link ResultFormat}
+   */
+  public String getResultFormat() {
+    return resultFormat;
+  }
+
+  /**
+   * @return the accepted result compression codecs, see {@link ResultCompression}
+   */
+  public String getCompression() {
+    return compression;
+  }
+
+  /**
+   * @return how result sets keep their rows, see {@link RowStorage}
+   */
+  public String getRowStorage() {
+    return rowStorage;
+  }
+
+  /**
+   * @return megabytes of rows a scroll insensitive result set keeps in memory before spilling to a temporary file
+   */
+  public int getScrollMemory() {
+    return scrollMemory;
+  }
+
+  /**
+   * @return true if result sets stop their queries in the background
+   */
+  public boolean isAsyncClose() {
+    return asyncClose;
+  }
+
+  /**
+   * @return seconds the service list is reused before it is revalidated with the server, see {@link ServiceCatalog}
+   */
+  public int getCatalogTtl() {
+    return catalogTtl;
+  }
+
   ImmutableMap<String, String> getParameters() {
     return parameters;
   }
@@ -514,6 +737,10 @@ public class ThinConnection extends ThinBase implements Connection {
     proxyPort = arguments.get( ARG_PROXYPORT );
     nonProxyHosts = arguments.get( ARG_NONPROXYHOSTS );
     debugTransFilename = arguments.get( ARG_DEBUGTRANS );
+    resultFormat = arguments.get( ARG_RESULT_FORMAT );
+    compression = arguments.get( ARG_COMPRESSION );
+    rowStorage = arguments.get( ARG_ROW_STORAGE );
+    asyncClose = "true".equalsIgnoreCase( arguments.get( ARG_ASYNC_CLOSE ) );
 
     parameters = ImmutableMap.copyOf( Maps.filterKeys( arguments, new Predicate<String>() {
       @Override public boolean apply( String input ) {
@@ -532,7 +759,7 @@ public class ThinConnection extends ThinBase implements Connection {
   }
 
   public class Builder {
-    private final HttpClientManager httpClientManager = HttpClientManager.getInstance();
+    private final HttpClientRegistry httpClientRegistry = HttpClientRegistry.getInstance();
     private final Map<String, String> arguments = Maps.newHashMap();
     private String url;
     private URI uri;
@@ -573,36 +800,73 @@ public class ThinConnection extends ThinBase implements Connection {
       return this;
     }
 
-    private RemoteClient createRemoteClient( ThinConnection connection ) {
-      HttpClientManager.HttpClientBuilderFacade clientBuilder = httpClientManager.createBuilder();
-      HttpClientContext clientContext = null;
-      clientBuilder.setSocketTimeout( 0 );
-      clientBuilder.setConnectionTimeout( 0 );
-      String user = connection.username;
-      String pass = connection.password;
-      String unescapedUsername = StringEscapeUtils.unescapeHtml4( user );
-      String unescapedPassword = StringEscapeUtils.unescapeHtml4( pass );
+    /**
+     * Create a client on the shared HTTP client of the connection's server, proxy and credentials
+     */
+    /**
+     * Create a client on the shared pool of the connection's server and proxy. Credentials and cookies stay in the
+     * connection's own context, so connections of different users never see each other's session.
+     */
+    private RemoteClient createRemoteClient( ThinConnection connection ) throws SQLException {
+      HttpClientContext clientContext;
+      URI uri = connection.baseURI;
+      String unescapedUsername = StringEscapeUtils.unescapeHtml4( connection.username );
+      String unescapedPassword = StringEscapeUtils.unescapeHtml4( connection.password );
       if ( StringUtils.isNotBlank( unescapedUsername ) ) {
-        URI uri = connection.baseURI;
-        clientBuilder.setCredentials( unescapedUsername, unescapedPassword );
         clientContext = HttpClientUtil.createPreemptiveBasicAuthentication(
           uri.getHost(), uri.getPort(), unescapedUsername, unescapedPassword, uri.getScheme() );
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        credentialsProvider.setCredentials( AuthScope.ANY,
+          new UsernamePasswordCredentials( unescapedUsername, unescapedPassword ) );
+        clientContext.setCredentialsProvider( credentialsProvider );
+      } else {
+        clientContext = HttpClientContext.create();
       }
-
-      if ( StringUtils.isNotBlank( proxyHostname ) && StringUtils.isNotBlank( proxyPort )
-        && ( StringUtils.isBlank( nonProxyHosts ) || ( StringUtils.isNotBlank( nonProxyHosts ) && !getHostname()
-        .matches( nonProxyHosts ) ) ) ) {
-        int proxyPort = Integer.parseInt( connection.proxyPort );
-        clientBuilder.setProxy( proxyHostname, proxyPort );
+      clientContext.setCookieStore( new BasicCookieStore() );
+
+      String proxyHost = null;
+      int proxyPort = -1;
+      if ( StringUtils.isNotBlank( connection.proxyHostname ) && StringUtils.isNotBlank( connection.proxyPort )
+        && ( StringUtils.isBlank( connection.nonProxyHosts )
+        || !connection.getHostname().matches( connection.nonProxyHosts ) ) ) {
+        proxyHost = connection.proxyHostname;
+        proxyPort = Integer.parseInt( connection.proxyPort );
       }
 
-      return new RemoteClient( connection, clientBuilder.build(), clientContext );
+      HttpClientRegistry.Key key =
+        new HttpClientRegistry.Key( uri.getScheme(), uri.getHost(), uri.getPort(), proxyHost, proxyPort );
+      HttpClientRegistry.PoolSettings poolSettings = new HttpClientRegistry.PoolSettings(
+        intArgument( ARG_MAX_CONNECTIONS, HttpClientRegistry.PoolSettings.DEFAULT_MAX_TOTAL, 1 ),
+        intArgument( ARG_MAX_CONNECTIONS_PER_ROUTE, HttpClientRegistry.PoolSettings.DEFAULT_MAX_PER_ROUTE, 1 ),
+        intArgument( ARG_IDLE_TIMEOUT, HttpClientRegistry.PoolSettings.DEFAULT_IDLE_TIMEOUT_SECONDS, 1 ) );
+      HttpClient httpClient = httpClientRegistry.acquire( key, poolSettings );
+      connection.httpClientKey = key;
+
+      return new RemoteClient( connection, httpClient, clientContext );
+    }
+
+    private int intArgument( String name, int defaultValue, int minimum ) throws SQLException {
+      String value = arguments.get( name );
+      if ( Strings.isNullOrEmpty( value ) ) {
+        return defaultValue;
+      }
+      try {
+        int parsed = Integer.parseInt( value.trim() );
+        if ( parsed >= minimum ) {
+          return parsed;
+        }
+      } catch ( NumberFormatException e ) {
+        // Reported below
+      }
+      throw new SQLException( "Expected a number of at least " + minimum + " for " + name + ": " + value );
     }
 
     public ThinConnection build() throws SQLException {
       boolean isLocal = "true".equalsIgnoreCase( arguments.get( ARG_LOCAL ) );
 
       ThinConnection connection = new ThinConnection( url, baseUri() ).extractProperties( arguments );
+      connection.catalogTtl = intArgument( ARG_CATALOG_TTL, 0, 0 );
+      connection.scrollMemory = intArgument( ARG_SCROLL_MEMORY, ScrollBuffer.DEFAULT_MEMORY_MB, 0 );
       connection.clientService = isLocal ? ThinConnection.getLocalClient() : createRemoteClient( connection );
       return connection;
     }
@@ -14,6 +14,8 @@
 
 package org.pentaho.di.trans.dataservice.jdbc;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableList;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleSQLException;
 import org.pentaho.di.core.jdbc.ThinUtil;
@@ -35,6 +37,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import static org.pentaho.di.trans.dataservice.jdbc.ThinDriver.logger;
 
@@ -170,19 +173,30 @@ public class ThinDatabaseMetaData extends ThinBase implements DatabaseMetaData {
     return new RowsResultSet( rowMeta, new ArrayList<Object[]>() );
   }
 
+  /**
+   * Fetch the services matching a LIKE pattern without a request per service. A plain name is looked up directly,
+   * anything else is matched against the full service list, compiling the pattern once.
+   */
   private List<IThinServiceInformation> getServices( String tableNamePattern ) throws Exception {
-    List<IThinServiceInformation> services = new ArrayList<IThinServiceInformation>();
-
     if ( Const.isEmpty( tableNamePattern ) ) {
-      services = getServiceInformation();
-    } else {
-      for ( String serviceName : getServiceNames( tableNamePattern ) ) {
-        if ( ThinUtil.like( serviceName, tableNamePattern ) ) {
-          services.add( getServiceInformation( serviceName ) );
-        }
+      return getServiceInformation();
+    }
+
+    if ( CharMatcher.anyOf( "%_" ).matchesNoneOf( tableNamePattern ) ) {
+      IThinServiceInformation service = getServiceInformation( tableNamePattern );
+      if ( service != null ) {
+        return ImmutableList.of( service );
       }
+      // LIKE is case insensitive, the name may still match a service in another case
     }
 
+    List<IThinServiceInformation> services = new ArrayList<IThinServiceInformation>();
+    Pattern pattern = ThinUtil.like( tableNamePattern );
+    for ( IThinServiceInformation service : getServiceInformation() ) {
+      if ( pattern.matcher( service.getName() ).matches() ) {
+        services.add( service );
+      }
+    }
     return services;
   }
 
@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a {@link ThinStatement#export}
+ */
+public class ThinExportStatistics {
+  private final long rows;
+  private final long bytes;
+  private final long elapsedNanos;
+
+  ThinExportStatistics( long rows, long bytes, long elapsedNanos ) {
+    this.rows = rows;
+    this.bytes = bytes;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * @return rows written
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * @return size of the written file
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return time from the start of the query to the closed file
+   */
+  public long getElapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis( elapsedNanos );
+  }
+
+  public double getRowsPerSecond() {
+    return perSecond( rows );
+  }
+
+  /**
+   * @return megabytes, of 2^20 bytes, written per second
+   */
+  public double getMegabytesPerSecond() {
+    return perSecond( bytes ) / ( 1024 * 1024 );
+  }
+
+  private double perSecond( long count ) {
+    return elapsedNanos > 0 ? count * (double) TimeUnit.SECONDS.toNanos( 1 ) / elapsedNanos : 0d;
+  }
+
+  @Override public String toString() {
+    return "ThinExportStatistics{rows=" + rows
+      + ", bytes=" + bytes
+      + ", elapsedMillis=" + getElapsedMillis() + '}';
+  }
+}
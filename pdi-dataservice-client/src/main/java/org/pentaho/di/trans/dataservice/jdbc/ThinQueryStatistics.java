@@ -0,0 +1,68 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Transfer statistics of a remote query result. Counts are updated as the result is read.
+ */
+public class ThinQueryStatistics {
+  private final ResultCompression compression;
+  private final CountingInputStream compressed;
+  private final CountingInputStream uncompressed;
+
+  ThinQueryStatistics( ResultCompression compression, CountingInputStream compressed,
+                       CountingInputStream uncompressed ) {
+    this.compression = compression;
+    this.compressed = compressed;
+    this.uncompressed = uncompressed;
+  }
+
+  /**
+   * @return codec the server applied to the response
+   */
+  public ResultCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * @return bytes received from the server so far
+   */
+  public long getCompressedBytes() {
+    return compressed.getCount();
+  }
+
+  /**
+   * @return bytes of result data decoded so far
+   */
+  public long getUncompressedBytes() {
+    return uncompressed.getCount();
+  }
+
+  /**
+   * @return uncompressed bytes per received byte, 1 if nothing was received yet
+   */
+  public double getCompressionRatio() {
+    long received = getCompressedBytes();
+    return received > 0 ? (double) getUncompressedBytes() / received : 1d;
+  }
+
+  @Override public String toString() {
+    return "ThinQueryStatistics{compression=" + compression
+      + ", compressedBytes=" + getCompressedBytes()
+      + ", uncompressedBytes=" + getUncompressedBytes() + '}';
+  }
+}
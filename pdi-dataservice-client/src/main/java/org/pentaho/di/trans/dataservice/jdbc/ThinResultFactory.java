@@ -15,10 +15,12 @@
 package org.pentaho.di.trans.dataservice.jdbc;
 
 import com.google.common.base.Throwables;
+import com.google.common.io.CountingInputStream;
 import org.pentaho.di.core.KettleClientEnvironment;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.sql.SQLException;
 
@@ -28,7 +30,32 @@ import java.sql.SQLException;
 public class ThinResultFactory {
   public ThinResultSet loadResultSet( DataInputStream dataInputStream, IDataServiceClientService client )
       throws SQLException {
-    return new ThinResultSet( loadHeader( dataInputStream ), dataInputStream, client );
+    if ( !( dataInputStream instanceof ThinResultInputStream ) ) {
+      // Only remote responses can negotiate an encoding, anything else is read row by row
+      return new ThinResultSet( loadHeader( dataInputStream ), dataInputStream, client );
+    }
+    ThinResultInputStream resultInputStream = (ThinResultInputStream) dataInputStream;
+    try {
+      ResultCompression compression = resultInputStream.getCompression();
+      CountingInputStream compressed = new CountingInputStream( resultInputStream );
+      CountingInputStream uncompressed = new CountingInputStream( compression == ResultCompression.NONE
+        ? compressed : new BufferedInputStream( compression.decode( compressed ), ResultCompression.BUFFER_SIZE ) );
+      DataInputStream decodedInputStream = new DataInputStream( uncompressed );
+
+      ThinResultHeader header = loadHeader( decodedInputStream );
+      ColumnarBatchReader batchReader = null;
+      if ( resultInputStream.getResultFormat() == ResultFormat.COLUMNAR ) {
+        batchReader = ColumnarBatchReader.open( header.getRowMeta(), decodedInputStream );
+      }
+      ThinResultSet resultSet = new ThinResultSet( header, decodedInputStream, client, batchReader );
+      resultSet.setQueryStatistics( new ThinQueryStatistics( compression, compressed, uncompressed ) );
+      resultSet.setServerCapabilities( resultInputStream.getCapabilities() );
+      resultSet.setRequest( resultInputStream.getRequest() );
+      return resultSet;
+    } catch ( Exception e ) {
+      Throwables.propagateIfPossible( e, SQLException.class );
+      throw new SQLException( "Unable to load result set", e );
+    }
   }
 
   public ThinResultHeader loadHeader( DataInputStream dataInputStream ) throws SQLException {
@@ -0,0 +1,73 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.sql.SQLException;
+
+/**
+ * Result stream of a remote query. Keeps the response so that {@link ThinResultFactory} can see what the server
+ * negotiated, and the request so that a result set closed mid-read can abort it.
+ */
+class ThinResultInputStream extends DataInputStream {
+  private final HttpResponse httpResponse;
+  private final HttpUriRequest request;
+
+  ThinResultInputStream( InputStream inputStream, HttpResponse httpResponse ) {
+    this( inputStream, httpResponse, null );
+  }
+
+  /**
+   * @param request the request that is answered, so that a reader can abort it
+   */
+  ThinResultInputStream( InputStream inputStream, HttpResponse httpResponse, HttpUriRequest request ) {
+    super( inputStream );
+    this.httpResponse = httpResponse;
+    this.request = request;
+  }
+
+  /**
+   * @return the request that is answered, or null if unknown
+   */
+  HttpUriRequest getRequest() {
+    return request;
+  }
+
+  /**
+   * @param name response header name
+   * @return value of the first header with this name, or null
+   */
+  String getResponseHeader( String name ) {
+    Header header = httpResponse.getFirstHeader( name );
+    return header != null ? header.getValue() : null;
+  }
+
+  ResultFormat getResultFormat() throws SQLException {
+    return ResultFormat.fromWireName( getResponseHeader( ResultFormat.PARAMETER ) );
+  }
+
+  ServerCapabilities getCapabilities() {
+    return ServerCapabilities.parse( getResponseHeader( ServerCapabilities.HEADER ) );
+  }
+
+  ResultCompression getCompression() throws SQLException {
+    return ResultCompression.fromWireName( getResponseHeader( ResultCompression.PARAMETER ) );
+  }
+}
@@ -14,9 +14,16 @@
 
 package org.pentaho.di.trans.dataservice.jdbc;
 
+import com.google.common.base.Throwables;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.jdbc.ThinUtil;
+import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinColumnBatch;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinColumnStream;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinRowStream;
 
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -24,25 +31,71 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-public class ThinResultSet extends BaseResultSet {
+public class ThinResultSet extends BaseResultSet implements IThinRowStream, IThinColumnStream {
 
   private final ThinResultHeader thinResultHeader;
   private final AtomicBoolean stopped = new AtomicBoolean( false );
   private DataInputStream dataInputStream;
   private IDataServiceClientService client;
+  private final ColumnarBatchReader batchReader;
   private int size = 1;
+  private ThinQueryStatistics queryStatistics;
+  private int fetchSize = 0;
+  private RowPrefetcher prefetcher;
+  private ServerCapabilities serverCapabilities = ServerCapabilities.NONE;
+  private HttpUriRequest request;
+  private RowStorage rowStorage = RowStorage.OBJECTS;
+  private PrimitiveRow primitiveRow;
+  private ScrollBuffer scrollBuffer;
+  private boolean exhausted = false;
 
   public ThinResultSet( ThinResultHeader header, DataInputStream dataInputStream, IDataServiceClientService client ) {
+    this( header, dataInputStream, client, null );
+  }
+
+  /**
+   * @param batchReader reader for a {@link ResultFormat#COLUMNAR} response, or null to read row by row
+   */
+  ThinResultSet( ThinResultHeader header, DataInputStream dataInputStream, IDataServiceClientService client,
+                 ColumnarBatchReader batchReader ) {
     super( header.getRowMeta() );
     this.thinResultHeader = header;
     this.dataInputStream = dataInputStream;
     this.client = client;
+    this.batchReader = batchReader;
   }
 
   @Override
   public void close() throws SQLException {
+    if ( prefetcher != null ) {
+      if ( prefetcher.isAlive() ) {
+        // A decoder blocked in a socket read ignores interrupts, only aborting the request ends the read
+        abortRequest();
+      }
+      prefetcher.cancel();
+      if ( !prefetcher.join( RowPrefetcher.JOIN_TIMEOUT_MILLIS ) ) {
+        ThinDriver.logger.warning( "Prefetch of " + thinResultHeader.getServiceName() + " did not stop in time" );
+      }
+    }
+    if ( scrollBuffer != null ) {
+      exhausted = true;
+      try {
+        scrollBuffer.close();
+      } catch ( IOException e ) {
+        ThinDriver.logger.warning( e.getMessage() );
+      }
+    }
     try {
       // Kill the service transformation on the server...
       // Only ever try once.
@@ -51,21 +104,23 @@ public class ThinResultSet extends BaseResultSet {
         dataInputStream.close();
       }
       if ( stopped.compareAndSet( false, true ) ) {
-        String id = thinResultHeader.getServiceObjectId();
+        final String id = thinResultHeader.getServiceObjectId();
         if ( !Const.isEmpty( id ) ) {
-          Boolean hasErrors = false;
-          DataInputStream
-              errorInputStream =
-              client.query( "[ errors " + thinResultHeader.getServiceObjectId() + " ]", 0 );
-          try {
-            hasErrors = "true".equals( errorInputStream.readUTF() );
-          } finally {
-            errorInputStream.close();
-          }
-          DataInputStream stopInputStream = client.query( "[ stop " + thinResultHeader.getServiceObjectId() + " ]", 0 );
-          stopInputStream.close();
-          if ( hasErrors ) {
-            throw new SQLException( "An error occurred while processing request." );
+          Statement owner = getStatement();
+          final ThinStatement statement = owner instanceof ThinStatement ? (ThinStatement) owner : null;
+          Executor executor = statement != null ? statement.getCleanupExecutor() : null;
+          if ( executor != null ) {
+            executor.execute( () -> {
+              try {
+                finish( id );
+              } catch ( SQLException e ) {
+                statement.setPendingException( e );
+              } catch ( IOException e ) {
+                ThinDriver.logger.warning( e.getMessage() );
+              }
+            } );
+          } else {
+            finish( id );
           }
         }
       }
@@ -76,6 +131,45 @@ public class ThinResultSet extends BaseResultSet {
     }
   }
 
+  /**
+   * Check the service transformation for errors and stop it. Uses a single call if the server supports it.
+   */
+  private void finish( String id ) throws SQLException, IOException {
+    boolean hasErrors;
+    if ( serverCapabilities.supports( ServerCapabilities.FINISH ) ) {
+      hasErrors = readErrorFlag( client.query( "[ finish " + id + " ]", 0 ) );
+    } else {
+      hasErrors = readErrorFlag( client.query( "[ errors " + id + " ]", 0 ) );
+      DataInputStream stopInputStream = client.query( "[ stop " + id + " ]", 0 );
+      stopInputStream.close();
+    }
+    if ( hasErrors ) {
+      throw new SQLException( "An error occurred while processing request." );
+    }
+  }
+
+  private static boolean readErrorFlag( DataInputStream errorInputStream ) throws SQLException, IOException {
+    try {
+      return "true".equals( decodeReply( errorInputStream ).readUTF() );
+    } finally {
+      errorInputStream.close();
+    }
+  }
+
+  /**
+   * Control commands do not ask for compression, but a server that compresses anyway names its codec like it does
+   * for results
+   */
+  private static DataInputStream decodeReply( DataInputStream replyInputStream ) throws SQLException, IOException {
+    if ( replyInputStream instanceof ThinResultInputStream ) {
+      ResultCompression compression = ( (ThinResultInputStream) replyInputStream ).getCompression();
+      if ( compression != ResultCompression.NONE ) {
+        return new DataInputStream( compression.decode( replyInputStream ) );
+      }
+    }
+    return replyInputStream;
+  }
+
   @Override
   public String getCursorName() throws SQLException {
     return thinResultHeader.getServiceName();
@@ -83,7 +177,7 @@ public class ThinResultSet extends BaseResultSet {
 
   @Override
   public int getType() throws SQLException {
-    return ResultSet.TYPE_FORWARD_ONLY;
+    return scrollBuffer != null ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
   }
 
   @Override
@@ -93,18 +187,26 @@ public class ThinResultSet extends BaseResultSet {
 
   @Override
   public void setFetchDirection( int direction ) throws SQLException {
-    if ( direction != FETCH_FORWARD ) {
+    if ( direction != FETCH_FORWARD && scrollBuffer == null ) {
       throw new SQLFeatureNotSupportedException( "Only FETCH_FORWARD is allowed" );
     }
   }
 
   @Override
   public int getFetchSize() throws SQLException {
-    return 0;
+    return prefetcher != null ? prefetcher.getCapacity() : fetchSize;
   }
 
+  /**
+   * A positive fetch size enables prefetching: rows are decoded ahead on a background thread into a buffer of
+   * this many rows. The buffer is allocated on the next read, after which the fetch size is fixed.
+   */
   @Override
-  public void setFetchSize( int direction ) throws SQLException {
+  public void setFetchSize( int rows ) throws SQLException {
+    if ( rows < 0 ) {
+      throw new SQLException( "Fetch size must not be negative: " + rows );
+    }
+    fetchSize = rows;
   }
 
   @Override
@@ -121,12 +223,190 @@ public class ThinResultSet extends BaseResultSet {
     return thinResultHeader;
   }
 
+  /**
+   * @return transfer statistics of a remote query, null for local queries
+   */
+  public ThinQueryStatistics getQueryStatistics() {
+    return queryStatistics;
+  }
+
+  void setQueryStatistics( ThinQueryStatistics queryStatistics ) {
+    this.queryStatistics = queryStatistics;
+  }
+
+  void setServerCapabilities( ServerCapabilities serverCapabilities ) {
+    this.serverCapabilities = serverCapabilities;
+  }
+
+  /**
+   * @param request the request this result streams from, aborted when the result set is closed mid-read
+   */
+  void setRequest( HttpUriRequest request ) {
+    this.request = request;
+  }
+
+  /**
+   * Abort the request of this result, if it is still streaming. A read blocked on the response fails at once.
+   */
+  void abortRequest() {
+    if ( request != null ) {
+      request.abort();
+    }
+  }
+
+  /**
+   * Takes effect on the next read, like the fetch size
+   */
+  void setRowStorage( RowStorage rowStorage ) {
+    this.rowStorage = rowStorage;
+  }
+
+  /**
+   * Keep every row read in the buffer, which makes the result set scroll insensitive. Must be set before the first
+   * read.
+   */
+  void setScrollBuffer( ScrollBuffer scrollBuffer ) {
+    this.scrollBuffer = scrollBuffer;
+  }
+
+  @Override
+  protected PrimitiveRow getPrimitiveRow() {
+    return primitiveRow;
+  }
+
+  @Override
+  public List<Object[]> nextRows( int maxRows ) throws SQLException {
+    if ( maxRows < 1 ) {
+      throw new SQLException( "Expected at least one row: " + maxRows );
+    }
+    List<Object[]> rows = new ArrayList<>( Math.min( maxRows, 1024 ) );
+    while ( rows.size() < maxRows && next() ) {
+      rows.add( getCurrentRow() );
+    }
+    return rows;
+  }
+
+  @Override
+  public int[] getSqlTypes() {
+    RowMetaInterface rowMeta = getRowMeta();
+    int[] types = new int[ rowMeta.size() ];
+    for ( int i = 0; i < types.length; i++ ) {
+      types[ i ] = ThinUtil.getSqlType( rowMeta.getValueMeta( i ) );
+    }
+    return types;
+  }
+
+  /**
+   * Batches of a columnar result are returned as received, unless rows were already read from them. The end of the
+   * stream is read like {@link #next()} does, which closes the stream and leaves the cursor after the last row.
+   */
+  @Override
+  public IThinColumnBatch nextBatch( int maxRows ) throws SQLException {
+    if ( batchReader != null && prefetcher == null && scrollBuffer == null && !batchReader.hasBufferedRows() ) {
+      verifyOpen();
+      IThinColumnBatch batch;
+      try {
+        batch = batchReader.nextBatch();
+      } catch ( IOException e ) {
+        throw new SQLException( e );
+      }
+      if ( batch == null ) {
+        next();
+      }
+      return batch;
+    }
+    List<Object[]> rows = nextRows( maxRows );
+    return rows.isEmpty() ? null : new RowColumnBatch( getRowMeta(), rows );
+  }
+
+  /**
+   * The remaining rows as a stream, in the same form as {@link #nextRows(int)}. Reading the last row closes the
+   * result set, as does closing the stream, which should be done when the stream may stop early. In parallel
+   * streams, batches of rows are split off for other threads, while the rows are read on one thread at a time.
+   */
+  public Stream<Object[]> stream() {
+    return stream( () -> next() ? getCurrentRow() : null );
+  }
+
+  /**
+   * The remaining rows as a stream of batches, see {@link #stream()}
+   *
+   * @param batchSize largest number of rows in a batch
+   */
+  public Stream<List<Object[]>> rowBatches( int batchSize ) throws SQLException {
+    if ( batchSize < 1 ) {
+      throw new SQLException( "Expected at least one row: " + batchSize );
+    }
+    return stream( () -> {
+      List<Object[]> rows = nextRows( batchSize );
+      return rows.isEmpty() ? null : rows;
+    } );
+  }
+
+  private <T> Stream<T> stream( RowSpliterator.Reader<T> reader ) {
+    return StreamSupport.stream( new RowSpliterator<>( reader, this::closeQuietly ), false )
+      .onClose( this::closeQuietly );
+  }
+
+  private void closeQuietly() {
+    try {
+      close();
+    } catch ( SQLException e ) {
+      ThinDriver.logger.warning( e.getMessage() );
+    }
+  }
+
+  /**
+   * Reads ahead in growing batches when split, see {@link Spliterators.AbstractSpliterator}
+   */
+  private static class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+    interface Reader<T> {
+      /**
+       * @return next element, or null at the end of the result set
+       */
+      T read() throws SQLException;
+    }
+
+    private final Reader<T> reader;
+    private final Runnable onEnd;
+    private boolean ended = false;
+
+    RowSpliterator( Reader<T> reader, Runnable onEnd ) {
+      super( Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL );
+      this.reader = reader;
+      this.onEnd = onEnd;
+    }
+
+    @Override
+    public boolean tryAdvance( Consumer<? super T> action ) {
+      if ( ended ) {
+        return false;
+      }
+      T next;
+      try {
+        next = reader.read();
+      } catch ( SQLException e ) {
+        throw new IllegalStateException( "Unable to read the next row", e );
+      }
+      if ( next == null ) {
+        ended = true;
+        onEnd.run();
+        return false;
+      }
+      action.accept( next );
+      return true;
+    }
+  }
+
   @Override
   public boolean isClosed() throws SQLException {
     return dataInputStream == null;
   }
 
   @Override protected Object[] retrieveRow( int i ) throws Exception {
+    if ( scrollBuffer != null ) {
+      return scrollRow( i );
+    }
     if ( isAfterLast() ? i > size() : i == getRow() ) {
       return getCurrentRow();
     } else if ( i == getRow() + 1 ) {
@@ -136,22 +416,95 @@ public class ThinResultSet extends BaseResultSet {
     }
   }
 
-  private Object[] readData() throws KettleFileException, SQLException, IOException {
-    try {
-      Object[] data = getRowMeta().readData( dataInputStream );
+  /**
+   * Read from the stream until the row is buffered, or the stream ends
+   */
+  private Object[] scrollRow( int i ) throws Exception {
+    while ( scrollBuffer.size() < i && !exhausted ) {
+      Object[] data = nextRow();
+      if ( data != null ) {
+        scrollBuffer.add( data );
+      } else {
+        exhausted = true;
+        dataInputStream.close();
+      }
+    }
+    return i >= 1 && i <= scrollBuffer.size() ? scrollBuffer.get( i - 1 ) : null;
+  }
+
+  private Object[] readData() throws Exception {
+    Object[] data = nextRow();
+    if ( data != null ) {
       size += 1;
       return data;
-    } catch ( KettleFileException e ) {
-      size = getRow();
-      if ( !isClosed() ) {
-        dataInputStream.close();
+    }
+    size = getRow();
+    if ( !isClosed() ) {
+      dataInputStream.close();
+    }
+    return null;
+  }
+
+  private Object[] nextRow() throws Exception {
+    if ( prefetcher == null && fetchSize > 0 ) {
+      final DataInputStream inputStream = dataInputStream;
+      prefetcher = new RowPrefetcher( "ThinResultSet prefetch: " + thinResultHeader.getServiceName(), fetchSize,
+        () -> decodeRow( inputStream ) );
+      prefetcher.start();
+    }
+    if ( prefetcher != null ) {
+      return prefetcher.take();
+    }
+    // Chosen before the first row, like the prefetcher
+    if ( primitiveRow == null && size == 1 && scrollBuffer == null ) {
+      if ( batchReader != null ) {
+        primitiveRow = new ColumnarRow( getRowMeta(), batchReader );
+      } else if ( rowStorage == RowStorage.LAZY && getRowMeta().size() > 0 ) {
+        primitiveRow = new LazyRow( getRowMeta() );
+      } else if ( rowStorage == RowStorage.PRIMITIVE && PrimitiveRow.isUseful( getRowMeta() ) ) {
+        primitiveRow = new PrimitiveRow( getRowMeta() );
       }
+    }
+    if ( primitiveRow instanceof ColumnarRow ) {
+      return ( (ColumnarRow) primitiveRow ).next() ? primitiveRow.getValues() : null;
+    }
+    return primitiveRow != null ? decodePrimitiveRow( dataInputStream ) : decodeRow( dataInputStream );
+  }
+
+  private Object[] decodePrimitiveRow( DataInputStream inputStream ) throws Exception {
+    try {
+      primitiveRow.read( inputStream );
+      return primitiveRow.getValues();
+    } catch ( KettleFileException e ) {
+      // End of the row stream
+      return null;
+    }
+  }
+
+  /**
+   * @return the next row of the stream, or null at its end
+   */
+  private Object[] decodeRow( DataInputStream inputStream ) throws Exception {
+    try {
+      return batchReader != null ? batchReader.readRow() : getRowMeta().readData( inputStream );
+    } catch ( KettleFileException e ) {
+      // End of the row stream
       return null;
     }
   }
 
   @Override
   protected int size() throws SQLException {
+    if ( scrollBuffer != null ) {
+      // The row count of a scrollable result set is only known once all rows are read
+      try {
+        scrollRow( Integer.MAX_VALUE );
+      } catch ( Exception e ) {
+        Throwables.propagateIfPossible( e, SQLException.class );
+        throw new SQLException( e );
+      }
+      return scrollBuffer.size();
+    }
     return size;
   }
 
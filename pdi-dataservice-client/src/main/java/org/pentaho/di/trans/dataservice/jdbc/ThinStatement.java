@@ -14,6 +14,7 @@
 
 package org.pentaho.di.trans.dataservice.jdbc;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.reactivex.Observer;
 import org.pentaho.di.core.RowMetaAndData;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
@@ -22,20 +23,33 @@ import org.pentaho.di.trans.dataservice.jdbc.annotation.NotSupported;
 import org.pentaho.di.trans.dataservice.jdbc.api.IThinStatement;
 
 import java.io.DataInputStream;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ThinStatement extends ThinBase implements IThinStatement {
 
   protected final ThinConnection connection;
   private final ThinResultFactory resultFactory;
-  private ThinResultSet resultSet;
+  private BaseResultSet resultSet;
 
   protected int maxRows = -1;
+  protected int fetchSize = 0;
+  private String partitionColumn;
+  private int partitionCount = 1;
+  private int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+  private final AtomicReference<SQLException> pendingException = new AtomicReference<>();
 
   public ThinStatement( ThinConnection connection ) {
     this( connection, new ThinResultFactory() );
@@ -97,20 +111,123 @@ public class ThinStatement extends ThinBase implements IThinStatement {
 
   @Override
   public ResultSet executeQuery( String sql ) throws SQLException {
-    DataInputStream dataInputStream = connection.getClientService().query( sql, maxRows, connection.getParameters() );
-    resultSet = resultFactory.loadResultSet( dataInputStream, connection.getClientService() );
+    return executeQuery( sql, resultSetType );
+  }
+
+  private BaseResultSet executeQuery( String sql, int resultSetType ) throws SQLException {
+    throwPendingException();
+    if ( partitionColumn != null ) {
+      resultSet = executePartitioned( sql );
+    } else {
+      DataInputStream dataInputStream = connection.getClientService().query( sql, maxRows, connection.getParameters() );
+      resultSet = resultFactory.loadResultSet( dataInputStream, connection.getClientService() );
+    }
     resultSet.setStatement( this );
+    if ( fetchSize > 0 ) {
+      resultSet.setFetchSize( fetchSize );
+    }
+    if ( resultSet instanceof ThinResultSet ) {
+      ThinResultSet thinResultSet = (ThinResultSet) resultSet;
+      thinResultSet.setRowStorage( RowStorage.fromOption( connection.getRowStorage() ) );
+      if ( resultSetType != ResultSet.TYPE_FORWARD_ONLY ) {
+        thinResultSet.setScrollBuffer(
+          new ScrollBuffer( thinResultSet.getRowMeta(), connection.getScrollMemory() * 1024L * 1024L ) );
+      }
+    }
     return resultSet;
   }
 
+  /**
+   * Run each partition of the query on its own request, all at once
+   */
+  private BaseResultSet executePartitioned( String sql ) throws SQLException {
+    final IDataServiceClientService client = connection.getClientService();
+    PartitionedQuery query = PartitionedQuery.create( sql, partitionColumn, partitionCount, client,
+      connection.getParameters(), resultFactory );
+    List<String> queries = query.getQueries();
+    if ( queries.size() == 1 ) {
+      return resultFactory.loadResultSet( client.query( queries.get( 0 ), maxRows, connection.getParameters() ),
+        client );
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool( queries.size(),
+      new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( "ThinStatement partition-%d" ).build() );
+    List<ThinResultSet> partitions = new ArrayList<>( queries.size() );
+    SQLException failure = null;
+    try {
+      List<Future<ThinResultSet>> futures = new ArrayList<>( queries.size() );
+      for ( final String partitionSql : queries ) {
+        futures.add( executor.submit(
+          () -> resultFactory.loadResultSet( client.query( partitionSql, maxRows, connection.getParameters() ),
+            client ) ) );
+      }
+      for ( Future<ThinResultSet> future : futures ) {
+        try {
+          ThinResultSet partition = future.get();
+          partition.setStatement( this );
+          partitions.add( partition );
+        } catch ( ExecutionException e ) {
+          if ( failure == null ) {
+            failure = e.getCause() instanceof SQLException
+              ? (SQLException) e.getCause() : new SQLException( "Unable to run partition query", e.getCause() );
+          }
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          if ( failure == null ) {
+            failure = new SQLException( "Interrupted while starting partition queries", e );
+          }
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    if ( failure != null ) {
+      for ( ThinResultSet partition : partitions ) {
+        try {
+          partition.close();
+        } catch ( SQLException e ) {
+          failure.setNextException( e );
+        }
+      }
+      throw failure;
+    }
+    return new PartitionedResultSet( partitions.get( 0 ).getCursorName(), query, partitions, Math.max( maxRows, 0 ) );
+  }
+
+  /**
+   * Run a query and write its result to a file as it is received. Only one row is held at a time, whatever the
+   * statement's result set type.
+   *
+   * @param sql    the query
+   * @param path   file to write, replaced if it exists
+   * @param format file format
+   * @return rows and bytes written, and the throughput
+   */
+  public ThinExportStatistics export( String sql, Path path, ExportFormat format ) throws SQLException {
+    long start = System.nanoTime();
+    BaseResultSet result = executeQuery( sql, ResultSet.TYPE_FORWARD_ONLY );
+    try {
+      return new ResultExporter( result.getRowMeta(), format ).export( result, path, start );
+    } finally {
+      result.close();
+    }
+  }
+
   @Override
   public ResultSet executeQuery( String sql, IDataServiceClientService.StreamingMode windowMode,
                                 long windowSize, long windowEvery,
                                 long windowLimit ) throws SQLException {
+    throwPendingException();
     DataInputStream dataInputStream = connection.getClientService().query( sql, windowMode, windowSize,
             windowEvery, windowLimit, connection.getParameters() );
-    resultSet = resultFactory.loadResultSet( dataInputStream, connection.getClientService() );
-    resultSet.setStatement( this );
+    ThinResultSet thinResultSet = resultFactory.loadResultSet( dataInputStream, connection.getClientService() );
+    thinResultSet.setStatement( this );
+    if ( fetchSize > 0 ) {
+      thinResultSet.setFetchSize( fetchSize );
+    }
+    thinResultSet.setRowStorage( RowStorage.fromOption( connection.getRowStorage() ) );
+    resultSet = thinResultSet;
     return resultSet;
   }
 
@@ -146,7 +263,7 @@ public class ThinStatement extends ThinBase implements IThinStatement {
 
   @Override
   public int getFetchSize() throws SQLException {
-    return 1;
+    return fetchSize;
   }
 
   @Override @NotSupported
@@ -199,6 +316,18 @@ public class ThinStatement extends ThinBase implements IThinStatement {
     return resultSet.getHoldability();
   }
 
+  /**
+   * Scroll sensitive result sets are not supported, they are scroll insensitive instead. Applies to plain queries;
+   * partitioned and streaming queries are always forward only.
+   *
+   * @param resultSetType one of the {@link ResultSet} type constants, others are taken as forward only
+   */
+  void setResultSetType( int resultSetType ) {
+    this.resultSetType = resultSetType == ResultSet.TYPE_SCROLL_INSENSITIVE
+      || resultSetType == ResultSet.TYPE_SCROLL_SENSITIVE
+      ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
+  }
+
   @Override
   public int getResultSetType() throws SQLException {
     return resultSet.getType();
@@ -236,9 +365,41 @@ public class ThinStatement extends ThinBase implements IThinStatement {
     }
   }
 
+  /**
+   * A positive fetch size makes result sets of this statement prefetch that many rows on a background thread.
+   *
+   * @see ThinResultSet#setFetchSize(int)
+   */
   @Override
-  public void setFetchSize( int arg0 ) throws SQLException {
-    // ignored
+  public void setFetchSize( int rows ) throws SQLException {
+    if ( rows < 0 ) {
+      throw new SQLException( "Fetch size must not be negative: " + rows );
+    }
+    fetchSize = rows;
+  }
+
+  /**
+   * Split queries of this statement into range partitions on an Integer, Number or Date column of the service, and
+   * fetch the partitions concurrently. The rows of ordered queries are merged in order, other queries return rows
+   * as they arrive. Queries that can not be split run as usual. Streaming queries are never split.
+   *
+   * @param column     service field to partition on, or null to stop partitioning
+   * @param partitions number of concurrent requests
+   */
+  public void setPartitioning( String column, int partitions ) throws SQLException {
+    if ( column != null && partitions < 1 ) {
+      throw new SQLException( "Partition count must be positive: " + partitions );
+    }
+    partitionColumn = column;
+    partitionCount = column != null ? partitions : 1;
+  }
+
+  public String getPartitionColumn() {
+    return partitionColumn;
+  }
+
+  public int getPartitionCount() {
+    return partitionCount;
   }
 
   @Override
@@ -279,6 +440,27 @@ public class ThinStatement extends ThinBase implements IThinStatement {
     return false;
   }
 
+  /**
+   * @return executor for result set cleanup, or null if cleanup should run on the caller's thread
+   */
+  Executor getCleanupExecutor() {
+    return connection.getCleanupExecutor();
+  }
+
+  /**
+   * Record a failure from asynchronous cleanup, to be thrown by the next query on this statement
+   */
+  void setPendingException( SQLException e ) {
+    pendingException.set( e );
+  }
+
+  private void throwPendingException() throws SQLException {
+    SQLException e = pendingException.getAndSet( null );
+    if ( e != null ) {
+      throw e;
+    }
+  }
+
   @Override
   public void executePushQuery( String sql, IStreamingParams streamParams, Observer<List<RowMetaAndData>> consumer )
     throws Exception {
@@ -21,11 +21,14 @@ import org.pentaho.di.core.exception.KettleSQLException;
 import org.pentaho.di.core.exception.KettleValueException;
 import org.pentaho.di.core.row.ValueMetaAndData;
 import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.sql.SQL;
 
 import java.math.BigDecimal;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 
@@ -64,6 +67,69 @@ public class ThinUtilTest {
     assertNull( ThinUtil.findClause( "'Select' * From Test", "SELECT", "FROM" ) );
   }
 
+  @Test
+  public void testFindClauseWithRestFindsFirstEndClause() throws KettleSQLException {
+    FoundClause found = ThinUtil.findClauseWithRest(
+      "from Service 'order by' limit 5 Order By A", "FROM", "ORDER BY", "LIMIT" );
+    assertEquals( "Service 'order by'", found.getClause() );
+    assertEquals( "limit 5 Order By A", found.getRest() );
+  }
+
+  @Test
+  public void testFindClauseWithRestSkipsQuotedKeywords() throws KettleSQLException {
+    FoundClause found = ThinUtil.findClauseWithRest(
+      "Select \"a \"\"from\"\" b\", 'it''s from where' fRoM Service wHeRe \"where\" = 'x'", "SELECT", "FROM", "WHERE" );
+    assertEquals( "\"a \"\"from\"\" b\", 'it''s from where'", found.getClause() );
+    assertEquals( "fRoM Service wHeRe \"where\" = 'x'", found.getRest() );
+
+    // A start clause that only appears in quotes is not found
+    found = ThinUtil.findClauseWithRest( "'where' AND \"limit\" = 1 LIMIT 5", "WHERE", "LIMIT" );
+    assertNull( found.getClause() );
+    assertEquals( "'where' AND \"limit\" = 1 LIMIT 5", found.getRest() );
+  }
+
+  @Test
+  public void testSplitNestedParentheses() throws KettleSQLException {
+    SQL sql = new SQL( "SELECT A, IIF( B > 5, COALESCE( C, 'x, )' ), ( D ) ) AS E FROM Service "
+      + "WHERE ( B > 5 AND ( C IN ( 1, 2 ) OR D = 'order by (' ) ) ORDER BY A" );
+    assertEquals( "A, IIF( B > 5, COALESCE( C, 'x, )' ), ( D ) ) AS E", sql.getSelectClause() );
+    assertEquals( "( B > 5 AND ( C IN ( 1, 2 ) OR D = 'order by (' ) )", sql.getWhereClause() );
+    assertEquals( "A", sql.getOrderClause() );
+
+    List<String> fields = ThinUtil.splitClause( sql.getSelectClause(), ',', '\'', '(' );
+    assertEquals( 2, fields.size() );
+    assertEquals( "A", fields.get( 0 ) );
+    assertEquals( " IIF( B > 5, COALESCE( C, 'x, )' ), ( D ) ) AS E", fields.get( 1 ) );
+
+    fields = ThinUtil.splitClause( "CASE WHEN A = 'x' THEN ( 1 ) ELSE 2 END, B", ',', '\'', '(' );
+    assertEquals( 2, fields.size() );
+    assertEquals( "CASE WHEN A = 'x' THEN ( 1 ) ELSE 2 END", fields.get( 0 ) );
+
+    try {
+      ThinUtil.splitClause( "A, IIF( B > 5, ( C ), D", ',', '\'', '(' );
+      fail( "Unbalanced parentheses should not split" );
+    } catch ( KettleSQLException e ) {
+      // expected
+    }
+  }
+
+  @Test( timeout = 30000 )
+  public void testSplitLargeStatements() throws KettleSQLException {
+    for ( int size = 1024; size <= 1024 * 1024; size *= 4 ) {
+      StringBuilder select = new StringBuilder( "A" );
+      for ( int i = 0; select.length() < size; i++ ) {
+        select.append( ", 'from where " ).append( i ).append( "' AS \"order by " ).append( i ).append( '"' );
+      }
+      SQL sql = new SQL( "SELECT " + select + " FROM Service WHERE B > 5 ORDER BY B DESC LIMIT 10" );
+
+      assertEquals( select.toString(), sql.getSelectClause() );
+      assertEquals( "Service", sql.getServiceName() );
+      assertEquals( "B > 5", sql.getWhereClause() );
+      assertEquals( "B DESC", sql.getOrderClause() );
+      assertEquals( "10", sql.getLimitClause() );
+    }
+  }
+
   @SuppressWarnings( "deprecation" )
   @Test
   public void testAttemptDateValueExtraction() {
@@ -304,6 +370,56 @@ public class ThinUtilTest {
     assertNull( ThinUtil.attemptBooleanValueExtraction( "abcde" ) );
   }
 
+  @Test
+  public void testExtractConstantTypes() {
+    Map<String, Integer> literals = new ImmutableMap.Builder<String, Integer>()
+      .put( "0", ValueMetaInterface.TYPE_INTEGER )
+      .put( "-12", ValueMetaInterface.TYPE_INTEGER )
+      .put( "9223372036854775807", ValueMetaInterface.TYPE_INTEGER )
+      .put( "-9223372036854775808", ValueMetaInterface.TYPE_INTEGER )
+      .put( "9223372036854775808", ValueMetaInterface.TYPE_BIGNUMBER )
+      .put( "1.5", ValueMetaInterface.TYPE_NUMBER )
+      .put( "-1.0E-10", ValueMetaInterface.TYPE_NUMBER )
+      .put( "NaN", ValueMetaInterface.TYPE_NUMBER )
+      .put( "1.50", ValueMetaInterface.TYPE_BIGNUMBER )
+      .put( "1E+10", ValueMetaInterface.TYPE_BIGNUMBER )
+      .put( "'1.5'", ValueMetaInterface.TYPE_STRING )
+      .put( "true", ValueMetaInterface.TYPE_BOOLEAN )
+      .put( "DATE '2014-01-01'", ValueMetaInterface.TYPE_DATE )
+      .put( "TIMESTAMP '2014-01-01 10:11:12.5'", ValueMetaInterface.TYPE_DATE )
+      .build();
+    for ( Map.Entry<String, Integer> literal : literals.entrySet() ) {
+      ValueMetaAndData value = ThinUtil.extractConstant( literal.getKey() );
+      assertNotNull( literal.getKey(), value );
+      assertEquals( literal.getKey(), literal.getValue().intValue(), value.getValueMeta().getType() );
+    }
+
+    for ( String literal : new String[] { "", "-0", "007", "+1", "1e5", "1.", ".5", "foo", "DAY '2014-01-01'" } ) {
+      assertNull( literal, ThinUtil.extractConstant( literal ) );
+    }
+  }
+
+  @Test
+  public void testDateLiteralsMatchSimpleDateFormat() throws Exception {
+    SimpleDateFormat timestampFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
+    SimpleDateFormat dateFormat = new SimpleDateFormat( "yyyy-MM-dd" );
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set( 2014, Calendar.JANUARY, 1 );
+    for ( int hours = 0; hours < 366 * 24; hours += 5 ) {
+      String timestamp = timestampFormat.format( calendar.getTime() );
+      assertEquals( timestamp, timestampFormat.parse( timestamp ),
+        ThinUtil.extractConstant( "TIMESTAMP '" + timestamp + "'" ).getValueData() );
+      String date = dateFormat.format( calendar.getTime() );
+      assertEquals( date, dateFormat.parse( date ), ThinUtil.extractConstant( "DATE '" + date + "'" ).getValueData() );
+      calendar.add( Calendar.HOUR_OF_DAY, 5 );
+    }
+
+    // Out of range fields roll over, as they always did
+    assertEquals( dateFormat.parse( "2014-03-02" ), ThinUtil.extractConstant( "DATE '2014-02-30'" ).getValueData() );
+    assertEquals( dateFormat.parse( "1200-01-01" ), ThinUtil.extractConstant( "DATE '1200-01-01'" ).getValueData() );
+  }
+
   @SuppressWarnings( "deprecation" )
   @Test
   public void testStripQuotesIfNoWhitespace() {
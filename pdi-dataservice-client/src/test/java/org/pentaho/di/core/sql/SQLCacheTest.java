@@ -0,0 +1,174 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import org.junit.Test;
+import org.pentaho.di.core.Condition;
+import org.pentaho.di.core.exception.KettleSQLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class SQLCacheTest {
+
+  @Test
+  public void testCachesParsedStatements() throws KettleSQLException {
+    SQLCache cache = new SQLCache( 10 );
+
+    SQL sql = cache.get( "SELECT A, B\nFROM Service\nWHERE B > 5", SQLTest.generateTest3RowMeta() );
+    assertThat( sql.getServiceName(), equalTo( "Service" ) );
+    assertThat( sql.getSelectFields().getFields().size(), equalTo( 2 ) );
+    assertThat( sql.getWhereCondition().getCondition().isEmpty(), equalTo( false ) );
+
+    // Same text and an equal layout, every caller gets its own copy
+    SQL hit = cache.get( "SELECT A, B FROM Service WHERE B > 5 ", SQLTest.generateTest3RowMeta() );
+    assertThat( cache.getHitCount(), equalTo( 1L ) );
+    assertThat( hit, not( sameInstance( sql ) ) );
+    assertThat( hit.getSelectFields(), not( sameInstance( sql.getSelectFields() ) ) );
+    assertThat( hit.getWhereCondition().getCondition(), not( sameInstance( sql.getWhereCondition().getCondition() ) ) );
+    assertThat( hit.getWhereCondition().getCondition().toString(),
+      equalTo( sql.getWhereCondition().getCondition().toString() ) );
+    assertThat( cache.getMissCount(), equalTo( 1L ) );
+
+    // A changed service layout needs a new parse
+    RowMetaInterface changed = SQLTest.generateTest3RowMeta();
+    changed.addValueMeta( new ValueMeta( "D", ValueMetaInterface.TYPE_STRING, 50 ) );
+    cache.get( "SELECT A, B FROM Service WHERE B > 5", changed );
+    assertThat( cache.getMissCount(), equalTo( 2L ) );
+    assertThat( cache.size(), equalTo( 2L ) );
+
+    cache.invalidateAll();
+    assertThat( cache.size(), equalTo( 0L ) );
+  }
+
+  @Test
+  public void testCollapsesWhitespaceOutsideQuotes() throws KettleSQLException {
+    SQLCache cache = new SQLCache( 10 );
+    RowMetaInterface rowMeta = SQLTest.generateTest3RowMeta();
+
+    cache.get( "SELECT A, B FROM Service WHERE A = 'x  y'", rowMeta );
+    cache.get( "  SELECT  A,\tB\n\nFROM   Service WHERE A = 'x  y'\t", rowMeta );
+    assertThat( cache.getHitCount(), equalTo( 1L ) );
+
+    // Whitespace inside quoted text is part of the value
+    SQL sql = cache.get( "SELECT A, B FROM Service WHERE A = 'x y'", rowMeta );
+    assertThat( cache.getMissCount(), equalTo( 2L ) );
+    assertThat( sql.getWhereCondition().getCondition().toString(), containsString( "x y" ) );
+
+    // Keywords are not folded to one case
+    cache.get( "select A, B from Service where A = 'x  y'", rowMeta );
+    assertThat( cache.getMissCount(), equalTo( 3L ) );
+
+    assertThat( SQLCache.normalize( "SELECT \"A  B\",  'it''s  ' FROM  [2024/01/01  10:00]  " ),
+      equalTo( "SELECT \"A  B\", 'it''s  ' FROM [2024/01/01  10:00]" ) );
+  }
+
+  @Test
+  public void testCopiesReferToTheirOwnSelectFields() throws KettleSQLException {
+    SQLCache cache = new SQLCache( 10 );
+    String sqlString = "SELECT A, IIF( B>5, 'high', 'low' ) AS size, COUNT(*) FROM Service GROUP BY A, B "
+      + "HAVING COUNT(*) > 100 ORDER BY A";
+    SQL first = cache.get( sqlString, SQLTest.generateTest3RowMeta() );
+
+    SQL sql = cache.get( sqlString, SQLTest.generateTest3RowMeta() );
+    assertThat( sql.getHavingCondition().getSelectFields(), sameInstance( sql.getSelectFields() ) );
+    assertThat( sql.getOrderFields().getSelectFields(), sameInstance( sql.getSelectFields() ) );
+    assertThat( sql.getOrderFields().getFields().get( 0 ).getSelectFields(), sameInstance( sql.getSelectFields() ) );
+    assertThat( sql.getSelectFields().getFields().get( 1 ).getIif().getSqlCondition().getCondition(),
+      not( sameInstance( first.getSelectFields().getFields().get( 1 ).getIif().getSqlCondition().getCondition() ) ) );
+  }
+
+  @Test
+  public void testConcurrentEvaluation() throws Exception {
+    SQLCache cache = new SQLCache( 10 );
+    RowMetaInterface rowMeta = SQLTest.generateTest3RowMeta();
+    String sqlString = "SELECT A, B FROM Service WHERE B > 5 AND C < 10";
+    Set<Condition> conditions = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      List<Future<Condition>> futures = new ArrayList<>();
+      for ( int t = 0; t < 8; t++ ) {
+        futures.add( executor.submit( () -> {
+          Condition condition = cache.get( sqlString, rowMeta ).getWhereCondition().getCondition();
+          for ( long i = 0; i < 10000; i++ ) {
+            Object[] row = new Object[] { "a", i % 10, i % 20 };
+            assertThat( condition.evaluate( rowMeta, row ), equalTo( i % 10 > 5 && i % 20 < 10 ) );
+          }
+          return condition;
+        } ) );
+      }
+      for ( Future<Condition> future : futures ) {
+        conditions.add( future.get() );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat( conditions.size(), equalTo( 8 ) );
+    assertThat( cache.getMissCount(), lessThanOrEqualTo( 8L ) );
+  }
+
+  @Test
+  public void testBounded() throws KettleSQLException {
+    SQLCache cache = new SQLCache( 2 );
+    RowMetaInterface rowMeta = SQLTest.generateTest3RowMeta();
+
+    for ( int i = 0; i < 10; i++ ) {
+      cache.get( "SELECT A FROM Service LIMIT " + ( i + 1 ), rowMeta );
+    }
+    assertThat( cache.size(), lessThanOrEqualTo( 2L ) );
+    assertThat( cache.getMissCount(), equalTo( 10L ) );
+  }
+
+  @Test
+  public void testParseErrorsAreNotCached() {
+    SQLCache cache = new SQLCache( 10 );
+    for ( int i = 0; i < 2; i++ ) {
+      try {
+        cache.get( "SELECT X FROM Service", SQLTest.generateTest3RowMeta() );
+        fail( "Unknown field should not parse" );
+      } catch ( KettleSQLException e ) {
+        assertThat( cache.size(), equalTo( 0L ) );
+      }
+    }
+    assertThat( cache.getMissCount(), equalTo( 2L ) );
+  }
+
+  @Test
+  public void testFingerprint() {
+    RowMetaInterface rowMeta = SQLTest.generateTest3RowMeta();
+    assertThat( SQLCache.fingerprint( rowMeta ), equalTo( SQLCache.fingerprint( SQLTest.generateTest3RowMeta() ) ) );
+    assertThat( SQLCache.fingerprint( rowMeta ),
+      not( equalTo( SQLCache.fingerprint( SQLTest.generateTest4RowMeta() ) ) ) );
+  }
+}
@@ -19,7 +19,10 @@ import org.junit.Test;
 import org.pentaho.di.core.Condition;
 import org.pentaho.di.core.exception.KettleSQLException;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaString;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -912,6 +915,36 @@ public class SQLConditionTest extends TestCase {
 
     assertEquals( "CUSTOMERNAME", condition.getLeftValuename() );
     assertEquals( "'\\;';Toys 'R' us", condition.getRightExactString() );
+
+    SQLInList inList = sqlCondition.getInList( condition );
+    assertEquals( Arrays.asList( "';'", "Toys 'R' us" ), inList.getElements() );
+    assertTrue( inList.contains( new ValueMetaString( "CUSTOMERNAME" ), "';'" ) );
+    assertFalse( inList.contains( new ValueMetaString( "CUSTOMERNAME" ), "Toys" ) );
+  }
+
+  public void testLargeInList() throws Exception {
+    RowMetaInterface rowMeta = SQLTest.generateTest4RowMeta();
+    int keys = 100000;
+
+    StringBuilder clause = new StringBuilder( "A IN (" );
+    for ( int i = 0; i < keys; i++ ) {
+      clause.append( i > 0 ? ", 'key " : "'key " ).append( i * 2 ).append( '\'' );
+    }
+    clause.append( ")" );
+
+    SQLCondition sqlCondition = new SQLCondition( "Service", clause.toString(), rowMeta );
+    Condition condition = sqlCondition.getCondition();
+    assertEquals( Condition.FUNC_IN_LIST, condition.getFunction() );
+
+    SQLInList inList = sqlCondition.getInList( condition );
+    assertSame( inList, sqlCondition.getInList( condition ) );
+    assertEquals( keys, inList.size() );
+
+    ValueMetaInterface valueMeta = rowMeta.getValueMeta( 0 );
+    assertTrue( inList.contains( valueMeta, "key 0" ) );
+    assertTrue( inList.contains( valueMeta, "key " + 2 * ( keys - 1 ) ) );
+    assertFalse( inList.contains( valueMeta, "key 3" ) );
+    assertFalse( inList.contains( valueMeta, null ) );
   }
 
   public void testCondition31() throws KettleSQLException {
@@ -1046,6 +1079,33 @@ public class SQLConditionTest extends TestCase {
     assertEquals( 3, sqlCondition.searchForWord( " D AND Y AND ", "and", 0 ) );
     assertEquals( 3, sqlCondition.searchForWord( " D\nAND\nY AND ", "and", 0 ) );
     assertEquals( 4, sqlCondition.searchForWord( " D\r\nAND\r\nY AND ", "and", 0 ) );
+    assertEquals( 2, sqlCondition.searchForWord( "D\tAND\tY", "and", 0 ) );
+    assertEquals( -1, sqlCondition.searchForWord( "D\u00A0AND\u00A0Y", "and", 0 ) );
+  }
+
+  public void testLargeOrCondition() throws KettleSQLException {
+    RowMetaInterface rowMeta = SQLTest.generateTest4RowMeta();
+    int terms = 10000;
+
+    StringBuilder clause = new StringBuilder();
+    for ( int i = 0; i < terms; i++ ) {
+      if ( i > 0 ) {
+        clause.append( i % 2 == 0 ? " OR " : " or " );
+      }
+      clause.append( "A = 'and or " ).append( i ).append( "' AND B = " ).append( i );
+    }
+
+    long start = System.nanoTime();
+    SQLCondition sqlCondition = new SQLCondition( "Service", clause.toString(), rowMeta );
+    long elapsedMillis = ( System.nanoTime() - start ) / 1000000;
+
+    Condition condition = sqlCondition.getCondition();
+    assertEquals( terms, condition.nrConditions() );
+    Condition last = condition.getCondition( terms - 1 );
+    assertEquals( Condition.OPERATOR_OR, last.getOperator() );
+    assertEquals( 2, last.nrConditions() );
+    assertEquals( "and or " + ( terms - 1 ), last.getCondition( 0 ).getRightExactString() );
+    assertTrue( "Parsing " + terms + " terms took " + elapsedMillis + "ms", elapsedMillis < 10000 );
   }
 
   // DATE_TO_STR
@@ -0,0 +1,71 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class SQLFingerprintTest {
+
+  @Test
+  public void testSameShape() throws Exception {
+    SQLFingerprint first =
+      SQLFingerprint.of( "SELECT a, b FROM Service WHERE b > 5 AND a = 'x' ORDER BY b LIMIT 10" );
+    SQLFingerprint second =
+      SQLFingerprint.of( "select  A,B\nfrom Service where B>7 and \"Service\".\"a\" = 'y''s' order by b limit 20" );
+
+    assertThat( first.getNormalizedSql(),
+      equalTo( "SELECT A, B FROM \"Service\" WHERE B > ? AND A = ? ORDER BY B LIMIT ?" ) );
+    assertThat( second.getNormalizedSql(), equalTo( first.getNormalizedSql() ) );
+    assertThat( second.getFingerprint(), equalTo( first.getFingerprint() ) );
+
+    assertThat( first.getLiterals(), contains( "5", "'x'", "10" ) );
+    assertThat( second.getLiterals(), contains( "7", "'y''s'", "20" ) );
+  }
+
+  @Test
+  public void testDifferentShape() throws Exception {
+    long fingerprint = SQLFingerprint.of( "SELECT a FROM Service WHERE b > 5" ).getFingerprint();
+
+    assertThat( SQLFingerprint.of( "SELECT a FROM Service WHERE b >= 5" ).getFingerprint(),
+      not( equalTo( fingerprint ) ) );
+    assertThat( SQLFingerprint.of( "SELECT a FROM Other WHERE b > 5" ).getFingerprint(),
+      not( equalTo( fingerprint ) ) );
+    // Labels are part of the result
+    assertThat( SQLFingerprint.of( "SELECT a AS \"Total\" FROM Service" ).getNormalizedSql(),
+      not( equalTo( SQLFingerprint.of( "SELECT a AS total FROM Service" ).getNormalizedSql() ) ) );
+  }
+
+  @Test
+  public void testAliasesAndLiterals() throws Exception {
+    SQLFingerprint fingerprint = SQLFingerprint.of( "SELECT s.a, \"s\".\"my field\" FROM \"Service\" s"
+      + " WHERE s.b IN (1, 2.5) AND c = TRUE AND d = DATE '2014-01-01'" );
+
+    assertThat( fingerprint.getNormalizedSql(), equalTo(
+      "SELECT A, \"MY FIELD\" FROM \"Service\" WHERE B IN (?, ?) AND C = ? AND D = DATE ?" ) );
+    assertThat( fingerprint.getLiterals(), contains( "1", "2.5", "TRUE", "'2014-01-01'" ) );
+  }
+
+  @Test
+  public void testQuotedNames() throws Exception {
+    // Quotes are removed the way the parser reads field names
+    assertThat( SQLFingerprint.of( "SELECT \"a\", \"my field\", Service.\"b\" FROM Service" ).getNormalizedSql(),
+      equalTo( "SELECT A, \"MY FIELD\", B FROM \"Service\"" ) );
+  }
+}
@@ -0,0 +1,60 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class SQLInListTest {
+  private final SQLInList inList = new SQLInList( ImmutableList.of( "foo", "a;b", "back\\slash", "" ) );
+
+  @Test
+  public void testConstantInList() {
+    assertThat( inList.toConstantInList(), equalTo( "foo;a\\;b;back\\slash;" ) );
+    assertThat( SQLInList.fromConstantInList( inList.toConstantInList() ).getElements(),
+      equalTo( inList.getElements() ) );
+  }
+
+  @Test
+  public void testContains() throws Exception {
+    ValueMetaString valueMeta = new ValueMetaString( "A" );
+    assertThat( inList.contains( valueMeta, "foo" ), is( true ) );
+    assertThat( inList.contains( valueMeta, "a;b" ), is( true ) );
+    // Backslashes are dropped before comparing, like Condition does
+    assertThat( inList.contains( valueMeta, "backslash" ), is( true ) );
+    assertThat( inList.contains( valueMeta, "bar" ), is( false ) );
+    assertThat( inList.contains( valueMeta, null ), is( false ) );
+  }
+
+  @Test
+  public void testSerialization() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    inList.writeTo( new DataOutputStream( bytes ) );
+
+    SQLInList copy = SQLInList.readFrom( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    assertThat( copy.getElements(), equalTo( inList.getElements() ) );
+    assertThat( copy.size(), is( 4 ) );
+  }
+}
@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.core.sql;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.pentaho.di.core.Condition;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+public class SQLRowPredicateTest {
+  private final RowMetaInterface rowMeta = SQLTest.generateTest4RowMeta();
+
+  @Test
+  public void testMatchesConditionEvaluate() throws Exception {
+    List<String> clauses = ImmutableList.of(
+      "B > 5",
+      "B <= 5 AND A = 'foo'",
+      "A IN ( 'foo', 'bar' ) OR D = 3",
+      "NOT ( B = 1 OR C IS NULL )",
+      "B <> 2.5",
+      "A >= 'bar' AND A < 'foo' OR C IS NOT NULL",
+      "A LIKE 'f%' AND D IN ( 1, 3 )",
+      "PARAMETER('name') = 'value'",
+      "B = D"
+    );
+
+    List<Object[]> rows = new ArrayList<>();
+    String[] strings = { null, "", "bar", "baz", "foo" };
+    Long[] longs = { null, 0L, 1L, 3L, 5L, 6L };
+    for ( String a : strings ) {
+      for ( Long b : longs ) {
+        rows.add( new Object[] { a, b, a == null ? "c" : null, b == null ? 3L : b + 2 } );
+      }
+    }
+
+    for ( String clause : clauses ) {
+      SQLCondition sqlCondition = new SQLCondition( "Service", clause, rowMeta );
+      Condition condition = sqlCondition.getCondition();
+      SQLRowPredicate predicate = SQLRowPredicate.compile( sqlCondition, rowMeta );
+      for ( Object[] row : rows ) {
+        assertThat( clause, predicate.test( row ), equalTo( condition.evaluate( rowMeta, row ) ) );
+      }
+    }
+  }
+
+  @Test
+  public void testShortCircuits() throws Exception {
+    SQLCondition sqlCondition = new SQLCondition( "Service", "B = 1 OR A = 'foo'", rowMeta );
+    SQLRowPredicate predicate = SQLRowPredicate.compile( sqlCondition, rowMeta );
+
+    // A is not a string in the first row, it is only compared when B = 1 does not hold
+    assertThat( predicate.test( new Object[] { 1L, 1L, null, null } ), is( true ) );
+    assertThat( predicate.test( new Object[] { "foo", 2L, null, null } ), is( true ) );
+    assertThat( predicate.test( new Object[] { "bar", 2L, null, null } ), is( false ) );
+  }
+}
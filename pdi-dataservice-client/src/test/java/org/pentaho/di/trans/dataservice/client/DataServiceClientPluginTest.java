@@ -18,6 +18,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Ints;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.sql.ResultSet;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -28,14 +29,19 @@ import org.pentaho.di.core.plugins.DatabaseMetaPlugin;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.trans.dataservice.jdbc.ThinConnection;
 import org.pentaho.di.trans.dataservice.jdbc.ThinDriver;
+import org.pentaho.di.trans.dataservice.jdbc.ThinResultSet;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinRowStream;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.emptyArray;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author nhudak
@@ -117,6 +123,16 @@ public class DataServiceClientPluginTest {
     assertThat( clientPlugin.getURL( "host.com", "8080", "kettle" ), is( "jdbc:pdi://host.com:8080/kettle" ) );
   }
 
+  @Test
+  public void testRowStream() throws Exception {
+    ThinResultSet thinResultSet = mock( ThinResultSet.class );
+    when( thinResultSet.isWrapperFor( IThinRowStream.class ) ).thenReturn( true );
+    when( thinResultSet.unwrap( IThinRowStream.class ) ).thenReturn( thinResultSet );
+    assertThat( DataServiceClientPlugin.getRowStream( thinResultSet ), sameInstance( (IThinRowStream) thinResultSet ) );
+
+    assertThat( DataServiceClientPlugin.getRowStream( mock( ResultSet.class ) ), nullValue() );
+  }
+
   @Test
   public void testRequiresName() {
     assertFalse( clientPlugin.requiresName() );
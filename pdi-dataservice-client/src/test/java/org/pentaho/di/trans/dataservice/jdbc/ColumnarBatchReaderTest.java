@@ -0,0 +1,176 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaSerializable;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.row.value.ValueMetaTimestamp;
+
+import java.io.DataInputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ColumnarBatchReaderTest {
+
+  private RowMeta rowMeta;
+
+  @Before
+  public void setUp() throws Exception {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    rowMeta.addValueMeta( new ValueMetaBoolean( "flag" ) );
+    rowMeta.addValueMeta( new ValueMetaDate( "day" ) );
+    rowMeta.addValueMeta( new ValueMetaBigNumber( "total" ) );
+    rowMeta.addValueMeta( new ValueMetaBinary( "data" ) );
+    rowMeta.addValueMeta( new ValueMetaTimestamp( "ts" ) );
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Timestamp timestamp = new Timestamp( 1400000000000L );
+    timestamp.setNanos( 123456789 );
+    Object[][] rows = {
+      { 1L, "one", 1.5, true, new Date( 0 ), new BigDecimal( "10.25" ), new byte[] { 1, 2 }, timestamp },
+      { null, null, null, null, null, null, null, null },
+      { -3L, "\u00fcber", -0.25, false, new Date( 86400000L ), BigDecimal.ONE, new byte[0], new Timestamp( 5L ) },
+    };
+
+    MockDataInput output = new MockDataInput();
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( rowMeta, output, 2 );
+    writer.writeHeader();
+    for ( Object[] row : rows ) {
+      writer.putRow( row );
+    }
+    writer.finish();
+
+    DataInputStream inputStream = output.toDataInputStream();
+    ColumnarBatchReader reader = ColumnarBatchReader.open( rowMeta, inputStream );
+
+    for ( Object[] row : rows ) {
+      Object[] actual = reader.readRow();
+      assertThat( actual.length, is( rowMeta.size() ) );
+      for ( int i = 0; i < row.length; i++ ) {
+        assertThat( rowMeta.getValueMeta( i ).compare( actual[ i ], row[ i ] ), is( 0 ) );
+      }
+    }
+    assertThat( reader.readRow(), nullValue() );
+    assertThat( reader.readRow(), nullValue() );
+    assertThat( inputStream.read(), is( -1 ) );
+  }
+
+  @Test
+  public void testBatches() throws Exception {
+    MockDataInput output = new MockDataInput();
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( rowMeta, output, 4 );
+    writer.writeHeader();
+    for ( long i = 0; i < 10; i++ ) {
+      writer.putRow( new Object[] { i, "row " + i, null, null, null, null, null, null } );
+    }
+    writer.finish();
+
+    ColumnarBatchReader reader = ColumnarBatchReader.open( rowMeta, output.toDataInputStream() );
+    ColumnarBatch batch = reader.nextBatch();
+    assertThat( batch.getRowCount(), is( 4 ) );
+    assertThat( batch.getColumnCount(), is( rowMeta.size() ) );
+    assertThat( ( (ColumnarBatch.LongColumn) batch.getColumn( 0 ) ).getLong( 3 ), is( 3L ) );
+    assertThat( batch.getColumn( 2 ).isNull( 3 ), is( true ) );
+    assertThat( batch.getRow( 1 )[ 1 ], equalTo( (Object) "row 1" ) );
+
+    assertThat( reader.nextBatch().getRowCount(), is( 4 ) );
+    assertThat( reader.nextBatch().getRow( 1 ), arrayContaining( (Object) 9L, "row 9", null, null, null, null, null,
+      null ) );
+    assertThat( reader.nextBatch(), nullValue() );
+  }
+
+  @Test
+  public void testColumnAccess() throws Exception {
+    MockDataInput output = new MockDataInput();
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( rowMeta, output );
+    writer.writeHeader();
+    writer.putRow( new Object[] { 7L, "seven", 0.5, true, new Date( 42L ), null, null, null } );
+    writer.putRow( new Object[] { null, null, null, null, null, null, null, null } );
+    writer.finish();
+
+    ColumnarBatch batch = ColumnarBatchReader.open( rowMeta, output.toDataInputStream() ).nextBatch();
+    assertThat( batch.getLong( 0, 0 ), is( 7L ) );
+    assertThat( batch.getDouble( 2, 0 ), is( 0.5 ) );
+    assertThat( batch.getLong( 3, 0 ), is( 1L ) );
+    assertThat( batch.getLong( 4, 0 ), is( 42L ) );
+    assertThat( batch.getObject( 1, 0 ), equalTo( (Object) "seven" ) );
+    assertThat( batch.isNull( 0, 1 ), is( true ) );
+    assertThat( batch.getLong( 0, 1 ), is( 0L ) );
+    assertThat( batch.getObject( 1, 1 ), nullValue() );
+    try {
+      batch.getLong( 1, 0 );
+      fail( "Expected IllegalArgumentException" );
+    } catch ( IllegalArgumentException e ) {
+      assertThat( e.getMessage(), equalTo( "Not an integer, date or boolean column: 1" ) );
+    }
+  }
+
+  @Test
+  public void testTruncatedStream() throws Exception {
+    MockDataInput output = new MockDataInput();
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( rowMeta, output );
+    writer.writeHeader();
+    writer.putRow( new Object[] { 1L, "one", null, null, null, null, null, null } );
+    writer.flush();
+
+    // End of stream on a batch boundary is treated as the end of the result
+    ColumnarBatchReader reader = ColumnarBatchReader.open( rowMeta, output.toDataInputStream() );
+    assertThat( reader.readRow()[ 0 ], equalTo( (Object) 1L ) );
+    assertThat( reader.readRow(), nullValue() );
+  }
+
+  @Test
+  public void testVersionMismatch() throws Exception {
+    MockDataInput output = new MockDataInput();
+    output.writeInt( ColumnarBatchWriter.VERSION + 1 );
+    try {
+      ColumnarBatchReader.open( rowMeta, output.toDataInputStream() );
+      fail( "Expected version check to fail" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), equalTo( "Unsupported columnar result version: " + ( ColumnarBatchWriter.VERSION + 1 ) ) );
+    }
+  }
+
+  @Test( expected = SQLException.class )
+  public void testUnsupportedType() throws Exception {
+    rowMeta.addValueMeta( new ValueMetaSerializable( "object" ) );
+    MockDataInput output = new MockDataInput();
+    output.writeInt( ColumnarBatchWriter.VERSION );
+    ColumnarBatchReader.open( rowMeta, output.toDataInputStream() );
+  }
+}
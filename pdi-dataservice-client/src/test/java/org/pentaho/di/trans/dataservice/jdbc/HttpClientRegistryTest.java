@@ -0,0 +1,118 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+
+public class HttpClientRegistryTest {
+  HttpClientRegistry registry = new HttpClientRegistry();
+  HttpClientRegistry.PoolSettings settings = new HttpClientRegistry.PoolSettings( 10, 5, 30 );
+
+  @After
+  public void tearDown() throws Exception {
+    registry.shutdown();
+  }
+
+  private static HttpClientRegistry.Key key( String proxyHost ) {
+    return new HttpClientRegistry.Key( "http", "localhost", 8080, proxyHost, 3128 );
+  }
+
+  @Test
+  public void testSharedClient() throws Exception {
+    HttpClient client = registry.acquire( key( null ), settings );
+
+    assertThat( registry.acquire( key( null ), settings ), sameInstance( client ) );
+    assertThat( registry.acquire( key( "proxy" ), settings ), not( sameInstance( client ) ) );
+    assertThat( registry.acquire( new HttpClientRegistry.Key( "https", "localhost", 8080, null, -1 ), settings ),
+      not( sameInstance( client ) ) );
+    assertThat( registry.size(), is( 3 ) );
+
+    registry.shutdown();
+    assertThat( registry.size(), is( 0 ) );
+    assertThat( registry.acquire( key( null ), settings ), not( sameInstance( client ) ) );
+  }
+
+  @Test
+  public void testRelease() throws Exception {
+    HttpClientRegistry.Key key = key( null );
+    HttpClient client = registry.acquire( key, settings );
+    registry.acquire( key, settings );
+    PoolingHttpClientConnectionManager connectionManager = registry.getConnectionManager( key );
+
+    registry.release( key );
+    assertThat( registry.getReferences( key ), is( 1 ) );
+    assertThat( registry.acquire( key, settings ), sameInstance( client ) );
+
+    registry.release( key );
+    registry.release( key );
+    assertThat( registry.size(), is( 0 ) );
+    assertThat( registry.getConnectionManager( key ), nullValue() );
+    // The last release closed the client and its pool
+    try {
+      connectionManager.requestConnection( new HttpRoute( new HttpHost( "localhost", 8080 ) ), null );
+      fail( "Expected the pool to be shut down" );
+    } catch ( IllegalStateException e ) {
+      // Expected
+    }
+    assertThat( registry.acquire( key, settings ), not( sameInstance( client ) ) );
+    registry.release( key );
+
+    // Releasing more than was acquired does nothing
+    registry.release( key );
+    assertThat( registry.size(), is( 0 ) );
+    registry.acquire( key, settings );
+    assertThat( registry.size(), is( 1 ) );
+  }
+
+  @Test
+  public void testPoolLimits() throws Exception {
+    HttpClientRegistry.Key key = key( null );
+    assertThat( registry.getConnectionManager( key ), nullValue() );
+
+    registry.acquire( key, settings );
+    PoolingHttpClientConnectionManager connectionManager = registry.getConnectionManager( key );
+    assertThat( connectionManager.getMaxTotal(), is( 10 ) );
+    assertThat( connectionManager.getDefaultMaxPerRoute(), is( 5 ) );
+
+    // Limits only grow
+    registry.acquire( key, new HttpClientRegistry.PoolSettings( 20, 2, 30 ) );
+    assertThat( connectionManager.getMaxTotal(), is( 20 ) );
+    assertThat( connectionManager.getDefaultMaxPerRoute(), is( 5 ) );
+  }
+
+  @Test
+  public void testKey() throws Exception {
+    assertThat( key( "proxy" ), equalTo( key( "proxy" ) ) );
+    assertThat( key( "proxy" ).hashCode(), equalTo( key( "proxy" ).hashCode() ) );
+    // Proxy port is ignored without a proxy
+    assertThat( new HttpClientRegistry.Key( "http", "localhost", 8080, null, 1 ),
+      equalTo( new HttpClientRegistry.Key( "http", "localhost", 8080, null, 2 ) ) );
+    assertThat( new HttpClientRegistry.Key( "http", "localhost", 8080, "proxy", 1 ),
+      not( equalTo( new HttpClientRegistry.Key( "http", "localhost", 8080, "proxy", 2 ) ) ) );
+  }
+}
@@ -0,0 +1,171 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.sql.SQL;
+import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
+
+import java.io.DataInputStream;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.class )
+public class PartitionedQueryTest {
+  @Mock IDataServiceClientService client;
+  @Mock ThinResultFactory resultFactory;
+  @Mock ThinResultSet rangeResult;
+  @Mock DataInputStream rangeInputStream;
+
+  Map<String, String> parameters = ImmutableMap.of();
+  RowMetaInterface serviceFields;
+
+  @Before
+  public void setUp() throws Exception {
+    serviceFields = new RowMeta();
+    serviceFields.addValueMeta( new ValueMetaInteger( "id" ) );
+    serviceFields.addValueMeta( new ValueMetaString( "name" ) );
+    serviceFields.addValueMeta( new ValueMetaNumber( "amount" ) );
+  }
+
+  private void stubService() throws Exception {
+    ThinServiceInformation serviceInformation = new ThinServiceInformation( "svc", false, serviceFields );
+    when( client.getServiceInformation( "svc" ) ).thenReturn( serviceInformation );
+  }
+
+  private void stubRange( String rangeQuery, RowMetaInterface rangeMeta, Object... range ) throws Exception {
+    stubService();
+    when( client.query( rangeQuery, 0, parameters ) ).thenReturn( rangeInputStream );
+    when( resultFactory.loadResultSet( rangeInputStream, client ) ).thenReturn( rangeResult );
+    when( rangeResult.next() ).thenReturn( true );
+    when( rangeResult.getRowMeta() ).thenReturn( rangeMeta );
+    when( rangeResult.getCurrentRow() ).thenReturn( range );
+  }
+
+  @Test
+  public void testIntegerRanges() throws Exception {
+    RowMetaInterface rangeMeta = new RowMeta();
+    rangeMeta.addValueMeta( new ValueMetaInteger( "MIN(id)" ) );
+    rangeMeta.addValueMeta( new ValueMetaInteger( "MAX(id)" ) );
+    stubRange( "SELECT MIN(\"id\"), MAX(\"id\") FROM \"svc\" WHERE name = 'x'", rangeMeta, 1L, 100L );
+
+    PartitionedQuery query = PartitionedQuery.create( "SELECT * FROM \"svc\" WHERE name = 'x' ORDER BY id DESC", "id",
+      4, client, parameters, resultFactory );
+
+    assertThat( query.getQueries(), contains(
+      "SELECT * FROM \"svc\" WHERE ( name = 'x' ) AND ( ( \"id\" IS NULL OR \"id\" < 26 ) ) ORDER BY id DESC",
+      "SELECT * FROM \"svc\" WHERE ( name = 'x' ) AND ( \"id\" >= 26 AND \"id\" < 51 ) ORDER BY id DESC",
+      "SELECT * FROM \"svc\" WHERE ( name = 'x' ) AND ( \"id\" >= 51 AND \"id\" < 75 ) ORDER BY id DESC",
+      "SELECT * FROM \"svc\" WHERE ( name = 'x' ) AND ( \"id\" >= 75 ) ORDER BY id DESC"
+    ) );
+    for ( String partitionSql : query.getQueries() ) {
+      new SQL( partitionSql ).parse( serviceFields );
+    }
+    verify( rangeResult ).close();
+
+    assertThat( query.isOrdered(), is( true ) );
+    Object[] low = { 1L, "x", 1.0 };
+    Object[] high = { 2L, "x", 1.0 };
+    assertThat( query.compare( serviceFields, low, high ), greaterThan( 0 ) );
+    assertThat( query.compare( serviceFields, high, low ), lessThan( 0 ) );
+  }
+
+  @Test
+  public void testNumberRanges() throws Exception {
+    RowMetaInterface rangeMeta = new RowMeta();
+    rangeMeta.addValueMeta( new ValueMetaNumber( "MIN(amount)" ) );
+    rangeMeta.addValueMeta( new ValueMetaNumber( "MAX(amount)" ) );
+    stubRange( "SELECT MIN(\"amount\"), MAX(\"amount\") FROM \"svc\"", rangeMeta, 0.0, 3.0 );
+
+    PartitionedQuery query = PartitionedQuery.create( "SELECT id, amount FROM \"svc\"", "amount", 3, client,
+      parameters, resultFactory );
+
+    assertThat( query.getQueries(), contains(
+      "SELECT id, amount FROM \"svc\" WHERE ( \"amount\" IS NULL OR \"amount\" < 1.0 )",
+      "SELECT id, amount FROM \"svc\" WHERE \"amount\" >= 1.0 AND \"amount\" < 2.0",
+      "SELECT id, amount FROM \"svc\" WHERE \"amount\" >= 2.0"
+    ) );
+    assertThat( query.isOrdered(), is( false ) );
+  }
+
+  @Test
+  public void testEmptyRange() throws Exception {
+    RowMetaInterface rangeMeta = new RowMeta();
+    rangeMeta.addValueMeta( new ValueMetaInteger( "MIN(id)" ) );
+    rangeMeta.addValueMeta( new ValueMetaInteger( "MAX(id)" ) );
+    stubRange( "SELECT MIN(\"id\"), MAX(\"id\") FROM \"svc\"", rangeMeta, 5L, 5L );
+
+    String sql = "SELECT * FROM \"svc\"";
+    assertThat( PartitionedQuery.create( sql, "id", 4, client, parameters, resultFactory ).getQueries(),
+      contains( sql ) );
+  }
+
+  @Test
+  public void testNotSplit() throws Exception {
+    for ( String sql : new String[] {
+      "SELECT name, COUNT(*) FROM \"svc\" GROUP BY name",
+      "SELECT * FROM \"svc\" LIMIT 10",
+      "SELECT 1"
+    } ) {
+      PartitionedQuery query = PartitionedQuery.create( sql, "id", 4, client, parameters, resultFactory );
+      assertThat( query.getQueries(), contains( sql ) );
+      assertThat( query.isOrdered(), is( false ) );
+    }
+
+    stubService();
+    for ( String sql : new String[] {
+      "SELECT SUM(amount) FROM \"svc\"",
+      "SELECT DISTINCT name FROM \"svc\"",
+      "SELECT id FROM \"svc\" ORDER BY name"
+    } ) {
+      assertThat( PartitionedQuery.create( sql, "id", 4, client, parameters, resultFactory ).getQueries(),
+        contains( sql ) );
+    }
+    verifyNoMoreInteractions( resultFactory );
+  }
+
+  @Test
+  public void testInvalidColumn() throws Exception {
+    stubService();
+    for ( String column : new String[] { "name", "missing" } ) {
+      try {
+        PartitionedQuery.create( "SELECT * FROM \"svc\"", column, 4, client, parameters, resultFactory );
+        fail( "Expected SQLException for " + column );
+      } catch ( SQLException e ) {
+        assertThat( e.getMessage().contains( column ), is( true ) );
+      }
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.class )
+public class PartitionedResultSetTest {
+  @Mock PartitionedQuery query;
+
+  RowMetaInterface rowMeta;
+
+  @Before
+  public void setUp() throws Exception {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+  }
+
+  private RowsResultSet partition( long... ids ) {
+    List<Object[]> rows = new ArrayList<>();
+    for ( long id : ids ) {
+      rows.add( new Object[] { id } );
+    }
+    return new RowsResultSet( rowMeta, rows );
+  }
+
+  private List<Long> readAll( ResultSet resultSet ) throws SQLException {
+    List<Long> ids = new ArrayList<>();
+    while ( resultSet.next() ) {
+      ids.add( resultSet.getLong( "id" ) );
+    }
+    return ids;
+  }
+
+  @Test
+  public void testUnordered() throws Exception {
+    PartitionedResultSet resultSet = new PartitionedResultSet( "svc", query,
+      ImmutableList.of( partition( 1, 2, 3 ), partition(), partition( 4, 5 ) ), 0 );
+    resultSet.setFetchSize( 2 );
+
+    assertThat( resultSet.getCursorName(), is( "svc" ) );
+    assertThat( resultSet.getType(), is( ResultSet.TYPE_FORWARD_ONLY ) );
+    assertThat( resultSet.getPartitionCount(), is( 3 ) );
+    assertThat( readAll( resultSet ), containsInAnyOrder( 1L, 2L, 3L, 4L, 5L ) );
+    assertThat( resultSet.isAfterLast(), is( true ) );
+    assertThat( resultSet.getFetchSize(), is( 2 ) );
+
+    resultSet.close();
+    assertThat( resultSet.isClosed(), is( true ) );
+  }
+
+  @Test
+  public void testOrdered() throws Exception {
+    when( query.isOrdered() ).thenReturn( true );
+    when( query.compare( any( RowMetaInterface.class ), any( Object[].class ), any( Object[].class ) ) )
+      .thenAnswer( invocation -> Long.compare( (Long) invocation.<Object[]>getArgument( 1 )[ 0 ],
+        (Long) invocation.<Object[]>getArgument( 2 )[ 0 ] ) );
+
+    PartitionedResultSet resultSet = new PartitionedResultSet( "svc", query,
+      ImmutableList.of( partition( 1, 4, 7 ), partition( 2, 5 ), partition( 3, 6, 8, 9 ) ), 0 );
+
+    assertThat( readAll( resultSet ), contains( 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L ) );
+    resultSet.close();
+  }
+
+  @Test
+  public void testMaxRows() throws Exception {
+    PartitionedResultSet resultSet = new PartitionedResultSet( "svc", query,
+      ImmutableList.of( partition( 1, 2, 3 ), partition( 4, 5 ) ), 3 );
+
+    assertThat( readAll( resultSet ).size(), is( 3 ) );
+    assertThat( resultSet.next(), is( false ) );
+    resultSet.close();
+  }
+
+  @Test( timeout = 10000 )
+  public void testCloseWhileDecodersAreReading() throws Exception {
+    List<ThinResultSet> partitions = new ArrayList<>();
+    final CountDownLatch reading = new CountDownLatch( 2 );
+    final AtomicInteger readsInProgress = new AtomicInteger();
+    final AtomicBoolean closedMidRead = new AtomicBoolean();
+    for ( int p = 0; p < 2; p++ ) {
+      final CountDownLatch aborted = new CountDownLatch( 1 );
+      ThinResultSet partition = mock( ThinResultSet.class );
+      // Like a socket read, ignores interrupts and only ends when the request is aborted
+      when( partition.next() ).thenAnswer( invocation -> {
+        readsInProgress.incrementAndGet();
+        reading.countDown();
+        Uninterruptibles.awaitUninterruptibly( aborted );
+        readsInProgress.decrementAndGet();
+        throw new SQLException( "Request aborted" );
+      } );
+      doAnswer( invocation -> {
+        aborted.countDown();
+        return null;
+      } ).when( partition ).abortRequest();
+      doAnswer( invocation -> {
+        closedMidRead.compareAndSet( false, readsInProgress.get() > 0 );
+        return null;
+      } ).when( partition ).close();
+      partitions.add( partition );
+    }
+
+    PartitionedResultSet resultSet = new PartitionedResultSet( "svc", query,
+      ImmutableList.<BaseResultSet>builder().add( partition( 1 ) ).addAll( partitions ).build(), 0 );
+    assertThat( resultSet.next(), is( true ) );
+    reading.await();
+
+    long start = System.nanoTime();
+    resultSet.close();
+    assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ), lessThan( 500L ) );
+    for ( ThinResultSet partition : partitions ) {
+      InOrder inOrder = inOrder( partition );
+      inOrder.verify( partition ).abortRequest();
+      inOrder.verify( partition ).close();
+    }
+    // Every decoder had let go of its partition before the partitions were closed
+    assertThat( closedMidRead.get(), is( false ) );
+    assertThat( resultSet.isClosed(), is( true ) );
+  }
+
+  @Test
+  public void testCloseFailure() throws Exception {
+    ThinResultSet first = mock( ThinResultSet.class );
+    ThinResultSet second = mock( ThinResultSet.class );
+    when( first.getRowMeta() ).thenReturn( rowMeta );
+    SQLException failure = new SQLException( "expected" );
+    doThrow( failure ).when( first ).close();
+
+    PartitionedResultSet resultSet = new PartitionedResultSet( "svc", query, ImmutableList.of( first, second ), 0 );
+    try {
+      resultSet.close();
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e, sameInstance( failure ) );
+    }
+    verify( second ).close();
+    assertThat( resultSet.isClosed(), is( true ) );
+  }
+}
@@ -22,6 +22,7 @@ import com.google.common.io.Resources;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
@@ -47,17 +48,31 @@ import org.pentaho.di.core.KettleEnvironment;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
 import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
 import java.net.URLDecoder;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.emptyOrNullString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -65,6 +80,8 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.isA;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -235,6 +252,53 @@ public class RemoteClientTest {
     assertThat( (Integer) httpPost.getParams().getParameter( "http.socket.timeout" ), equalTo( 0 ) );
   }
 
+  @Test
+  public void testQueryNegotiation() throws Exception {
+    when( connection.getResultFormat() ).thenReturn( "columnar" );
+    when( connection.getCompression() ).thenReturn( "gzip|deflate" );
+
+    testQueryBefore();
+
+    remoteClient.query( "SELECT * FROM myService\nWHERE id = 3", 200 );
+
+    verify( httpClient ).execute( httpMethodCaptor.capture(), httpContextCaptor.capture() );
+    HttpPost httpPost = (HttpPost) httpMethodCaptor.getValue();
+    String actual = URLDecoder.decode( EntityUtils.toString( httpPost.getEntity() ), "UTF-8" );
+    assertThat( actual, equalTo(
+      "PARAMETER_ECHO=hello world&SQL=SELECT * FROM myService WHERE id = 3&MaxRows=200&debugtrans=/tmp/genTrans.ktr"
+        + "&ResultFormat=columnar/1&Compression=gzip,deflate"
+    ) );
+  }
+
+  @Test
+  public void testControlCommandNegotiation() throws Exception {
+    when( connection.getResultFormat() ).thenReturn( "columnar" );
+    when( connection.getCompression() ).thenReturn( "gzip" );
+
+    testQueryBefore();
+
+    remoteClient.query( "[ finish serviceId ]", 0 );
+
+    verify( httpClient ).execute( httpMethodCaptor.capture(), httpContextCaptor.capture() );
+    HttpPost httpPost = (HttpPost) httpMethodCaptor.getValue();
+    String actual = URLDecoder.decode( EntityUtils.toString( httpPost.getEntity() ), "UTF-8" );
+    assertThat( actual, equalTo(
+      "PARAMETER_ECHO=hello world&SQL=[ finish serviceId ]&MaxRows=0&debugtrans=/tmp/genTrans.ktr" ) );
+  }
+
+  @Test
+  public void testQueryUnsupportedCompression() throws Exception {
+    when( connection.getParameters() ).thenReturn( ImmutableMap.<String, String>of() );
+    when( connection.getCompression() ).thenReturn( "lz4" );
+
+    try {
+      remoteClient.query( "SELECT * FROM myService", 200 );
+      fail( "Expected unsupported codec to fail" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), equalTo( "Unsupported compression codec: lz4" ) );
+    }
+  }
+
   @Test
   public void testStreamQuery() throws Exception {
     String sql = "SELECT * FROM myService\nWHERE id = 3";
@@ -357,6 +421,64 @@ public class RemoteClientTest {
     assertThat( serviceInformation.getServiceFields().getFieldNames(), arrayContaining( "valuename" ) );
   }
 
+  @Test
+  public void testServiceCatalogTtl() throws Exception {
+    String xml = Resources.toString( ClassLoader.getSystemResource( "jdbc/listServices.xml" ), Charsets.UTF_8 );
+
+    when( connection.getUsername() ).thenReturn( "catalogTtl" );
+    when( connection.getCatalogTtl() ).thenReturn( 60 );
+    when( response.getStatusLine() ).thenReturn( statusLine );
+    when( statusLine.getStatusCode() ).thenReturn( 200 );
+    when( httpClient.execute( isA( HttpGet.class ), isA( HttpClientContext.class ) ) ).thenReturn( response );
+
+    remoteClient.setResponse( xml );
+    ServiceCatalog catalog = remoteClient.getCatalog();
+    catalog.invalidate();
+
+    List<IThinServiceInformation> services = remoteClient.getServiceInformation();
+    assertThat( remoteClient.getServiceInformation(), sameInstance( services ) );
+    assertThat( remoteClient.getServiceInformation( "sequence" ).getName(), is( "sequence" ) );
+    assertThat( remoteClient.getServiceNames( "noMatch" ), is( empty() ) );
+    assertThat( remoteClient.getServiceNames(), contains( "sequence" ) );
+    verify( httpClient, times( 1 ) ).execute( isA( HttpGet.class ), isA( HttpClientContext.class ) );
+    assertThat( catalog.getMissCount(), is( 1L ) );
+    assertThat( catalog.getHitCount(), is( 4L ) );
+
+    catalog.invalidate();
+    assertThat( remoteClient.getServiceInformation(), not( sameInstance( services ) ) );
+    verify( httpClient, times( 2 ) ).execute( isA( HttpGet.class ), isA( HttpClientContext.class ) );
+    assertThat( catalog.getMissCount(), is( 2L ) );
+  }
+
+  @Test
+  public void testServiceCatalogNotModified() throws Exception {
+    String xml = Resources.toString( ClassLoader.getSystemResource( "jdbc/listServices.xml" ), Charsets.UTF_8 );
+    Header eTag = mock( Header.class );
+    when( eTag.getValue() ).thenReturn( "\"v1\"" );
+
+    when( connection.getUsername() ).thenReturn( "catalogNotModified" );
+    when( response.getStatusLine() ).thenReturn( statusLine );
+    when( response.getFirstHeader( HttpHeaders.ETAG ) ).thenReturn( eTag );
+    when( statusLine.getStatusCode() ).thenReturn( 200, 304 );
+    when( httpClient.execute( isA( HttpGet.class ), isA( HttpClientContext.class ) ) ).thenReturn( response );
+
+    remoteClient.setResponse( xml );
+    ServiceCatalog catalog = remoteClient.getCatalog();
+    catalog.invalidate();
+
+    List<IThinServiceInformation> services = remoteClient.getServiceInformation();
+    remoteClient.setResponse( "not parsed" );
+    assertThat( remoteClient.getServiceInformation(), sameInstance( services ) );
+
+    verify( httpClient, times( 2 ) ).execute( httpMethodCaptor.capture(), httpContextCaptor.capture() );
+    assertThat( httpMethodCaptor.getAllValues().get( 0 ).containsHeader( HttpHeaders.IF_NONE_MATCH ), is( false ) );
+    assertThat( httpMethodCaptor.getAllValues().get( 1 ).getFirstHeader( HttpHeaders.IF_NONE_MATCH ).getValue(),
+      equalTo( "\"v1\"" ) );
+    assertThat( catalog.getMissCount(), is( 1L ) );
+    assertThat( catalog.getNotModifiedCount(), is( 1L ) );
+    assertThat( catalog.getHitCount(), is( 0L ) );
+  }
+
   @Test
   public void testExecMethod() throws Exception {
     ImmutableList<Integer> statusCodes = ImmutableList.of( 500, 401, 404 );
@@ -412,6 +534,88 @@ public class RemoteClientTest {
     assertTrue( serviceList.isEmpty() );
   }
 
+  @Test
+  public void testPing() throws Exception {
+    Header capabilities = mock( Header.class );
+    when( capabilities.getValue() ).thenReturn( "finish, Compression" );
+    when( response.getStatusLine() ).thenReturn( statusLine );
+    when( response.getFirstHeader( ServerCapabilities.HEADER ) ).thenReturn( capabilities );
+    when( statusLine.getStatusCode() ).thenReturn( 200, 404, 401 );
+    when( httpClient.execute( any( HttpUriRequest.class ), any( HttpContext.class ) ) ).thenReturn( response );
+
+    ServerCapabilities serverCapabilities = remoteClient.ping( 3 );
+    assertThat( serverCapabilities.supports( ServerCapabilities.FINISH ), is( true ) );
+    assertThat( serverCapabilities.supports( "compression" ), is( true ) );
+
+    verify( httpClient ).execute( httpMethodCaptor.capture(), httpContextCaptor.capture() );
+    HttpGet httpGet = (HttpGet) httpMethodCaptor.getValue();
+    assertThat( httpGet.getURI().toString(), equalTo( "http://localhost:8080/pentaho/kettle/ping" ) );
+    assertThat( httpGet.getConfig().getSocketTimeout(), equalTo( 3000 ) );
+    assertThat( httpGet.getConfig().getConnectTimeout(), equalTo( 3000 ) );
+
+    // No ping command on older servers
+    assertThat( remoteClient.ping( 0 ), is( nullValue() ) );
+
+    try {
+      remoteClient.ping( 0 );
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), containsString( "log you in" ) );
+    }
+  }
+
+  @Test( timeout = 10000 )
+  public void testQueryWithTimeoutLeavesOtherQueriesRunning() throws Exception {
+    when( connection.getParameters() ).thenReturn( ImmutableMap.<String, String>of() );
+    when( response.getStatusLine() ).thenReturn( statusLine );
+    when( statusLine.getStatusCode() ).thenReturn( 200 );
+    when( response.getEntity() ).thenReturn( entity );
+    final CountDownLatch running = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AtomicReference<HttpPost> runningPost = new AtomicReference<>();
+    when( httpClient.execute( any( HttpUriRequest.class ), any( HttpContext.class ) ) ).then( invocation -> {
+      HttpPost httpPost = (HttpPost) invocation.getArguments()[ 0 ];
+      if ( httpPost.getConfig() != null ) {
+        assertThat( httpPost.getConfig().getSocketTimeout(), equalTo( 5000 ) );
+        throw new SocketTimeoutException( "Read timed out" );
+      }
+      runningPost.set( httpPost );
+      running.countDown();
+      release.await();
+      return response;
+    } );
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> query = executor.submit( () -> remoteClient.query( "SELECT * FROM myService", 200 ) );
+      running.await();
+
+      try {
+        remoteClient.queryWithTimeout( "SELECT *", 0, 5 );
+        fail( "Expected the validation query to time out" );
+      } catch ( SQLException e ) {
+        assertThat( runningPost.get().isAborted(), is( false ) );
+      }
+
+      release.countDown();
+      assertThat( query.get(), instanceOf( ThinResultInputStream.class ) );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testPingUnreachable() throws Exception {
+    when( httpClient.execute( any( HttpUriRequest.class ), any( HttpContext.class ) ) )
+      .thenThrow( new IOException( "Connection refused" ) );
+    try {
+      remoteClient.ping( 0 );
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e.getCause(), is( instanceOf( IOException.class ) ) );
+    }
+  }
+
   private class RemoteClientMock extends RemoteClient {
     private String response;
 
@@ -429,6 +633,11 @@ public class RemoteClientTest {
       return response;
     }
 
+    @Override
+    protected InputStream httpResponseToStream( HttpResponse httpResponse ) throws IOException {
+      return new ByteArrayInputStream( response.getBytes( Charsets.UTF_8 ) );
+    }
+
   }
 
 }
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ResultExporterTest {
+
+  private RowMeta rowMeta;
+  private List<Object[]> rows;
+  private Path path;
+
+  @Before
+  public void setUp() throws Exception {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rows = ImmutableList.of(
+      new Object[] { 1L, "plain" },
+      new Object[] { 2L, "with, comma" },
+      new Object[] { null, "say \"hi\"" },
+      new Object[] { 4L, null }
+    );
+    path = Files.createTempFile( "result-exporter", ".out" );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists( path );
+  }
+
+  @Test
+  public void testCsv() throws Exception {
+    ThinExportStatistics statistics = new ResultExporter( rowMeta, ExportFormat.CSV )
+      .export( new RowsResultSet( rowMeta, rows ), path, System.nanoTime() );
+
+    assertThat( Files.readAllLines( path, Charsets.UTF_8 ), contains(
+      "id,name",
+      "1,plain",
+      "2,\"with, comma\"",
+      ",\"say \"\"hi\"\"\"",
+      "4,"
+    ) );
+    assertThat( statistics.getRows(), is( 4L ) );
+    assertThat( statistics.getBytes(), is( Files.size( path ) ) );
+    assertThat( statistics.getRowsPerSecond(), greaterThan( 0d ) );
+  }
+
+  @Test
+  public void testKettle() throws Exception {
+    ThinExportStatistics statistics = new ResultExporter( rowMeta, ExportFormat.KETTLE )
+      .export( new RowsResultSet( rowMeta, rows ), path, System.nanoTime() );
+    assertThat( statistics.getBytes(), is( Files.size( path ) ) );
+
+    try ( InputStream inputStream = Files.newInputStream( path ) ) {
+      DataInputStream dataInputStream = new DataInputStream( inputStream );
+      RowMetaInterface readMeta = new RowMeta( dataInputStream );
+      assertThat( readMeta.getFieldNames(), arrayContaining( "id", "name" ) );
+      for ( Object[] row : rows ) {
+        assertThat( readMeta.readData( dataInputStream ), equalTo( row ) );
+      }
+      try {
+        readMeta.readData( dataInputStream );
+        fail( "Expected end of file" );
+      } catch ( KettleEOFException e ) {
+        // All rows read
+      }
+    }
+  }
+}
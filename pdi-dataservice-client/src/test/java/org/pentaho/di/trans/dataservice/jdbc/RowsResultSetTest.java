@@ -19,7 +19,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
@@ -28,8 +32,10 @@ import java.util.concurrent.ThreadLocalRandom;
 import static org.hamcrest.Matchers.anything;
 import static org.hamcrest.Matchers.containsStringIgnoringCase;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 /**
@@ -116,6 +122,34 @@ public class RowsResultSetTest extends BaseResultSetTest {
     }
   }
 
+  @Test
+  public void testGetLongDoesNotAllocate() throws Exception {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    assumeTrue( threadBean instanceof com.sun.management.ThreadMXBean );
+    com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threadBean;
+    assumeTrue( allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled() );
+
+    RowMeta plainRowMeta = new RowMeta();
+    plainRowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    resultSet = new RowsResultSet( plainRowMeta, ImmutableList.<Object[]>of( new Object[] { 123456789L } ) );
+    assertThat( resultSet.next(), is( true ) );
+
+    long threadId = Thread.currentThread().getId();
+    long sum = 0;
+    for ( int i = 0; i < 10000; i++ ) {
+      sum += resultSet.getLong( 1 );
+    }
+    long before = allocation.getThreadAllocatedBytes( threadId );
+    for ( int i = 0; i < 1000000; i++ ) {
+      sum += resultSet.getLong( 1 );
+    }
+    long allocated = allocation.getThreadAllocatedBytes( threadId ) - before;
+
+    assertThat( sum, is( 1010000L * 123456789L ) );
+    // Far below one object per call
+    assertThat( allocated, lessThan( 100000L ) );
+  }
+
   @Test
   public void testProperties() throws Exception {
     resultSet.setFetchSize( ThreadLocalRandom.current().nextInt() );
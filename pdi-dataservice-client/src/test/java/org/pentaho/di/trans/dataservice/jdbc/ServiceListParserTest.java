@@ -0,0 +1,124 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 - 2026 by Pentaho Canada Inc. : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2030-06-15
+ ******************************************************************************/
+
+
+
+package org.pentaho.di.trans.dataservice.jdbc;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Resources;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+public class ServiceListParserTest {
+  private ServiceListParser parser;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    if ( !KettleEnvironment.isInitialized() ) {
+      KettleEnvironment.init();
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    parser = new ServiceListParser();
+  }
+
+  @Test
+  public void testReadServices() throws Exception {
+    String xml = Resources.toString( ClassLoader.getSystemResource( "jdbc/listServices.xml" ), Charsets.UTF_8 );
+
+    IThinServiceInformation service = Iterables.getOnlyElement( parser.readServices( stream( xml ) ) );
+    assertThat( service.getName(), is( "sequence" ) );
+    assertThat( service.isStreaming(), is( false ) );
+    assertThat( service.getServiceFields().getFieldNames(), arrayContaining( "valuename" ) );
+    ValueMetaInterface valueMeta = service.getServiceFields().getValueMeta( 0 );
+    assertThat( valueMeta.getType(), is( ValueMetaInterface.TYPE_INTEGER ) );
+    assertThat( valueMeta.getConversionMask(), equalTo( "#;-#" ) );
+    assertThat( valueMeta.getDateFormatTimeZone().getID(), equalTo( "Etc/UTC" ) );
+
+    assertThat( parser.readNames( stream( xml ) ), contains( "sequence" ) );
+    assertThat( parser.readService( stream( xml ), "other" ), is( nullValue() ) );
+  }
+
+  @Test
+  public void testSameFieldsAsRowMetaXml() throws Exception {
+    RowMeta rowMeta = new RowMeta();
+    ValueMetaInterface text = new ValueMetaString( "text" );
+    text.setLength( 20 );
+    rowMeta.addValueMeta( text );
+    rowMeta.addValueMeta( new ValueMetaDate( "when" ) );
+    String xml = "<services>" + service( "first", false, rowMeta ) + service( "second", true, rowMeta )
+      + "</services>";
+
+    IThinServiceInformation service = parser.readService( stream( xml ), "second" );
+    assertThat( service.getName(), is( "second" ) );
+    assertThat( service.isStreaming(), is( true ) );
+    assertThat( service.getServiceFields().getMetaXML(), equalTo( rowMeta.getMetaXML() ) );
+  }
+
+  @Test
+  public void testReadServiceStopsAtMatch() throws Exception {
+    String xml = "<services>" + service( "skipped", false, new RowMeta() ) + service( "wanted", true, new RowMeta() )
+      + "<service><name>truncated</name><row-meta>";
+
+    IThinServiceInformation service = parser.readService( stream( xml ), "wanted" );
+    assertThat( service.getName(), is( "wanted" ) );
+    assertThat( service.getServiceFields().size(), is( 0 ) );
+
+    try {
+      parser.readServices( stream( xml ) );
+      fail( "Expected KettleException" );
+    } catch ( KettleException e ) {
+      // The whole list is read, up to the truncation
+    }
+  }
+
+  @Test
+  public void testNamePrefix() throws Exception {
+    String xml = "<services>" + service( "sales_2020", false, new RowMeta() )
+      + service( "sales", false, new RowMeta() ) + "</services>";
+
+    assertThat( parser.readService( stream( xml ), "sales" ).getName(), is( "sales" ) );
+    assertThat( parser.readService( stream( xml ), "sales_2020_q1" ), is( nullValue() ) );
+  }
+
+  private static String service( String name, boolean streaming, RowMeta rowMeta ) throws Exception {
+    return "<service><name>" + name + "</name><streaming>" + ( streaming ? "Y" : "N" ) + "</streaming>"
+      + rowMeta.getMetaXML() + "</service>";
+  }
+
+  private static InputStream stream( String xml ) {
+    return new ByteArrayInputStream( xml.getBytes( Charsets.UTF_8 ) );
+  }
+}
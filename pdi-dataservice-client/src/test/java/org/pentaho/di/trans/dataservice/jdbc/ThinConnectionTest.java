@@ -17,6 +17,7 @@ package org.pentaho.di.trans.dataservice.jdbc;
 import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.hamcrest.CustomMatcher;
 import org.hamcrest.Matcher;
 import org.junit.Before;
@@ -26,6 +27,8 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.dataservice.client.ConnectionAbortingSupport;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
 
@@ -36,14 +39,21 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.anEmptyMap;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertEquals;
@@ -51,13 +61,16 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.anyMap;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 
 /**
@@ -214,6 +227,92 @@ public class ThinConnectionTest extends JDBCTestBase<ThinConnection> {
       equalTo( "https://localhost:8080/pentaho/kettle/service?argument=value" ) );
   }
 
+  @Test
+  public void testSharedHttpClient() throws Exception {
+    properties.setProperty( "maxconnections", "64" );
+    properties.setProperty( "maxconnectionsperroute", "16" );
+    properties.setProperty( "idletimeout", "10" );
+    HttpClientRegistry.Key key = new HttpClientRegistry.Key( "http", "localhost", 8080, null, -1 );
+    int references = HttpClientRegistry.getInstance().getReferences( key );
+    ThinConnection first = new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+    ThinConnection second = new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+    assertThat( first.getClientService(), instanceOf( RemoteClient.class ) );
+    assertThat( second.getClientService(), instanceOf( RemoteClient.class ) );
+    assertThat( HttpClientRegistry.getInstance().getReferences( key ), is( references + 2 ) );
+    assertThat( HttpClientRegistry.getInstance().getConnectionManager( key ).getMaxTotal(),
+      greaterThanOrEqualTo( 64 ) );
+
+    first.close();
+    first.close();
+    assertThat( HttpClientRegistry.getInstance().getReferences( key ), is( references + 1 ) );
+    second.close();
+    assertThat( HttpClientRegistry.getInstance().getReferences( key ), is( references ) );
+
+    properties.setProperty( "maxconnections", "none" );
+    try {
+      new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), containsString( "maxconnections" ) );
+    }
+  }
+
+  @Test
+  public void testServiceCatalog() throws Exception {
+    properties.setProperty( "catalogttl", "30" );
+    ThinConnection first = new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+    ThinConnection second = new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+    assertThat( first.getCatalogTtl(), is( 30 ) );
+    assertThat( first.isWrapperFor( ServiceCatalog.class ), is( true ) );
+    assertThat( first.unwrap( ServiceCatalog.class ), sameInstance( second.unwrap( ServiceCatalog.class ) ) );
+
+    properties.setProperty( "catalogttl", "-1" );
+    try {
+      new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), containsString( "catalogttl" ) );
+    }
+  }
+
+  @Test
+  public void testAsyncClose() throws Exception {
+    assertThat( connection.getCleanupExecutor(), nullValue() );
+
+    properties.setProperty( "asyncclose", "true" );
+    connection = new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+    assertThat( connection.isAsyncClose(), is( true ) );
+    Executor executor = connection.getCleanupExecutor();
+    assertThat( executor, instanceOf( ExecutorService.class ) );
+    assertThat( connection.getCleanupExecutor(), sameInstance( executor ) );
+
+    connection.close();
+    assertThat( ( (ExecutorService) executor ).isShutdown(), is( true ) );
+    assertThat( connection.getCleanupExecutor(), nullValue() );
+  }
+
+  @Test
+  public void testCloseDisconnectsAfterCleanup() throws Exception {
+    properties.setProperty( "asyncclose", "true" );
+    connection = new ThinConnection().createBuilder().parseUrl( url ).readProperties( properties ).build();
+    connection.setClientService( clientService );
+    final AtomicBoolean finished = new AtomicBoolean();
+    final AtomicBoolean finishedBeforeDisconnect = new AtomicBoolean();
+    connection.getCleanupExecutor().execute( () -> {
+      Uninterruptibles.sleepUninterruptibly( 100, TimeUnit.MILLISECONDS );
+      finished.set( true );
+    } );
+    doAnswer( invocation -> {
+      finishedBeforeDisconnect.set( finished.get() );
+      return null;
+    } ).when( (ConnectionAbortingSupport) clientService ).disconnect();
+
+    connection.close();
+    verify( (ConnectionAbortingSupport) clientService ).disconnect();
+    assertThat( finishedBeforeDisconnect.get(), is( true ) );
+    assertThat( connection.getCleanupExecutor(), nullValue() );
+  }
+
   @Test
   public void testLocalConnection() throws Exception {
     ThinConnection.localClient = mock( IDataServiceClientService.class );
@@ -238,6 +337,73 @@ public class ThinConnectionTest extends JDBCTestBase<ThinConnection> {
     assertThat( connection.getWarnings(), nullValue() );
   }
 
+  @Test
+  public void testValidPing() throws Exception {
+    when( clientService.ping( 5 ) ).thenReturn( ServerCapabilities.parse( "finish" ) );
+
+    assertThat( connection.isValid( 5 ), is( true ) );
+    assertThat( connection.getServerCapabilities().supports( ServerCapabilities.FINISH ), is( true ) );
+    verify( clientService, never() ).query( anyString(), anyInt(), anyMap() );
+
+    when( clientService.ping( 5 ) ).thenThrow( new SQLException( "Unreachable" ) );
+    assertThat( connection.isValid( 5 ), is( false ) );
+    assertThat( connection.getWarnings().getMessage(), containsString( "Unreachable" ) );
+
+    try {
+      connection.isValid( -1 );
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), containsString( "-1" ) );
+    }
+  }
+
+  @Test
+  public void testValidDummyQueryTimeout() throws Exception {
+    // Older servers have no ping command
+    when( clientService.ping( 5 ) ).thenReturn( null );
+    when( clientService.queryWithTimeout( "SELECT *", 0, 5 ) )
+      .thenThrow( new SQLException( "Read timed out" ) )
+      .thenReturn( MockDataInput.dual().toDataInputStream() );
+
+    assertThat( connection.isValid( 5 ), is( false ) );
+    assertThat( connection.getWarnings().getMessage(), containsString( "Read timed out" ) );
+    // Queries running on the connection are left alone
+    verify( clientService, never() ).disconnect();
+
+    assertThat( connection.isValid( 5 ), is( true ) );
+  }
+
+  @Test( timeout = 10000 )
+  public void testValidDummyQueryCloseTimeout() throws Exception {
+    when( clientService.ping( 1 ) ).thenReturn( null );
+    MockDataInput result = new MockDataInput();
+    result.writeUTF( "dual" );
+    result.writeUTF( "serviceTrans" );
+    result.writeUTF( "serviceId" );
+    result.writeUTF( "sqlTrans" );
+    result.writeUTF( "sqlId" );
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "DUMMY" ) );
+    rowMeta.writeMeta( result );
+    rowMeta.writeData( result, new Object[] { "x" } );
+    when( clientService.queryWithTimeout( "SELECT *", 0, 1 ) ).thenReturn( result.toDataInputStream() );
+    // The server takes longer to finish the query than the validation may take
+    final CountDownLatch released = new CountDownLatch( 1 );
+    when( clientService.query( "[ errors serviceId ]", 0 ) ).thenAnswer( invocation -> {
+      Uninterruptibles.awaitUninterruptibly( released );
+      throw new SQLException( "Released" );
+    } );
+
+    long start = System.nanoTime();
+    try {
+      assertThat( connection.isValid( 1 ), is( false ) );
+      assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ), lessThan( 2000L ) );
+      assertThat( connection.getWarnings().getMessage(), containsString( "timed out" ) );
+    } finally {
+      released.countDown();
+    }
+  }
+
   @Test
   public void testPrepareStatement() throws Exception {
     for ( Method method : Connection.class.getMethods() ) {
@@ -25,17 +25,23 @@ import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.di.core.row.RowMeta;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinServiceInformation;
 
 import java.lang.reflect.Method;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -57,9 +63,6 @@ public class ThinDatabaseMetaDataTest extends JDBCTestBase<ThinDatabaseMetaData>
     when( clientService.getServiceInformation() ).thenReturn(
       ImmutableList.of( new ThinServiceInformation( "sequence", false, rowMeta ) )
     );
-    when( clientService.getServiceNames( anyString() ) ).thenReturn(
-      ImmutableList.of( "sequence" )
-    );
   }
 
   public ThinDatabaseMetaDataTest() {
@@ -136,8 +139,6 @@ public class ThinDatabaseMetaDataTest extends JDBCTestBase<ThinDatabaseMetaData>
     String sql = "select * from " + tableName;
     RowMeta rowMeta = new RowMeta();
     rowMeta.addValueMeta( new ValueMetaString( "valuename" ) );
-    when( clientService.getServiceNames( tableName ) ).thenReturn(
-      Arrays.asList( tableName ) );
     when( clientService.getServiceInformation( tableName ) ).thenReturn(
       new ThinServiceInformation( tableName, false, rowMeta )
     );
@@ -152,8 +153,6 @@ public class ThinDatabaseMetaDataTest extends JDBCTestBase<ThinDatabaseMetaData>
     String tableName = "dataServiceTable";
     RowMeta rowMeta = new RowMeta();
     rowMeta.addValueMeta( new ValueMetaString( "valuename" ) );
-    when( clientService.getServiceNames( tableName ) ).thenReturn(
-      Arrays.asList( tableName ) );
     when( clientService.getServiceInformation( tableName ) ).thenReturn(
       new ThinServiceInformation( tableName, false, rowMeta )
     );
@@ -163,6 +162,39 @@ public class ThinDatabaseMetaDataTest extends JDBCTestBase<ThinDatabaseMetaData>
     assertThat( columns.getString( "TABLE_NAME" ), equalTo( tableName ) );
   }
 
+  @Test
+  public void testGetColumnsSingleRequest() throws Exception {
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "valuename" ) );
+    List<IThinServiceInformation> services = new ArrayList<>();
+    for ( int i = 0; i < 300; i++ ) {
+      services.add( new ThinServiceInformation( ( i % 2 == 0 ? "sales_" : "stock_" ) + i, false, rowMeta ) );
+    }
+    when( clientService.getServiceInformation() ).thenReturn( services );
+
+    ResultSet columns = metaData.getColumns( null, null, "SALES%", null );
+    int rows = 0;
+    while ( columns.next() ) {
+      assertThat( columns.getString( "TABLE_NAME" ), startsWith( "sales_" ) );
+      rows++;
+    }
+    assertThat( rows, is( 150 ) );
+
+    verify( clientService, times( 1 ) ).getServiceInformation();
+    verify( clientService, never() ).getServiceInformation( anyString() );
+    verify( clientService, never() ).getServiceNames( anyString() );
+  }
+
+  @Test
+  public void testGetColumnsNameInOtherCase() throws Exception {
+    when( clientService.getServiceInformation( "SEQUENCE" ) ).thenReturn( null );
+
+    ResultSet columns = metaData.getColumns( null, null, "SEQUENCE", null );
+    assertThat( columns.next(), is( true ) );
+    assertThat( columns.getString( "TABLE_NAME" ), equalTo( "sequence" ) );
+    assertThat( columns.next(), is( false ) );
+  }
+
   @Override protected ThinDatabaseMetaData getTestObject() {
     return metaData;
   }
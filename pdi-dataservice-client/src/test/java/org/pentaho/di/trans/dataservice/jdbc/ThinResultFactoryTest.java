@@ -15,15 +15,24 @@
 package org.pentaho.di.trans.dataservice.jdbc;
 
 import com.google.common.base.Throwables;
+import org.apache.http.HttpResponse;
+import org.apache.http.message.BasicHeader;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
@@ -31,6 +40,9 @@ import static org.hamcrest.Matchers.anything;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * @author nhudak
@@ -56,6 +68,77 @@ public class ThinResultFactoryTest {
     assertThat( resultSet.getString( 1 ), is( "x" ) );
   }
 
+  @Test
+  public void testLoadColumnarResultSet() throws Exception {
+    RowMeta rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+
+    MockDataInput output = new MockDataInput();
+    for ( String value : new String[] { "service", "", "", "", "" } ) {
+      output.writeUTF( value );
+    }
+    rowMeta.writeMeta( output );
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( rowMeta, output, 2 );
+    writer.writeHeader();
+    for ( long i = 0; i < 3; i++ ) {
+      writer.putRow( new Object[] { i, i == 1 ? null : "name " + i } );
+    }
+    writer.finish();
+
+    HttpResponse httpResponse = mock( HttpResponse.class );
+    when( httpResponse.getFirstHeader( ResultFormat.PARAMETER ) )
+      .thenReturn( new BasicHeader( ResultFormat.PARAMETER, ResultFormat.COLUMNAR.getWireName() ) );
+    ThinResultSet resultSet = factory.loadResultSet(
+      new ThinResultInputStream( new ByteArrayInputStream( output.getBuffer() ), httpResponse ), client );
+
+    for ( long i = 0; i < 3; i++ ) {
+      assertThat( resultSet.next(), is( true ) );
+      assertThat( resultSet.getLong( "id" ), is( i ) );
+      assertThat( resultSet.getString( 2 ), is( i == 1 ? null : "name " + i ) );
+    }
+    assertThat( resultSet.next(), is( false ) );
+  }
+
+  @Test
+  public void testLoadCompressedResultSet() throws Exception {
+    byte[] uncompressed = MockDataInput.dual().getBuffer();
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    OutputStream outputStream = ResultCompression.GZIP.encode( compressed );
+    outputStream.write( uncompressed );
+    outputStream.close();
+
+    HttpResponse httpResponse = mock( HttpResponse.class );
+    when( httpResponse.getFirstHeader( ResultCompression.PARAMETER ) )
+      .thenReturn( new BasicHeader( ResultCompression.PARAMETER, "gzip" ) );
+    ThinResultSet resultSet = factory.loadResultSet(
+      new ThinResultInputStream( new ByteArrayInputStream( compressed.toByteArray() ), httpResponse ), client );
+
+    assertThat( resultSet.getMetaData().getTableName( 1 ), is( "dual" ) );
+    assertThat( resultSet.next(), is( true ) );
+    assertThat( resultSet.getString( 1 ), is( "x" ) );
+    assertThat( resultSet.next(), is( false ) );
+
+    ThinQueryStatistics statistics = resultSet.getQueryStatistics();
+    assertThat( statistics.getCompression(), is( ResultCompression.GZIP ) );
+    assertThat( statistics.getCompressedBytes(), is( (long) compressed.size() ) );
+    assertThat( statistics.getUncompressedBytes(), is( (long) uncompressed.length ) );
+  }
+
+  @Test
+  public void testUnsupportedCompression() throws Exception {
+    HttpResponse httpResponse = mock( HttpResponse.class );
+    when( httpResponse.getFirstHeader( ResultCompression.PARAMETER ) )
+      .thenReturn( new BasicHeader( ResultCompression.PARAMETER, "br" ) );
+    try {
+      factory.loadResultSet( new ThinResultInputStream( new ByteArrayInputStream( new byte[ 0 ] ), httpResponse ),
+        client );
+      fail( "Expected unsupported codec to fail" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), is( "Unsupported compression codec: br" ) );
+    }
+  }
+
   @Test
   public void testLoadResultSetFailure() throws Exception {
     IOException expected = new IOException();
@@ -14,34 +14,68 @@
 
 package org.pentaho.di.trans.dataservice.jdbc;
 
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHeader;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.pentaho.di.core.exception.KettleEOFException;
 import org.pentaho.di.core.exception.KettleFileException;
+import org.pentaho.di.core.jdbc.ThinUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaBigNumber;
+import org.pentaho.di.core.row.value.ValueMetaBinary;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.trans.dataservice.client.api.IDataServiceClientService;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinColumnBatch;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinColumnStream;
+import org.pentaho.di.trans.dataservice.jdbc.api.IThinRowStream;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
 import java.lang.reflect.Method;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.anything;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsStringIgnoringCase;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
@@ -49,6 +83,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -184,6 +219,73 @@ public class ThinResultSetTest extends BaseResultSetTest {
     }
   }
 
+  @Test
+  public void testCloseWithFinish() throws Exception {
+    thinResultSet.setServerCapabilities( ServerCapabilities.parse( "finish" ) );
+    when( client.query( "[ finish serviceId ]", 0 ) ).thenReturn( MockDataInput.errors().toDataInputStream() );
+
+    thinResultSet.close();
+
+    verify( client ).query( "[ finish serviceId ]", 0 );
+    verifyNoMoreInteractions( client );
+  }
+
+  @Test
+  public void testCloseWithFinishErrors() throws Exception {
+    thinResultSet.setServerCapabilities( ServerCapabilities.parse( "finish" ) );
+    // Error flag is "true"
+    when( client.query( "[ finish serviceId ]", 0 ) ).thenReturn( MockDataInput.stop().toDataInputStream() );
+
+    try {
+      thinResultSet.close();
+      fail( "Expected server errors to be reported" );
+    } catch ( SQLException e ) {
+      assertThat( thinResultSet.isClosed(), is( true ) );
+    }
+  }
+
+  @Test
+  public void testCloseWithCompressedFinish() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( DataOutputStream outputStream = new DataOutputStream( ResultCompression.GZIP.encode( bytes ) ) ) {
+      // Error flag is "true"
+      outputStream.writeUTF( "true" );
+    }
+    HttpResponse httpResponse = mock( HttpResponse.class );
+    when( httpResponse.getFirstHeader( ResultCompression.PARAMETER ) )
+      .thenReturn( new BasicHeader( ResultCompression.PARAMETER, "gzip" ) );
+    thinResultSet.setServerCapabilities( ServerCapabilities.parse( "finish" ) );
+    when( client.query( "[ finish serviceId ]", 0 ) ).thenReturn(
+      new ThinResultInputStream( new ByteArrayInputStream( bytes.toByteArray() ), httpResponse ) );
+
+    try {
+      thinResultSet.close();
+      fail( "Expected server errors to be reported" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), equalTo( "An error occurred while processing request." ) );
+    }
+  }
+
+  @Test
+  public void testAsyncClose() throws Exception {
+    ThinStatement thinStatement = mock( ThinStatement.class );
+    when( thinStatement.getCleanupExecutor() ).thenReturn( new Executor() {
+      @Override public void execute( Runnable command ) {
+        command.run();
+      }
+    } );
+    thinResultSet.setStatement( thinStatement );
+    // Error flag is "true"
+    when( client.query( "[ errors serviceId ]", 0 ) ).thenReturn( MockDataInput.stop().toDataInputStream() );
+    when( client.query( "[ stop serviceId ]", 0 ) ).thenReturn( MockDataInput.stop().toDataInputStream() );
+
+    thinResultSet.close();
+
+    assertThat( thinResultSet.isClosed(), is( true ) );
+    verify( thinStatement ).setPendingException( any( SQLException.class ) );
+    verify( client ).query( "[ stop serviceId ]", 0 );
+  }
+
   @Test
   public void testFetchDirection() throws Exception {
     assertThat( thinResultSet.getType(), equalTo( ResultSet.TYPE_FORWARD_ONLY ) );
@@ -199,14 +301,474 @@ public class ThinResultSetTest extends BaseResultSetTest {
 
   @Test
   public void testProperties() throws Exception {
-    thinResultSet.setFetchSize( ThreadLocalRandom.current().nextInt() );
     assertThat( thinResultSet.getFetchSize(), is( 0 ) );
+    int fetchSize = ThreadLocalRandom.current().nextInt( 1, 1000 );
+    thinResultSet.setFetchSize( fetchSize );
+    assertThat( thinResultSet.getFetchSize(), is( fetchSize ) );
+    try {
+      thinResultSet.setFetchSize( -1 );
+      fail( "Expected negative fetch size to be rejected" );
+    } catch ( SQLException e ) {
+      assertThat( thinResultSet.getFetchSize(), is( fetchSize ) );
+    }
 
     assertThat( thinResultSet.getConcurrency(), is( ResultSet.CONCUR_READ_ONLY ) );
     assertThat( thinResultSet.getHoldability(), anything() );
     assertThat( thinResultSet.getCursorName(), anything() );
   }
 
+  @Test
+  public void testPrefetch() throws Exception {
+    final int rows = 50;
+    final AtomicInteger decoded = new AtomicInteger();
+    doAnswer( new Answer() {
+      @Override public Object[] answer( InvocationOnMock invocation ) throws Throwable {
+        if ( decoded.get() == rows ) {
+          throw new KettleEOFException();
+        }
+        return new Object[] { "row " + decoded.getAndIncrement() };
+      }
+    } ).when( rowMeta ).readData( dataInputStream );
+    rowMeta.addValueMeta( new ValueMetaString( "X" ) );
+
+    thinResultSet.setFetchSize( 4 );
+    for ( int i = 0; i < rows; i++ ) {
+      assertThat( thinResultSet.next(), is( true ) );
+      assertThat( thinResultSet.getString( 1 ), equalTo( "row " + i ) );
+      // Decoder may only run ahead by the buffer size (plus the row it is holding)
+      assertThat( decoded.get() - i, lessThanOrEqualTo( 4 + 2 ) );
+    }
+    assertThat( thinResultSet.next(), is( false ) );
+    verify( dataInputStream ).close();
+  }
+
+  @Test
+  public void testPrefetchFailure() throws Exception {
+    IllegalStateException expected = new IllegalStateException( "Expected" );
+    doThrow( expected ).when( rowMeta ).readData( dataInputStream );
+
+    thinResultSet.setFetchSize( 10 );
+    try {
+      thinResultSet.next();
+      fail( "Expected decoding failure" );
+    } catch ( SQLException e ) {
+      assertThat( e.getCause(), sameInstance( (Throwable) expected ) );
+    }
+  }
+
+  @Test
+  public void testPrefetchCancel() throws Exception {
+    when( client.query( "[ errors serviceId ]", 0 ) ).thenReturn( MockDataInput.errors().toDataInputStream() );
+    when( client.query( "[ stop serviceId ]", 0 ) ).thenReturn( MockDataInput.stop().toDataInputStream() );
+
+    thinResultSet.setFetchSize( 2 );
+    assertThat( thinResultSet.next(), is( true ) );
+    thinResultSet.close();
+
+    assertThat( thinResultSet.isClosed(), is( true ) );
+    assertThat( thinResultSet.next(), is( false ) );
+  }
+
+  @Test( timeout = 10000 )
+  public void testPrefetchCloseAbortsRequest() throws Exception {
+    when( client.query( "[ errors serviceId ]", 0 ) ).thenReturn( MockDataInput.errors().toDataInputStream() );
+    when( client.query( "[ stop serviceId ]", 0 ) ).thenReturn( MockDataInput.stop().toDataInputStream() );
+    HttpUriRequest request = mock( HttpUriRequest.class );
+    thinResultSet.setRequest( request );
+    final CountDownLatch aborted = new CountDownLatch( 1 );
+    final AtomicInteger decoded = new AtomicInteger();
+    final AtomicBoolean reading = new AtomicBoolean();
+    doAnswer( invocation -> {
+      if ( decoded.getAndIncrement() == 0 ) {
+        return new Object[] { "first" };
+      }
+      // Like a socket read, ignores interrupts and only ends when the request is aborted
+      reading.set( true );
+      Uninterruptibles.awaitUninterruptibly( aborted );
+      reading.set( false );
+      throw new KettleFileException( "Request aborted" );
+    } ).when( rowMeta ).readData( dataInputStream );
+    doAnswer( invocation -> {
+      aborted.countDown();
+      return null;
+    } ).when( request ).abort();
+    final AtomicBoolean closedMidRead = new AtomicBoolean();
+    doAnswer( invocation -> {
+      closedMidRead.set( reading.get() );
+      return null;
+    } ).when( dataInputStream ).close();
+
+    thinResultSet.setFetchSize( 2 );
+    assertThat( thinResultSet.next(), is( true ) );
+
+    long start = System.nanoTime();
+    thinResultSet.close();
+    assertThat( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ), lessThan( 500L ) );
+    InOrder inOrder = inOrder( request, dataInputStream );
+    inOrder.verify( request ).abort();
+    inOrder.verify( dataInputStream ).close();
+    // The decoder let go of the stream before it was closed
+    assertThat( closedMidRead.get(), is( false ) );
+  }
+
+  @Test
+  public void testPrimitiveRowStorage() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    streamMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    streamMeta.addValueMeta( new ValueMetaBoolean( "flag" ) );
+    streamMeta.addValueMeta( new ValueMetaString( "name" ) );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream outputStream = new DataOutputStream( bytes );
+    streamMeta.writeData( outputStream, new Object[] { 1L, 1.5, true, "first" } );
+    streamMeta.writeData( outputStream, new Object[] { null, null, null, null } );
+    streamMeta.writeData( outputStream, new Object[] { -3L, 2.25, false, "third" } );
+    outputStream.flush();
+
+    DataInputStream inputStream = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+    thinResultSet = new ThinResultSet(
+      new ThinResultHeader( "primitive", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client );
+    thinResultSet.setRowStorage( RowStorage.PRIMITIVE );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getPrimitiveRow(), not( nullValue() ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 1L ) );
+    assertThat( thinResultSet.getDouble( "amount" ), is( 1.5 ) );
+    assertThat( thinResultSet.getBoolean( 3 ), is( true ) );
+    assertThat( thinResultSet.wasNull(), is( false ) );
+    assertThat( thinResultSet.getString( 4 ), equalTo( "first" ) );
+    assertThat( thinResultSet.getBigDecimal( 1 ), equalTo( BigDecimal.ONE ) );
+    assertThat( thinResultSet.getObject( 1 ), equalTo( (Object) 1L ) );
+    Object[] first = thinResultSet.getCurrentRow();
+    assertThat( first, arrayContaining( (Object) 1L, 1.5, true, "first" ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 0L ) );
+    assertThat( thinResultSet.wasNull(), is( true ) );
+    assertThat( thinResultSet.getDouble( 2 ), is( 0.0 ) );
+    assertThat( thinResultSet.wasNull(), is( true ) );
+    assertThat( thinResultSet.getObject( 3 ), nullValue() );
+    assertThat( thinResultSet.getString( 4 ), nullValue() );
+    assertThat( thinResultSet.getCurrentRow(), equalTo( new Object[ 4 ] ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getLong( "id" ), is( -3L ) );
+    assertThat( thinResultSet.getInt( 2 ), is( 2 ) );
+    assertThat( thinResultSet.getBoolean( "flag" ), is( false ) );
+    assertThat( thinResultSet.getObject( 2 ), equalTo( (Object) 2.25 ) );
+    assertThat( thinResultSet.getString( 4 ), equalTo( "third" ) );
+    // Rows handed out earlier are copies
+    assertThat( first, arrayContaining( (Object) 1L, 1.5, true, "first" ) );
+
+    assertThat( thinResultSet.next(), is( false ) );
+  }
+
+  @Test
+  public void testLazyRowStorage() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    streamMeta.addValueMeta( new ValueMetaString( "name" ) );
+    streamMeta.addValueMeta( new ValueMetaBinary( "payload" ) );
+    streamMeta.addValueMeta( new ValueMetaDate( "created" ) );
+    streamMeta.addValueMeta( new ValueMetaBigNumber( "price" ) );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream outputStream = new DataOutputStream( bytes );
+    Date created = new Date( 1234567890L );
+    byte[] payload = new byte[ 1000 ];
+    ThreadLocalRandom.current().nextBytes( payload );
+    streamMeta.writeData( outputStream, new Object[] { 1L, "first", payload, created, new BigDecimal( "1.25" ) } );
+    streamMeta.writeData( outputStream, new Object[] { 2L, null, null, null, null } );
+    streamMeta.writeData( outputStream, new Object[] { 3L, "third", new byte[ 0 ], created, BigDecimal.TEN } );
+    outputStream.flush();
+
+    DataInputStream inputStream = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+    thinResultSet = new ThinResultSet(
+      new ThinResultHeader( "lazy", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client );
+    thinResultSet.setRowStorage( RowStorage.LAZY );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    LazyRow lazyRow = (LazyRow) thinResultSet.getPrimitiveRow();
+    assertThat( thinResultSet.getLong( 1 ), is( 1L ) );
+    assertThat( thinResultSet.getString( 2 ), equalTo( "first" ) );
+    assertThat( lazyRow.isEncoded( 1 ), is( false ) );
+    assertThat( lazyRow.isEncoded( 2 ), is( true ) );
+    assertThat( lazyRow.isEncoded( 3 ), is( true ) );
+    assertThat( thinResultSet.getBigDecimal( 5 ), equalTo( new BigDecimal( "1.25" ) ) );
+    assertThat( lazyRow.isEncoded( 4 ), is( false ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( lazyRow.isEncoded( 1 ), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 2L ) );
+    assertThat( thinResultSet.getString( 2 ), nullValue() );
+    assertThat( thinResultSet.getBytes( 3 ), nullValue() );
+    assertThat( thinResultSet.getTimestamp( 4 ), nullValue() );
+    assertThat( thinResultSet.wasNull(), is( true ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getTimestamp( 4 ).getTime(), is( created.getTime() ) );
+    assertThat( thinResultSet.getCurrentRow(), arrayContaining(
+      (Object) 3L, "third", new byte[ 0 ], created, BigDecimal.TEN ) );
+
+    assertThat( thinResultSet.next(), is( false ) );
+  }
+
+  @Test
+  public void testLazyRowDecodesLikeRowMeta() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaString( "name" ) );
+    streamMeta.addValueMeta( new ValueMetaBinary( "payload" ) );
+    streamMeta.addValueMeta( new ValueMetaDate( "created" ) );
+    streamMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    Object[] row = { "x", new byte[] { 1, 2, 3 }, new Date( 42L ), 0.5 };
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream outputStream = new DataOutputStream( bytes );
+    for ( int i = 0; i < 100; i++ ) {
+      streamMeta.writeData( outputStream, row );
+    }
+    outputStream.flush();
+
+    LazyRow lazyRow = new LazyRow( streamMeta );
+    DataInputStream inputStream = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+    for ( int i = 0; i < 100; i++ ) {
+      lazyRow.read( inputStream );
+      assertThat( lazyRow.toArray(), equalTo( row ) );
+    }
+    try {
+      lazyRow.read( inputStream );
+      fail( "Expected end of stream" );
+    } catch ( KettleEOFException e ) {
+      // End of the row stream
+    }
+  }
+
+  @Test
+  public void testScrollInsensitive() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    streamMeta.addValueMeta( new ValueMetaString( "name" ) );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream outputStream = new DataOutputStream( bytes );
+    for ( long i = 1; i <= 5; i++ ) {
+      streamMeta.writeData( outputStream, new Object[] { i, i % 2 == 0 ? null : "row " + i } );
+    }
+    outputStream.flush();
+
+    DataInputStream inputStream = spy( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+    thinResultSet = new ThinResultSet(
+      new ThinResultHeader( "scroll", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client );
+    // Room for two rows in memory, the others are spilled to disk
+    long budget = 2 * ScrollBuffer.estimateSize( new Object[] { 1L, "row 1" } );
+    ScrollBuffer scrollBuffer = new ScrollBuffer( streamMeta, budget );
+    thinResultSet.setScrollBuffer( scrollBuffer );
+    thinResultSet.setRowStorage( RowStorage.PRIMITIVE );
+    assertThat( thinResultSet.getType(), is( ResultSet.TYPE_SCROLL_INSENSITIVE ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 1L ) );
+    assertThat( thinResultSet.absolute( 4 ), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 4L ) );
+    assertThat( thinResultSet.getString( 2 ), nullValue() );
+    assertThat( thinResultSet.previous(), is( true ) );
+    assertThat( thinResultSet.getString( "name" ), equalTo( "row 3" ) );
+
+    assertThat( thinResultSet.last(), is( true ) );
+    assertThat( thinResultSet.getRow(), is( 5 ) );
+    assertThat( thinResultSet.getString( 2 ), equalTo( "row 5" ) );
+    verifyState( "last" );
+    assertThat( scrollBuffer.getSpilledRows(), is( 3 ) );
+    verify( inputStream ).close();
+
+    assertThat( thinResultSet.absolute( -4 ), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 2L ) );
+    thinResultSet.afterLast();
+    verifyState( "afterLast" );
+    thinResultSet.beforeFirst();
+    verifyState( "beforeFirst" );
+    for ( long i = 1; i <= 5; i++ ) {
+      assertThat( thinResultSet.next(), is( true ) );
+      assertThat( thinResultSet.getLong( "id" ), is( i ) );
+    }
+    assertThat( thinResultSet.next(), is( false ) );
+    assertThat( thinResultSet.first(), is( true ) );
+    assertThat( thinResultSet.getString( 2 ), equalTo( "row 1" ) );
+
+    thinResultSet.close();
+    assertThat( scrollBuffer.size(), is( 0 ) );
+  }
+
+  @Test
+  public void testRowStream() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    streamMeta.addValueMeta( new ValueMetaString( "name" ) );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream outputStream = new DataOutputStream( bytes );
+    for ( long i = 1; i <= 5; i++ ) {
+      streamMeta.writeData( outputStream, new Object[] { i, "row " + i } );
+    }
+    outputStream.flush();
+
+    DataInputStream inputStream = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+    thinResultSet = new ThinResultSet(
+      new ThinResultHeader( "stream", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client );
+    thinResultSet.setRowStorage( RowStorage.PRIMITIVE );
+
+    assertThat( thinResultSet.isWrapperFor( IThinRowStream.class ), is( true ) );
+    IThinRowStream rowStream = thinResultSet.unwrap( IThinRowStream.class );
+    assertThat( rowStream.getRowMeta(), sameInstance( (Object) streamMeta ) );
+
+    List<Object[]> first = rowStream.nextRows( 3 );
+    assertThat( first.size(), is( 3 ) );
+    List<Object[]> rest = rowStream.nextRows( 3 );
+    assertThat( rest.size(), is( 2 ) );
+    assertThat( rowStream.nextRows( 3 ).isEmpty(), is( true ) );
+
+    assertThat( first.get( 0 ), arrayContaining( (Object) 1L, "row 1" ) );
+    assertThat( first.get( 2 ), arrayContaining( (Object) 3L, "row 3" ) );
+    assertThat( rest.get( 1 ), arrayContaining( (Object) 5L, "row 5" ) );
+  }
+
+  private ThinResultSet rowsResultSet( long count ) throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream outputStream = new DataOutputStream( bytes );
+    for ( long i = 1; i <= count; i++ ) {
+      streamMeta.writeData( outputStream, new Object[] { i } );
+    }
+    outputStream.flush();
+    DataInputStream inputStream = new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) );
+    return new ThinResultSet(
+      new ThinResultHeader( "stream", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client );
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    thinResultSet = rowsResultSet( 10000 );
+    long sum = thinResultSet.stream().parallel().mapToLong( row -> (Long) row[ 0 ] ).sum();
+    assertThat( sum, is( 10000L * 10001L / 2 ) );
+    assertThat( thinResultSet.isClosed(), is( true ) );
+
+    thinResultSet = rowsResultSet( 10 );
+    try ( Stream<Object[]> stream = thinResultSet.stream() ) {
+      assertThat( stream.findFirst().get()[ 0 ], equalTo( (Object) 1L ) );
+      assertThat( thinResultSet.isClosed(), is( false ) );
+    }
+    assertThat( thinResultSet.isClosed(), is( true ) );
+  }
+
+  @Test
+  public void testRowBatches() throws Exception {
+    thinResultSet = rowsResultSet( 10 );
+    List<Integer> sizes = thinResultSet.rowBatches( 4 ).map( List::size ).collect( Collectors.toList() );
+    assertThat( sizes, contains( 4, 4, 2 ) );
+    assertThat( thinResultSet.isClosed(), is( true ) );
+
+    try {
+      thinResultSet.rowBatches( 0 );
+      fail( "Expected SQLException" );
+    } catch ( SQLException e ) {
+      assertThat( e.getMessage(), containsStringIgnoringCase( "0" ) );
+    }
+  }
+
+  @Test
+  public void testColumnStream() throws Exception {
+    thinResultSet = rowsResultSet( 10 );
+    IThinColumnStream columnStream = thinResultSet.unwrap( IThinColumnStream.class );
+    assertThat( columnStream.getSqlTypes()[ 0 ], is( ThinUtil.getSqlType( new ValueMetaInteger( "id" ) ) ) );
+
+    IThinColumnBatch batch = columnStream.nextBatch( 4 );
+    assertThat( batch.getRowCount(), is( 4 ) );
+    assertThat( batch.getColumnCount(), is( 1 ) );
+    assertThat( batch.getLong( 0, 3 ), is( 4L ) );
+    assertThat( batch.getObject( 0, 0 ), equalTo( (Object) 1L ) );
+    assertThat( columnStream.nextBatch( 4 ).getRowCount(), is( 4 ) );
+    assertThat( columnStream.nextBatch( 4 ).getRowCount(), is( 2 ) );
+    assertThat( columnStream.nextBatch( 4 ), nullValue() );
+  }
+
+  @Test
+  public void testColumnStreamOfColumnarResult() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    MockDataInput output = new MockDataInput();
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( streamMeta, output, 3 );
+    writer.writeHeader();
+    for ( long i = 1; i <= 7; i++ ) {
+      writer.putRow( new Object[] { i } );
+    }
+    writer.finish();
+    DataInputStream inputStream = spy( output.toDataInputStream() );
+    thinResultSet = new ThinResultSet(
+      new ThinResultHeader( "columnar", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client,
+      ColumnarBatchReader.open( streamMeta, inputStream ) );
+
+    // The rest of a batch that rows were read from is gathered from rows
+    assertThat( thinResultSet.next(), is( true ) );
+    IThinColumnBatch batch = thinResultSet.nextBatch( 2 );
+    assertThat( batch, instanceOf( RowColumnBatch.class ) );
+    assertThat( batch.getLong( 0, 1 ), is( 3L ) );
+
+    batch = thinResultSet.nextBatch( 2 );
+    assertThat( batch, instanceOf( ColumnarBatch.class ) );
+    assertThat( batch.getRowCount(), is( 3 ) );
+    assertThat( batch.getLong( 0, 0 ), is( 4L ) );
+    assertThat( thinResultSet.nextBatch( 2 ).getRowCount(), is( 1 ) );
+    assertThat( thinResultSet.nextBatch( 2 ), nullValue() );
+
+    // The end of the stream is handled like next() does
+    verify( inputStream ).close();
+    assertThat( thinResultSet.isAfterLast(), is( true ) );
+    assertThat( thinResultSet.next(), is( false ) );
+    assertThat( thinResultSet.nextBatch( 2 ), nullValue() );
+  }
+
+  @Test
+  public void testColumnarGetters() throws Exception {
+    RowMeta streamMeta = new RowMeta();
+    streamMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    streamMeta.addValueMeta( new ValueMetaNumber( "amount" ) );
+    streamMeta.addValueMeta( new ValueMetaBoolean( "flag" ) );
+    streamMeta.addValueMeta( new ValueMetaString( "name" ) );
+    MockDataInput output = new MockDataInput();
+    ColumnarBatchWriter writer = new ColumnarBatchWriter( streamMeta, output, 2 );
+    writer.writeHeader();
+    writer.putRow( new Object[] { 1L, 1.5, true, "one" } );
+    writer.putRow( new Object[] { null, null, null, null } );
+    writer.putRow( new Object[] { 3L, 3.5, false, "three" } );
+    writer.finish();
+    DataInputStream inputStream = output.toDataInputStream();
+    thinResultSet = new ThinResultSet(
+      new ThinResultHeader( "columnar", "serviceTrans", "", "sqlTrans", "", streamMeta ), inputStream, client,
+      ColumnarBatchReader.open( streamMeta, inputStream ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getPrimitiveRow(), instanceOf( ColumnarRow.class ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 1L ) );
+    assertThat( thinResultSet.getDouble( 2 ), is( 1.5 ) );
+    assertThat( thinResultSet.getBoolean( 3 ), is( true ) );
+    assertThat( thinResultSet.wasNull(), is( false ) );
+    assertThat( thinResultSet.getString( 4 ), equalTo( "one" ) );
+    assertThat( thinResultSet.getCurrentRow(), arrayContaining( (Object) 1L, 1.5, true, "one" ) );
+
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 0L ) );
+    assertThat( thinResultSet.wasNull(), is( true ) );
+    assertThat( thinResultSet.getDouble( 2 ), is( 0.0 ) );
+    assertThat( thinResultSet.wasNull(), is( true ) );
+    assertThat( thinResultSet.getObject( 4 ), nullValue() );
+
+    // The next batch is read for the third row
+    assertThat( thinResultSet.next(), is( true ) );
+    assertThat( thinResultSet.getLong( 1 ), is( 3L ) );
+    assertThat( thinResultSet.getBoolean( 3 ), is( false ) );
+    assertThat( thinResultSet.getObject( 2 ), equalTo( (Object) 3.5 ) );
+
+    assertThat( thinResultSet.next(), is( false ) );
+    assertThat( thinResultSet.isAfterLast(), is( true ) );
+  }
+
   @Override protected ThinResultSet getTestObject() {
     return thinResultSet;
   }
@@ -58,6 +58,7 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -190,8 +191,7 @@ public class ThinStatementTest extends JDBCTestBase<ThinStatement> {
     }
     assertThat( statement.getFetchDirection(), equalTo( ResultSet.FETCH_FORWARD ) );
 
-    statement.setFetchSize( 256 );
-    assertThat( statement.getFetchSize(), equalTo( 1 ) );
+    assertThat( statement.getFetchSize(), equalTo( 0 ) );
 
     statement.setMaxFieldSize( 10 );
     assertThat( statement.getMaxFieldSize(), equalTo( 0 ) );
@@ -206,6 +206,73 @@ public class ThinStatementTest extends JDBCTestBase<ThinStatement> {
     assertThat( statement.isCloseOnCompletion(), equalTo( false ) );
   }
 
+  @Test
+  public void testFetchSize() throws Exception {
+    when( clientService.query( SQL, -1, mockParameters ) ).thenReturn( MockDataInput.dual().toDataInputStream() );
+
+    statement.setFetchSize( 256 );
+    assertThat( statement.getFetchSize(), equalTo( 256 ) );
+    statement.executeQuery( SQL );
+    verify( resultSet ).setFetchSize( 256 );
+
+    try {
+      statement.setFetchSize( -1 );
+      fail();
+    } catch ( SQLException e ) {
+      assertThat( statement.getFetchSize(), equalTo( 256 ) );
+    }
+  }
+
+  @Test
+  public void testScrollInsensitive() throws Exception {
+    when( clientService.query( SQL, -1, mockParameters ) ).thenReturn( MockDataInput.dual().toDataInputStream() );
+
+    statement.executeQuery( SQL );
+    verify( resultSet, never() ).setScrollBuffer( any( ScrollBuffer.class ) );
+
+    statement.setResultSetType( ResultSet.TYPE_SCROLL_SENSITIVE );
+    statement.executeQuery( SQL );
+    verify( resultSet ).setScrollBuffer( any( ScrollBuffer.class ) );
+  }
+
+  @Test
+  public void testPartitioningFallback() throws Exception {
+    when( clientService.query( SQL, -1, mockParameters ) ).thenReturn( MockDataInput.dual().toDataInputStream() );
+
+    statement.setPartitioning( "id", 4 );
+    assertThat( statement.getPartitionColumn(), equalTo( "id" ) );
+    assertThat( statement.getPartitionCount(), equalTo( 4 ) );
+
+    // Unknown service, the query can not be split
+    assertThat( statement.executeQuery( SQL ), sameInstance( (ResultSet) resultSet ) );
+    verify( clientService ).getServiceInformation( "dataService" );
+    verify( resultSet ).setStatement( statement );
+
+    try {
+      statement.setPartitioning( "id", 0 );
+      fail();
+    } catch ( SQLException e ) {
+      assertThat( statement.getPartitionCount(), equalTo( 4 ) );
+    }
+    statement.setPartitioning( null, 0 );
+    assertThat( statement.getPartitionColumn(), equalTo( null ) );
+    assertThat( statement.getPartitionCount(), equalTo( 1 ) );
+  }
+
+  @Test
+  public void testPendingException() throws Exception {
+    SQLException expected = new SQLException( "Expected" );
+    statement.setPendingException( expected );
+    try {
+      statement.executeQuery( SQL );
+      fail( "Expected pending exception" );
+    } catch ( SQLException e ) {
+      assertThat( e, sameInstance( expected ) );
+    }
+
+    assertThat( statement.executeQuery( SQL ), sameInstance( (ResultSet) resultSet ) );
+  }
+
   @Test
   public void testMaxRows() throws Exception {
     statement.setMaxRows( 42 );